@@ -0,0 +1,8 @@
+# Generated state codecs are found by the name of the view controller class.
+-keepnames class * {
+    @com.eightsines.holycycle.ViewControllerInstanceState <fields>;
+}
+
+-keep class **$$StateCodec {
+    <init>();
+}
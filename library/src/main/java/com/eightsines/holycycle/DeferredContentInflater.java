@@ -0,0 +1,109 @@
+package com.eightsines.holycycle;
+
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
+
+/**
+ * Inflates {@link ViewStub}s of the {@link ViewControllerDeferredContent} after the first frame
+ * of the content view is drawn. Used internally by the delegates.
+ */
+class DeferredContentInflater implements ViewTreeObserver.OnPreDrawListener, Runnable {
+    private ViewControllerDeferredContent controller;
+    private View contentView;
+    private int[] viewStubIds;
+
+    DeferredContentInflater(@NonNull ViewControllerDeferredContent controller) {
+        this.controller = controller;
+    }
+
+    void attach(@Nullable View contentView) {
+        detach();
+
+        if (contentView == null) {
+            return;
+        }
+
+        int[] ids = controller.onControllerGetDeferredViewStubIds();
+
+        if (ids.length == 0) {
+            return;
+        }
+
+        this.contentView = contentView;
+        this.viewStubIds = ids;
+
+        // If the view is not attached yet, the floating observer will be merged on attach.
+        contentView.getViewTreeObserver().addOnPreDrawListener(this);
+    }
+
+    void inflateNow() {
+        if (contentView != null) {
+            run();
+        }
+    }
+
+    void detach() {
+        if (contentView == null) {
+            return;
+        }
+
+        removePreDrawListener();
+        contentView.removeCallbacks(this);
+
+        contentView = null;
+        viewStubIds = null;
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        if (contentView != null) {
+            removePreDrawListener();
+
+            // Posted runnable will be executed after the current frame is drawn.
+            contentView.post(this);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void run() {
+        if (contentView == null) {
+            return;
+        }
+
+        View rootView = contentView;
+        int[] ids = viewStubIds;
+
+        detach();
+
+        for (int id : ids) {
+            View view = rootView.findViewById(id);
+
+            if (view instanceof ViewStub) {
+                ViewStub viewStub = (ViewStub)view;
+
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                        && ViewControllerLayoutInflaterFactory.hasConstructors()) {
+
+                    viewStub.setLayoutInflater(ViewControllerLayoutInflaterFactory.wrap(LayoutInflater.from(viewStub.getContext())));
+                }
+
+                controller.onControllerDeferredContentInflated(id, viewStub.inflate());
+            }
+        }
+    }
+
+    private void removePreDrawListener() {
+        ViewTreeObserver viewTreeObserver = contentView.getViewTreeObserver();
+
+        if (viewTreeObserver.isAlive()) {
+            viewTreeObserver.removeOnPreDrawListener(this);
+        }
+    }
+}
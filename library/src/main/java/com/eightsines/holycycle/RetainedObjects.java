@@ -0,0 +1,69 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-process registry of objects retained by {@link ViewControllerRetain} fragments across configuration changes.
+ * Fragments have no non-configuration instance of their own, so the retained object is kept here,
+ * and the {@code outState} bundle carries only a token.
+ * <p>The fragment is re-created right after the configuration change, so entries which are not taken
+ * in a reasonable time are just dropped.</p>
+ */
+final class RetainedObjects {
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.RetainedObjects.TOKEN";
+    private static final long TTL_MILLIS = 60L * 1000L;
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    private RetainedObjects() {
+    }
+
+    static void put(@NonNull Bundle outState, @NonNull Object object) {
+        long nowMillis = SystemClock.elapsedRealtime();
+        removeExpiredEntries(nowMillis);
+
+        String token = UUID.randomUUID().toString();
+        entries.put(token, new Entry(object, nowMillis + TTL_MILLIS));
+        outState.putString(KEY_TOKEN, token);
+    }
+
+    @Nullable
+    static Object take(@Nullable Bundle savedInstanceState) {
+        String token = (savedInstanceState == null ? null : savedInstanceState.getString(KEY_TOKEN));
+
+        if (token == null) {
+            return null;
+        }
+
+        savedInstanceState.remove(KEY_TOKEN);
+        removeExpiredEntries(SystemClock.elapsedRealtime());
+
+        Entry entry = entries.remove(token);
+        return (entry == null ? null : entry.object);
+    }
+
+    private static void removeExpiredEntries(long nowMillis) {
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().expiresAtMillis <= nowMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private Object object;
+        private long expiresAtMillis;
+
+        Entry(@NonNull Object object, long expiresAtMillis) {
+            this.object = object;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
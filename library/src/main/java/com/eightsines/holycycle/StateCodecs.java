@@ -0,0 +1,70 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Finds generated {@link ViewControllerStateCodec}s. Reflection is used only once per view controller class
+ * to find the codec, and the result (including its absence) is cached.
+ */
+final class StateCodecs {
+    private static final String CODEC_SUFFIX = "$$StateCodec";
+
+    private static final ViewControllerStateCodec<Object> NO_CODEC = new ViewControllerStateCodec<Object>() {
+        @Override
+        public void save(@NonNull Object controller, @NonNull Bundle outState) {
+        }
+
+        @Override
+        public void restore(@NonNull Object controller, @NonNull Bundle savedInstanceState) {
+        }
+    };
+
+    private static final Map<Class<?>, ViewControllerStateCodec<Object>> codecs = new HashMap<>();
+
+    private StateCodecs() {
+    }
+
+    @Nullable
+    static synchronized ViewControllerStateCodec<Object> get(@NonNull Class<?> controllerClass) {
+        ViewControllerStateCodec<Object> codec = codecs.get(controllerClass);
+
+        if (codec == null) {
+            codec = find(controllerClass);
+            codecs.put(controllerClass, codec);
+        }
+
+        return (codec == NO_CODEC ? null : codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    private static ViewControllerStateCodec<Object> find(@NonNull Class<?> controllerClass) {
+        if (isFrameworkClass(controllerClass.getName())) {
+            return NO_CODEC;
+        }
+
+        try {
+            // The generated codec of the class also handles fields of its superclasses.
+            return (ViewControllerStateCodec<Object>)Class.forName(controllerClass.getName() + CODEC_SUFFIX,
+                    true,
+                    controllerClass.getClassLoader()).newInstance();
+        } catch (ClassNotFoundException e) {
+            Class<?> superclass = controllerClass.getSuperclass();
+            ViewControllerStateCodec<Object> superclassCodec = (superclass == null ? null : get(superclass));
+            return (superclassCodec == null ? NO_CODEC : superclassCodec);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("Unable to create state codec for " + controllerClass.getName(), e);
+        }
+    }
+
+    private static boolean isFrameworkClass(@NonNull String className) {
+        return className.startsWith("android.")
+                || className.startsWith("java.")
+                || className.startsWith("javax.")
+                || className.startsWith("com.eightsines.holycycle.app.");
+    }
+}
@@ -0,0 +1,118 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Marshals the state snapshot of the {@link ViewControllerStateSnapshot} on the shared thread pool.
+ * <p>Marshalled bytes are used only to restore the state in the same process or after the process death
+ * on the same device, so it is safe to use {@link Parcel#marshall()} here.</p>
+ */
+class StateSnapshotMarshaller implements Runnable {
+    private static final String TAG = "ViewControllerSnapshot";
+    private static final String KEY_SNAPSHOT = "com.eightsines.holycycle.StateSnapshotMarshaller.SNAPSHOT";
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_DONE = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private final Bundle snapshot;
+    private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+    private final CountDownLatch doneLatch = new CountDownLatch(1);
+    private volatile byte[] bytes;
+
+    StateSnapshotMarshaller(@NonNull Bundle snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    void start() {
+        ViewControllerExecutor.getSharedPool().execute(this);
+    }
+
+    void cancel() {
+        // If marshalling is already running, its result is just ignored.
+        state.compareAndSet(STATE_PENDING, STATE_CANCELLED);
+    }
+
+    void writeTo(@NonNull Bundle outState) {
+        if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+            // Marshalling is already running or done, waiting for it is faster than starting again.
+            awaitDone();
+
+            if (bytes != null) {
+                outState.putByteArray(KEY_SNAPSHOT, bytes);
+                return;
+            }
+        }
+
+        outState.putAll(snapshot);
+    }
+
+    @Override
+    public void run() {
+        if (!state.compareAndSet(STATE_PENDING, STATE_RUNNING)) {
+            return;
+        }
+
+        Parcel parcel = Parcel.obtain();
+
+        try {
+            parcel.writeBundle(snapshot);
+            bytes = parcel.marshall();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to marshal the state snapshot, it will be saved synchronously", e);
+        } finally {
+            parcel.recycle();
+            state.set(STATE_DONE);
+            doneLatch.countDown();
+        }
+    }
+
+    static void restore(@Nullable Bundle savedInstanceState, @Nullable ClassLoader classLoader) {
+        byte[] savedBytes = (savedInstanceState == null ? null : savedInstanceState.getByteArray(KEY_SNAPSHOT));
+
+        if (savedBytes == null) {
+            return;
+        }
+
+        Parcel parcel = Parcel.obtain();
+
+        try {
+            parcel.unmarshall(savedBytes, 0, savedBytes.length);
+            parcel.setDataPosition(0);
+
+            Bundle savedSnapshot = parcel.readBundle(classLoader);
+
+            if (savedSnapshot != null) {
+                savedInstanceState.putAll(savedSnapshot);
+            }
+        } finally {
+            parcel.recycle();
+        }
+
+        savedInstanceState.remove(KEY_SNAPSHOT);
+    }
+
+    private void awaitDone() {
+        boolean isInterrupted = false;
+
+        while (true) {
+            try {
+                doneLatch.await();
+                break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
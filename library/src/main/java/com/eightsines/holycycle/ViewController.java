@@ -39,6 +39,8 @@ public interface ViewController {
     /**
      * Called when the view controller is creating. This is where most initialization should go
      * (you can think of this method as constructor replacement). Good place to inject dependencies.
+     * Data prefetched by {@link ViewControllerPrefetch} can be taken here, as well as objects passed
+     * using {@link ViewControllerHandoff}.
      *
      * @param extras Intent extras (in case of Activity) or construction arguments (in case of Fragment).
      */
@@ -63,6 +65,7 @@ public interface ViewController {
      * This will be called between {@link #onControllerCreate(Bundle extras)} and {@link #onControllerStart()}.
      * <p>If this view controller based on Fragment, than in some cases this method can be called
      * after {@link #onControllerStop()}.</p>
+     * <p>If this view controller implements {@link ViewControllerContentViewProvider}, this method is not called.</p>
      *
      * @return Return the layout id for the view controller UI, or zero for non-graphical view controller.
      */
@@ -133,6 +136,7 @@ public interface ViewController {
      * data, because after this method an application may be killed by Android without calling onStop
      * and onDestroy in Activities and Fragments (in terms of view controller - without
      * calling {@link #onControllerStop()} and {@link #onControllerSaveInstanceState(Bundle outState)}).
+     * <p>To avoid writing on the main thread, hand a snapshot of the data over to {@link ViewControllerUserDataWriter}.</p>
      */
     void onControllerPersistUserData();
 
@@ -2,10 +2,19 @@ package com.eightsines.holycycle;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.content.res.Configuration;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.v4.app.FragmentActivity;
+import android.util.SparseArray;
+import android.util.TypedValue;
 import android.view.View;
+import android.view.ViewGroup;
 import com.eightsines.holycycle.app.ViewControllerActivity;
 import com.eightsines.holycycle.app.ViewControllerAppCompatActivity;
 import com.eightsines.holycycle.app.ViewControllerFragmentActivity;
@@ -26,11 +35,43 @@ public class ViewControllerActivityDelegate {
 
     private Activity owner;
     private ViewController controller;
+    private DeferredContentInflater deferredContentInflater;
+    private ViewControllerLifecycle lifecycle = new ViewControllerLifecycle();
+    private ViewControllerExecutor executor;
+    private ViewControllerIdleQueue idleQueue;
+    private ViewControllerUserDataWriter userDataWriter;
+    private ViewControllerStartupTasks startupTasks;
+    private ViewControllerRetainedStore retainedStore;
+    private ViewControllerChildren children;
+    private Bundle savedChildrenState;
+    private ViewControllerHandoff handoff;
+    private ViewControllerSavedState savedState;
+    private ViewControllerStateStore stateStore;
+    private ViewControllerResourceRegistry resourceRegistry;
+    private ViewControllerUpdateQueue updateQueue;
+    private StateSnapshotMarshaller stateSnapshotMarshaller;
+    private Object retainedObject;
     private int state = STATE_INITIALIZED;
     private int contentLayoutResId;
+    private String contentLayoutResPath;
+    private boolean hasContentView;
+    Handler focusDebounceHandler;
+    private long focusDebounceDelay;
     private boolean hasWindowFocus;
+    private boolean isBlurPending;
     private boolean isFinished;
 
+    private Runnable pendingBlurRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isBlurPending = false;
+
+            if (state == STATE_RESUMED) {
+                dispatchBlur();
+            }
+        }
+    };
+
     /**
      * View controller delegate constructor. Mostly you want use it like
      * {@code new ViewControllerActivityDelegate(this, this)}, however it is possible to separate
@@ -44,6 +85,14 @@ public class ViewControllerActivityDelegate {
     public ViewControllerActivityDelegate(@NonNull Activity owner, @NonNull ViewController controller) {
         this.owner = owner;
         this.controller = controller;
+
+        if (controller instanceof ViewControllerDeferredContent) {
+            deferredContentInflater = new DeferredContentInflater((ViewControllerDeferredContent)controller);
+        }
+
+        if (controller instanceof ViewControllerIdle) {
+            idleQueue = new ViewControllerIdleQueue(lifecycle, (ViewControllerIdle)controller);
+        }
     }
 
     /**
@@ -53,6 +102,29 @@ public class ViewControllerActivityDelegate {
      * @param savedInstanceState Pass {@code savedInstanceState} parameter here.
      */
     public void onCreate(@Nullable Bundle savedInstanceState) {
+        Object lastNonConfigurationInstance = null;
+
+        if (controller instanceof ViewControllerRetain) {
+            // FragmentActivity keeps its own object as the non-configuration instance.
+            lastNonConfigurationInstance = (owner instanceof FragmentActivity
+                    ? ((FragmentActivity)owner).getLastCustomNonConfigurationInstance()
+                    : owner.getLastNonConfigurationInstance());
+        }
+
+        onCreate(savedInstanceState, lastNonConfigurationInstance);
+    }
+
+    /**
+     * Call this method from {@link Activity#onCreate(Bundle savedInstanceState)}
+     * after {@code super.onCreate(savedInstanceState)}, if the non-configuration instance is stored
+     * somewhere else (by default, {@link #onCreate(Bundle savedInstanceState)} uses
+     * {@code getLastCustomNonConfigurationInstance()} for the {@code FragmentActivity}
+     * and {@link Activity#getLastNonConfigurationInstance()} for other activities).
+     *
+     * @param savedInstanceState Pass {@code savedInstanceState} parameter here.
+     * @param lastNonConfigurationInstance Pass {@code getLastCustomNonConfigurationInstance()} here.
+     */
+    public void onCreate(@Nullable Bundle savedInstanceState, @Nullable Object lastNonConfigurationInstance) {
         if (state == STATE_DESTROYED || isFinished) {
             return;
         }
@@ -64,16 +136,39 @@ public class ViewControllerActivityDelegate {
         }
 
         state = STATE_CREATED;
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
         Intent intent = owner.getIntent();
 
         // Checking intent for null is redundant, but leaved here for the great justice.
-        controller.onControllerCreate(intent == null ? null : intent.getExtras());
+        Bundle extras = (intent == null ? null : intent.getExtras());
+
+        handoff = new ViewControllerHandoff(lifecycle, extras, controller.getClass().getClassLoader());
+        restoreRetainedStore(savedInstanceState);
+        ViewControllerStateStore.preload(owner, savedInstanceState);
+        savedChildrenState = savedInstanceState;
+        controller.onControllerCreate(extras);
+        savedChildrenState = null;
 
         if (isFinished) {
             return;
         }
 
-        if (savedInstanceState != null) {
+        if (controller instanceof ViewControllerRetain && lastNonConfigurationInstance instanceof RetainedInstance) {
+            ((ViewControllerRetain)controller).onControllerRestoreRetainedObject(
+                    ((RetainedInstance)lastNonConfigurationInstance).object);
+
+            if (isFinished) {
+                return;
+            }
+        } else if (savedInstanceState != null) {
+            restoreStateSnapshot(savedInstanceState);
+
+            if (savedState != null) {
+                savedState.restore(savedInstanceState);
+            }
+
+            restoreStateFields(savedInstanceState);
+            restoreLazyState(savedInstanceState);
             controller.onControllerRestoreInstanceState(savedInstanceState);
 
             if (isFinished) {
@@ -81,11 +176,42 @@ public class ViewControllerActivityDelegate {
             }
         }
 
-        contentLayoutResId = controller.onControllerGetContentLayoutId();
+        if (startupTasks != null) {
+            startupTasks.launch();
+        }
+
+        View contentView = null;
+
+        if (controller instanceof ViewControllerContentViewProvider) {
+            contentView = ((ViewControllerContentViewProvider)controller).onControllerCreateContentView(owner,
+                    (ViewGroup)owner.findViewById(android.R.id.content));
+
+            hasContentView = (contentView != null);
+        } else {
+            contentLayoutResId = controller.onControllerGetContentLayoutId();
+            hasContentView = (contentLayoutResId != 0);
+        }
+
+        if (!isFinished && hasContentView) {
+            if (contentView == null) {
+                contentLayoutResPath = resolveContentLayout(contentLayoutResId);
+                setContentView(contentLayoutResId);
+            } else if (contentView.getLayoutParams() == null) {
+                owner.setContentView(contentView);
+            } else {
+                owner.setContentView(contentView, contentView.getLayoutParams());
+            }
 
-        if (!isFinished && contentLayoutResId != 0) {
-            owner.setContentView(contentLayoutResId);
+            awaitStartupTasks(ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED);
             controller.onControllerContentViewCreated();
+
+            if (!isFinished && children != null) {
+                children.dispatchContentViewCreated(getView());
+            }
+
+            if (!isFinished && deferredContentInflater != null) {
+                deferredContentInflater.attach(getView());
+            }
         }
     }
 
@@ -123,7 +249,10 @@ public class ViewControllerActivityDelegate {
         }
 
         state = STATE_STARTED;
+        awaitStartupTasks(ViewControllerStartupTasks.BARRIER_START);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
         controller.onControllerStart();
+        moveChildrenTo(ViewControllerLifecycle.SPAN_STARTED);
     }
 
     /**
@@ -136,7 +265,10 @@ public class ViewControllerActivityDelegate {
 
         // STATE_INSTANCE_STATE_SAVED - Should not happen, but handled for the great justice.
         if (state == STATE_INSTANCE_STATE_SAVED) {
+            awaitStartupTasks(ViewControllerStartupTasks.BARRIER_START);
+            lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
             controller.onControllerStart();
+            moveChildrenTo(ViewControllerLifecycle.SPAN_STARTED);
         } else if (state != STATE_STARTED) {
             throw new IllegalStateException(
                     "onResume() was called with an invalid state ("
@@ -144,11 +276,14 @@ public class ViewControllerActivityDelegate {
                             + "), perhaps you forgot to call onStart()?");
         }
 
+        invalidateStateSnapshot();
         state = STATE_RESUMED;
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
         controller.onControllerResume();
+        moveChildrenTo(ViewControllerLifecycle.SPAN_RESUMED);
 
         if (!isFinished && hasWindowFocus) {
-            controller.onControllerFocus();
+            dispatchFocus();
         }
     }
 
@@ -173,11 +308,16 @@ public class ViewControllerActivityDelegate {
 
         state = STATE_STARTED;
 
-        if (hasWindowFocus) {
-            controller.onControllerBlur();
+        if (hasWindowFocus || isBlurPending) {
+            // Pending blur is delivered right now, so it is always called before onControllerPause().
+            cancelPendingBlur();
+            dispatchBlur();
         }
 
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        moveChildrenTo(ViewControllerLifecycle.SPAN_STARTED);
         controller.onControllerPause();
+        createStateSnapshot();
         controller.onControllerPersistUserData();
     }
 
@@ -199,6 +339,8 @@ public class ViewControllerActivityDelegate {
         }
 
         state = STATE_CREATED;
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+        moveChildrenTo(ViewControllerLifecycle.SPAN_CREATED);
         controller.onControllerStop();
     }
 
@@ -217,7 +359,16 @@ public class ViewControllerActivityDelegate {
                             + "), perhaps you forgot to call onStop()?");
         }
 
+        // Activity may be finished without calling finish() (eg. by finishAffinity() or FLAG_ACTIVITY_CLEAR_TOP).
+        lifecycle.setFinishing(isFinished || owner.isFinishing());
         state = STATE_DESTROYED;
+        moveChildrenTo(ViewControllerLifecycle.SPAN_NONE);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+        invalidateStateSnapshot();
+
+        if (deferredContentInflater != null) {
+            deferredContentInflater.detach();
+        }
     }
 
     /**
@@ -239,9 +390,57 @@ public class ViewControllerActivityDelegate {
         }
 
         state = STATE_INSTANCE_STATE_SAVED;
+
+        if (userDataWriter != null) {
+            userDataWriter.flush();
+        }
+
+        if (retainedStore != null) {
+            retainedStore.save(outState);
+        }
+
+        if (children != null) {
+            children.save(outState);
+        }
+
+        if (controller instanceof ViewControllerRetain && owner.isChangingConfigurations()) {
+            // The instance state is still saved below, in case the retained object doesn't come back
+            // (eg. onRetainNonConfigurationInstance() is not forwarded to the delegate).
+            retainedObject = ((ViewControllerRetain)controller).onControllerRetainObject();
+        }
+
+        saveStateSnapshot(outState);
+
+        if (savedState != null) {
+            savedState.save(outState);
+        }
+
+        saveStateFields(outState);
         controller.onControllerSaveInstanceState(outState);
     }
 
+    /**
+     * Return value from this method from {@link Activity#onRetainNonConfigurationInstance()}
+     * (or from {@code onRetainCustomNonConfigurationInstance()} for the {@code FragmentActivity}).
+     * This is required only for view controllers which implement {@link ViewControllerRetain}.
+     *
+     * @return The non-configuration instance, or {@code null}.
+     */
+    @Nullable
+    public Object onRetainNonConfigurationInstance() {
+        if (!(controller instanceof ViewControllerRetain) || state == STATE_DESTROYED) {
+            return null;
+        }
+
+        // Usually the object is already retained in onSaveInstanceState().
+        Object object = (retainedObject == null
+                ? ((ViewControllerRetain)controller).onControllerRetainObject()
+                : retainedObject);
+
+        retainedObject = null;
+        return (object == null ? null : new RetainedInstance(object));
+    }
+
     /**
      * Call this method from {@link Activity#onWindowFocusChanged(boolean hasFocus)}
      * after {@code super.onWindowFocusChanged(hasFocus)}.
@@ -252,15 +451,119 @@ public class ViewControllerActivityDelegate {
         if (hasFocus && !hasWindowFocus) {
             hasWindowFocus = true;
 
-            if (state == STATE_RESUMED) {
-                controller.onControllerFocus();
+            if (isBlurPending) {
+                // Focus is back within the debounce window, so the view controller was not blurred at all.
+                cancelPendingBlur();
+            } else if (state == STATE_RESUMED) {
+                dispatchFocus();
             }
         } else if (!hasFocus && hasWindowFocus) {
             hasWindowFocus = false;
 
             if (state == STATE_RESUMED) {
-                controller.onControllerBlur();
+                if (focusDebounceDelay > 0L) {
+                    postPendingBlur();
+                } else {
+                    dispatchBlur();
+                }
+            }
+        }
+    }
+
+    /**
+     * Call this method from {@link Activity#onConfigurationChanged(Configuration newConfig)}
+     * after {@code super.onConfigurationChanged(newConfig)}.
+     * <p>This is required only for view controllers which implement {@link ViewControllerConfigurationAware}.</p>
+     *
+     * @param newConfig Pass {@code newConfig} parameter here.
+     */
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        if (state == STATE_DESTROYED
+                || state == STATE_INITIALIZED
+                || isFinished
+                || !(controller instanceof ViewControllerConfigurationAware)) {
+
+            return;
+        }
+
+        ((ViewControllerConfigurationAware)controller).onControllerConfigurationChanged(newConfig);
+
+        // Content views from the ViewControllerContentViewProvider are never re-created.
+        if (isFinished || controller instanceof ViewControllerContentViewProvider) {
+            return;
+        }
+
+        int layoutResId = controller.onControllerGetContentLayoutId();
+        String layoutResPath = resolveContentLayout(layoutResId);
+
+        boolean isSameLayout = (layoutResId == contentLayoutResId
+                && (layoutResPath == null ? contentLayoutResPath == null : layoutResPath.equals(contentLayoutResPath)));
+
+        if (isFinished || isSameLayout) {
+            return;
+        }
+
+        // Listeners and animations are usually bound to views in onControllerStart() and later,
+        // so the view controller is stopped while the content view is replaced, and then started again.
+        int restartState = state;
+
+        if (state == STATE_RESUMED) {
+            onPause();
+        }
+
+        if (state == STATE_STARTED) {
+            onStop();
+        }
+
+        if (isFinished) {
+            return;
+        }
+
+        if (deferredContentInflater != null) {
+            deferredContentInflater.detach();
+        }
+
+        if (children != null) {
+            children.dispatchContentViewDestroyed();
+        }
+
+        ViewGroup contentParent = owner.findViewById(android.R.id.content);
+        SparseArray<Parcelable> hierarchyState = new SparseArray<>();
+
+        if (hasContentView) {
+            contentParent.saveHierarchyState(hierarchyState);
+        }
+
+        contentLayoutResId = layoutResId;
+        contentLayoutResPath = layoutResPath;
+        hasContentView = (layoutResId != 0);
+
+        if (hasContentView) {
+            setContentView(layoutResId);
+            controller.onControllerContentViewCreated();
+
+            if (!isFinished && children != null) {
+                children.dispatchContentViewCreated(getView());
             }
+
+            if (!isFinished && deferredContentInflater != null) {
+                deferredContentInflater.attach(getView());
+            }
+
+            if (!isFinished) {
+                // Views with the same ids get their state back, like after the re-creation of the activity.
+                contentParent.restoreHierarchyState(hierarchyState);
+            }
+        } else {
+            contentParent.removeAllViews();
+        }
+
+        if (restartState == STATE_STARTED || restartState == STATE_RESUMED) {
+            onStart();
+        }
+
+        if (restartState == STATE_RESUMED) {
+            onResume();
         }
     }
 
@@ -278,6 +581,374 @@ public class ViewControllerActivityDelegate {
      */
     @Nullable
     public View getView() {
-        return (contentLayoutResId == 0 ? null : owner.findViewById(android.R.id.content));
+        return (hasContentView ? owner.findViewById(android.R.id.content) : null);
+    }
+
+    /**
+     * Set the debounce window for focus changes. If the window loses focus and gets it back within the given delay
+     * (eg. because of short-lived dialog or permission prompt), neither {@link ViewController#onControllerBlur()}
+     * nor {@link ViewController#onControllerFocus()} are called. Pending blur is always delivered
+     * before {@link ViewController#onControllerPause()}. Default is {@code 0} (no debounce).
+     *
+     * @param delayMillis Debounce window in milliseconds, or {@code 0} to disable debounce.
+     */
+    @MainThread
+    public void setFocusDebounceDelay(long delayMillis) {
+        if (delayMillis < 0L) {
+            throw new IllegalArgumentException("Focus debounce delay must not be negative (" + delayMillis + ").");
+        }
+
+        focusDebounceDelay = delayMillis;
+
+        if (delayMillis == 0L && isBlurPending) {
+            cancelPendingBlur();
+            pendingBlurRunnable.run();
+        }
+    }
+
+    /**
+     * Invalidate the state snapshot, if the managed view controller implements {@link ViewControllerStateSnapshot}.
+     * Call it if the instance state was changed after {@link ViewController#onControllerPause()}, so the snapshot
+     * will be created again when the instance state is saved.
+     */
+    public void invalidateStateSnapshot() {
+        if (stateSnapshotMarshaller != null) {
+            stateSnapshotMarshaller.cancel();
+            stateSnapshotMarshaller = null;
+        }
+    }
+
+    /**
+     * Check whether the managed view controller is destroyed (or is going to be destroyed) for good.
+     * Unlike the destruction because of configuration change (or after the instance state was saved),
+     * it will not be re-created. The result is computed at call time, so it is valid
+     * in {@link ViewController#onControllerPause()} and {@link ViewController#onControllerStop()}.
+     *
+     * @return {@code true} if the view controller is finishing.
+     */
+    public boolean isFinishing() {
+        return isFinished || owner.isFinishing();
+    }
+
+    /**
+     * Returns the lifecycle of the managed view controller.
+     *
+     * @return The lifecycle.
+     */
+    @NonNull
+    public ViewControllerLifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    /**
+     * Returns the executor for background work, bound to the lifecycle of the managed view controller.
+     * The executor is created on first call.
+     *
+     * @return The executor.
+     */
+    @NonNull
+    public ViewControllerExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ViewControllerExecutor(lifecycle);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Returns the queue of tasks, which are executed when the main thread is idle.
+     * The queue is created on first call (or in the constructor, if the managed view controller
+     * implements {@link ViewControllerIdle}).
+     *
+     * @return The idle queue.
+     */
+    @NonNull
+    public ViewControllerIdleQueue getIdleQueue() {
+        if (idleQueue == null) {
+            idleQueue = new ViewControllerIdleQueue(lifecycle);
+        }
+
+        return idleQueue;
+    }
+
+    /**
+     * Returns the write-behind helper for persisting user data. The writer is created on first call.
+     *
+     * @return The user data writer.
+     */
+    @NonNull
+    public ViewControllerUserDataWriter getUserDataWriter() {
+        if (userDataWriter == null) {
+            userDataWriter = new ViewControllerUserDataWriter(lifecycle);
+        }
+
+        return userDataWriter;
+    }
+
+    /**
+     * Returns initialization tasks of the managed view controller. Tasks should be added
+     * in {@link ViewController#onControllerCreate(Bundle extras)}. Tasks are created on first call.
+     *
+     * @return The startup tasks.
+     */
+    @NonNull
+    public ViewControllerStartupTasks getStartupTasks() {
+        if (startupTasks == null) {
+            startupTasks = new ViewControllerStartupTasks();
+        }
+
+        return startupTasks;
+    }
+
+    /**
+     * Returns the queue of UI updates, which are coalesced and applied at most once per frame
+     * while the managed view controller is started. The queue is created on first call.
+     *
+     * @return The update queue.
+     */
+    @NonNull
+    public ViewControllerUpdateQueue getUpdateQueue() {
+        if (updateQueue == null) {
+            updateQueue = new ViewControllerUpdateQueue(lifecycle);
+        }
+
+        return updateQueue;
+    }
+
+    /**
+     * Returns the registry of resources (listeners, receivers, observers), which are registered only while
+     * the managed view controller is inside of the given lifecycle span. The registry is created on first call.
+     *
+     * @return The resource registry.
+     */
+    @NonNull
+    public ViewControllerResourceRegistry getResourceRegistry() {
+        if (resourceRegistry == null) {
+            resourceRegistry = new ViewControllerResourceRegistry(lifecycle);
+        }
+
+        return resourceRegistry;
+    }
+
+    /**
+     * Returns the store for large instance state, which keeps values in memory (and on disk)
+     * instead of the {@link Bundle}. The store is created on first call.
+     *
+     * @return The state store.
+     */
+    @NonNull
+    public ViewControllerStateStore getStateStore() {
+        if (stateStore == null) {
+            stateStore = new ViewControllerStateStore(owner, lifecycle);
+        }
+
+        return stateStore;
+    }
+
+    /**
+     * Returns the typed container for the instance state, which marshals only modified properties.
+     * Properties should be declared in {@link ViewController#onControllerCreate(Bundle extras)}.
+     * The container is created on first call.
+     *
+     * @return The saved state.
+     */
+    @NonNull
+    public ViewControllerSavedState getSavedState() {
+        if (savedState == null) {
+            savedState = new ViewControllerSavedState(controller.getClass().getClassLoader());
+        }
+
+        return savedState;
+    }
+
+    /**
+     * Returns objects passed to the managed view controller using {@link ViewControllerHandoff}.
+     * Available since {@link ViewController#onControllerCreate(Bundle extras)}.
+     *
+     * @return The handoff.
+     */
+    @NonNull
+    public ViewControllerHandoff getHandoff() {
+        if (handoff == null) {
+            throw new IllegalStateException("Handoff is not available before onCreate().");
+        }
+
+        return handoff;
+    }
+
+    /**
+     * Returns the process-level store for derived data, which survives configuration changes and is cleared
+     * when the managed view controller is destroyed for good. The store is created on first call.
+     *
+     * @return The retained store.
+     */
+    @NonNull
+    public ViewControllerRetainedStore getRetainedStore() {
+        if (retainedStore == null) {
+            retainedStore = new ViewControllerRetainedStore(lifecycle, controller.getClass(), null);
+        }
+
+        return retainedStore;
+    }
+
+    /**
+     * Returns the container of lightweight child view controllers, which follow the lifecycle of the managed
+     * view controller and save their instance state into its instance state. The container is created on first call.
+     * Add children in {@link ViewController#onControllerCreate(Bundle extras)}, so their instance state
+     * could be restored.
+     *
+     * @return The children.
+     */
+    @NonNull
+    public ViewControllerChildren getChildren() {
+        if (children == null) {
+            children = new ViewControllerChildren(savedChildrenState);
+            savedChildrenState = null;
+        }
+
+        return children;
+    }
+
+    private void setContentView(int layoutResId) {
+        // Activity inflates the content with the window inflater, which is returned by getLayoutInflater().
+        ViewControllerLayoutInflaterFactory.install(owner.getLayoutInflater());
+        owner.setContentView(layoutResId);
+    }
+
+    @Nullable
+    private String resolveContentLayout(int layoutResId) {
+        if (layoutResId == 0 || !(controller instanceof ViewControllerConfigurationAware)) {
+            return null;
+        }
+
+        // Resolved file name (eg. "res/layout-land/main.xml") changes when another qualifier matches.
+        TypedValue value = new TypedValue();
+        owner.getResources().getValue(layoutResId, value, true);
+        return (value.string == null ? null : value.string.toString());
+    }
+
+    private void dispatchFocus() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        if (deferredContentInflater != null) {
+            deferredContentInflater.inflateNow();
+        }
+
+        controller.onControllerFocus();
+        moveChildrenTo(ViewControllerLifecycle.SPAN_FOCUSED);
+    }
+
+    private void dispatchBlur() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        moveChildrenTo(ViewControllerLifecycle.SPAN_RESUMED);
+        controller.onControllerBlur();
+    }
+
+    private void moveChildrenTo(int span) {
+        if (children != null) {
+            children.moveTo(span);
+        }
+    }
+
+    private void postPendingBlur() {
+        if (focusDebounceHandler == null) {
+            focusDebounceHandler = new Handler(Looper.getMainLooper());
+        }
+
+        isBlurPending = true;
+        focusDebounceHandler.postDelayed(pendingBlurRunnable, focusDebounceDelay);
+    }
+
+    private void cancelPendingBlur() {
+        if (isBlurPending) {
+            isBlurPending = false;
+            focusDebounceHandler.removeCallbacks(pendingBlurRunnable);
+        }
+    }
+
+    private void awaitStartupTasks(int barrier) {
+        if (startupTasks != null) {
+            startupTasks.await(barrier);
+        }
+    }
+
+    private void restoreStateSnapshot(@NonNull Bundle savedInstanceState) {
+        if (controller instanceof ViewControllerStateSnapshot) {
+            StateSnapshotMarshaller.restore(savedInstanceState, controller.getClass().getClassLoader());
+        }
+    }
+
+    private void restoreRetainedStore(@Nullable Bundle savedInstanceState) {
+        String ownerId = (savedInstanceState == null
+                ? null
+                : ViewControllerRetainedStore.getSavedOwnerId(savedInstanceState));
+
+        if (ownerId != null) {
+            retainedStore = new ViewControllerRetainedStore(lifecycle, controller.getClass(), ownerId);
+        }
+    }
+
+    private void restoreStateFields(@NonNull Bundle savedInstanceState) {
+        ViewControllerStateCodec<Object> codec = StateCodecs.get(controller.getClass());
+
+        if (codec != null) {
+            codec.restore(controller, savedInstanceState);
+        }
+    }
+
+    private void saveStateFields(@NonNull Bundle outState) {
+        ViewControllerStateCodec<Object> codec = StateCodecs.get(controller.getClass());
+
+        if (codec != null) {
+            codec.save(controller, outState);
+        }
+    }
+
+    private void restoreLazyState(@NonNull Bundle savedInstanceState) {
+        if (controller instanceof ViewControllerLazyRestore) {
+            ((ViewControllerLazyRestore)controller).onControllerRestoreLazyInstanceState(
+                    new ViewControllerLazyState(savedInstanceState, controller.getClass().getClassLoader()));
+        }
+    }
+
+    private void createStateSnapshot() {
+        if (!(controller instanceof ViewControllerStateSnapshot)) {
+            return;
+        }
+
+        invalidateStateSnapshot();
+        Bundle snapshot = ((ViewControllerStateSnapshot)controller).onControllerCreateStateSnapshot();
+
+        if (snapshot != null) {
+            stateSnapshotMarshaller = new StateSnapshotMarshaller(snapshot);
+            stateSnapshotMarshaller.start();
+        }
+    }
+
+    private void saveStateSnapshot(@NonNull Bundle outState) {
+        if (!(controller instanceof ViewControllerStateSnapshot)) {
+            return;
+        }
+
+        if (stateSnapshotMarshaller != null) {
+            stateSnapshotMarshaller.writeTo(outState);
+            stateSnapshotMarshaller = null;
+            return;
+        }
+
+        // Snapshot was invalidated (or not created yet), so save it synchronously.
+        Bundle snapshot = ((ViewControllerStateSnapshot)controller).onControllerCreateStateSnapshot();
+
+        if (snapshot != null) {
+            outState.putAll(snapshot);
+        }
+    }
+
+    private static class RetainedInstance {
+        private Object object;
+
+        RetainedInstance(@NonNull Object object) {
+            this.object = object;
+        }
     }
 }
@@ -0,0 +1,110 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Lightweight child view controller, which is hosted by the parent view controller using {@link ViewControllerChildren}.
+ * It has the same lifecycle as the parent, but without fragment transactions and {@code FragmentManager} overhead.
+ * <p>If {@link #onControllerGetContentLayoutId()} returns non-zero layout id, the layout is inflated into
+ * the container view. Otherwise the container view itself becomes the content view of the child.</p>
+ * <p>Child view controllers can host their own children using {@link #getChildren()}.</p>
+ */
+public abstract class ViewControllerChild implements ViewController {
+    String tag;
+    View view;
+    ViewControllerChildren children;
+    Bundle savedChildrenState;
+
+    /**
+     * Returns the tag, with which this child was added.
+     *
+     * @return The tag.
+     */
+    @SuppressWarnings("unused")
+    @NonNull
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Returns the container of child view controllers of this view controller. The container is created on first call.
+     *
+     * @return The children.
+     */
+    @MainThread
+    @NonNull
+    public ViewControllerChildren getChildren() {
+        if (children == null) {
+            children = new ViewControllerChildren(savedChildrenState);
+            savedChildrenState = null;
+        }
+
+        return children;
+    }
+
+    @Override
+    public void onControllerCreate(@Nullable Bundle extras) {
+    }
+
+    @Override
+    public void onControllerRestoreInstanceState(@NonNull Bundle savedInstanceState) {
+    }
+
+    @Override
+    public int onControllerGetContentLayoutId() {
+        return 0;
+    }
+
+    @Override
+    public void onControllerContentViewCreated() {
+    }
+
+    @Override
+    public void onControllerStart() {
+    }
+
+    @Override
+    public void onControllerResume() {
+    }
+
+    @Override
+    public void onControllerFocus() {
+    }
+
+    @Override
+    public void onControllerBlur() {
+    }
+
+    @Override
+    public void onControllerPause() {
+    }
+
+    @Override
+    public void onControllerPersistUserData() {
+    }
+
+    @Override
+    public void onControllerStop() {
+    }
+
+    @Override
+    public void onControllerSaveInstanceState(@NonNull Bundle outState) {
+    }
+
+    @Nullable
+    @Override
+    public View getView() {
+        return view;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @Override
+    public <T extends View> T findViewById(int id) {
+        return (view == null ? null : (T)view.findViewById(id));
+    }
+}
@@ -0,0 +1,316 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.IdRes;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import java.util.ArrayList;
+
+/**
+ * Container of child view controllers (see {@link ViewControllerChild}), which are bound to sub-views
+ * of the parent content view. This is much cheaper than nested fragments for small reusable pieces of UI.
+ * <p>Add children in {@link ViewController#onControllerCreate(Bundle extras)}. Child is created (and restored)
+ * immediately. The content view of the child is created right after
+ * {@link ViewController#onControllerContentViewCreated()} of the parent. If the parent content view is created
+ * (or re-created) while the parent is already started, children are stopped while their content views
+ * are replaced, and then started again.</p>
+ * <p>Every lifecycle transition of the parent is passed to children in nesting order: when the parent enters
+ * the state (start, resume, focus), children follow it in the order of addition; when the parent exits the state
+ * (blur, pause, stop), children exit it first, in the reverse order. Instance state of every child is saved
+ * in its own slot of the parent instance state, so tags of children must be unique.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * public void onControllerCreate(@Nullable Bundle extras) {
+ *     getControllerChildren().add("header", R.id.header, new HeaderController(), null);
+ *     getControllerChildren().add("player", R.id.player_container, new PlayerController(), extras);
+ * }
+ * }</pre>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerChildren {
+    private static final String KEY_CHILDREN = "com.eightsines.holycycle.ViewControllerChildren.CHILDREN";
+
+    private Bundle savedChildrenState;
+    private ArrayList<Entry> entries = new ArrayList<>();
+    private View parentView;
+    private int span = ViewControllerLifecycle.SPAN_CREATED;
+
+    ViewControllerChildren(@Nullable Bundle savedInstanceState) {
+        savedChildrenState = (savedInstanceState == null ? null : savedInstanceState.getBundle(KEY_CHILDREN));
+    }
+
+    /**
+     * Add the child view controller.
+     *
+     * @param tag Unique tag of the child, used to save its instance state.
+     * @param containerId Id of the sub-view of the parent content view, to which the child is bound.
+     * @param child The child view controller.
+     * @param arguments Arguments passed to {@link ViewController#onControllerCreate(Bundle extras)} of the child.
+     * @param <T> Type of the child.
+     * @return The same child.
+     */
+    @MainThread
+    @NonNull
+    public <T extends ViewControllerChild> T add(@NonNull String tag,
+            @IdRes int containerId,
+            @NonNull T child,
+            @Nullable Bundle arguments) {
+
+        if (span == ViewControllerLifecycle.SPAN_NONE) {
+            throw new IllegalStateException("Unable to add the child \"" + tag + "\", parent is already destroyed.");
+        }
+
+        if (find(tag) != null) {
+            throw new IllegalArgumentException("Child \"" + tag + "\" is already added.");
+        }
+
+        if (child.tag != null) {
+            throw new IllegalArgumentException("Child \"" + child.tag + "\" is already added to some parent.");
+        }
+
+        Entry entry = new Entry(tag, containerId, child);
+        entries.add(entry);
+
+        Bundle savedInstanceState = (savedChildrenState == null ? null : savedChildrenState.getBundle(tag));
+
+        child.tag = tag;
+        child.savedChildrenState = savedInstanceState;
+        child.onControllerCreate(arguments);
+
+        if (savedInstanceState != null) {
+            child.onControllerRestoreInstanceState(savedInstanceState);
+        }
+
+        if (parentView != null) {
+            createContentView(entry);
+        }
+
+        moveEntryTo(entry, span);
+        return child;
+    }
+
+    /**
+     * Remove the child view controller. It is moved through the remaining lifecycle (blur, pause, stop),
+     * and its content view is removed from the container (if it was inflated).
+     *
+     * @param child The child view controller.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    public void remove(@NonNull ViewControllerChild child) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+
+            if (entry.child == child) {
+                entries.remove(i);
+                moveEntryTo(entry, ViewControllerLifecycle.SPAN_NONE);
+                destroyContentView(entry);
+
+                child.tag = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find the child view controller by tag.
+     *
+     * @param tag Tag of the child.
+     * @param <T> Type of the child.
+     * @return The child, or {@code null} if there is no such child.
+     */
+    @SuppressWarnings("unchecked")
+    @MainThread
+    @Nullable
+    public <T extends ViewControllerChild> T find(@NonNull String tag) {
+        for (Entry entry : entries) {
+            if (entry.tag.equals(tag)) {
+                return (T)entry.child;
+            }
+        }
+
+        return null;
+    }
+
+    void dispatchContentViewCreated(@Nullable View parentView) {
+        // Parent content view may be re-created while running (eg. after the configuration change),
+        // so children are moved back to the created state while their content views are replaced.
+        moveEntriesTo(Math.min(span, ViewControllerLifecycle.SPAN_CREATED), false);
+        dispatchContentViewDestroyed();
+
+        if (parentView != null) {
+            this.parentView = parentView;
+
+            for (Entry entry : entries.toArray(new Entry[entries.size()])) {
+                createContentView(entry);
+            }
+        }
+
+        moveEntriesTo(span, true);
+    }
+
+    void dispatchContentViewDestroyed() {
+        if (parentView == null) {
+            return;
+        }
+
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            destroyContentView(entries.get(i));
+        }
+
+        parentView = null;
+    }
+
+    void moveTo(int span) {
+        if (span != this.span) {
+            boolean isEntering = (span > this.span);
+            this.span = span;
+            moveEntriesTo(span, isEntering);
+        }
+    }
+
+    private void moveEntriesTo(int span, boolean isEntering) {
+        Entry[] currentEntries = entries.toArray(new Entry[entries.size()]);
+
+        if (isEntering) {
+            for (Entry entry : currentEntries) {
+                moveEntryTo(entry, span);
+            }
+        } else {
+            for (int i = currentEntries.length - 1; i >= 0; i--) {
+                moveEntryTo(currentEntries[i], span);
+            }
+        }
+    }
+
+    void save(@NonNull Bundle outState) {
+        Bundle childrenState = new Bundle();
+
+        for (Entry entry : entries) {
+            Bundle childState = new Bundle();
+            entry.child.onControllerSaveInstanceState(childState);
+
+            if (entry.child.children != null) {
+                entry.child.children.save(childState);
+            }
+
+            childrenState.putBundle(entry.tag, childState);
+        }
+
+        outState.putBundle(KEY_CHILDREN, childrenState);
+    }
+
+    private void createContentView(@NonNull Entry entry) {
+        View containerView = parentView.findViewById(entry.containerId);
+
+        if (containerView == null) {
+            throw new IllegalStateException("Container view for the child \"" + entry.tag + "\" is not found.");
+        }
+
+        ViewControllerChild child = entry.child;
+        int layoutResId = child.onControllerGetContentLayoutId();
+
+        if (layoutResId == 0) {
+            child.view = containerView;
+        } else if (containerView instanceof ViewGroup) {
+            ViewGroup containerGroup = (ViewGroup)containerView;
+
+            child.view = ViewControllerLayoutInflaterFactory.wrap(LayoutInflater.from(containerGroup.getContext()))
+                    .inflate(layoutResId, containerGroup, false);
+
+            containerGroup.addView(child.view);
+            entry.isViewInflated = true;
+        } else {
+            throw new IllegalStateException("Container view for the child \"" + entry.tag + "\" is not a ViewGroup.");
+        }
+
+        child.onControllerContentViewCreated();
+
+        if (child.children != null) {
+            child.children.dispatchContentViewCreated(child.view);
+        }
+    }
+
+    private void destroyContentView(@NonNull Entry entry) {
+        ViewControllerChild child = entry.child;
+
+        if (child.children != null) {
+            child.children.dispatchContentViewDestroyed();
+        }
+
+        if (entry.isViewInflated && child.view != null && child.view.getParent() instanceof ViewGroup) {
+            ((ViewGroup)child.view.getParent()).removeView(child.view);
+        }
+
+        child.view = null;
+        entry.isViewInflated = false;
+    }
+
+    private static void moveEntryTo(@NonNull Entry entry, int span) {
+        ViewControllerChild child = entry.child;
+
+        // Parent first when entering the state, children first when exiting it.
+        while (entry.span < span) {
+            entry.span++;
+
+            switch (entry.span) {
+                case ViewControllerLifecycle.SPAN_STARTED:
+                    child.onControllerStart();
+                    break;
+
+                case ViewControllerLifecycle.SPAN_RESUMED:
+                    child.onControllerResume();
+                    break;
+
+                case ViewControllerLifecycle.SPAN_FOCUSED:
+                    child.onControllerFocus();
+                    break;
+            }
+
+            if (child.children != null) {
+                child.children.moveTo(entry.span);
+            }
+        }
+
+        while (entry.span > span) {
+            if (child.children != null) {
+                child.children.moveTo(entry.span - 1);
+            }
+
+            switch (entry.span) {
+                case ViewControllerLifecycle.SPAN_FOCUSED:
+                    child.onControllerBlur();
+                    break;
+
+                case ViewControllerLifecycle.SPAN_RESUMED:
+                    child.onControllerPause();
+                    child.onControllerPersistUserData();
+                    break;
+
+                case ViewControllerLifecycle.SPAN_STARTED:
+                    child.onControllerStop();
+                    break;
+            }
+
+            entry.span--;
+        }
+    }
+
+    private static class Entry {
+        private String tag;
+        private int containerId;
+        private ViewControllerChild child;
+        private int span = ViewControllerLifecycle.SPAN_CREATED;
+        private boolean isViewInflated;
+
+        Entry(@NonNull String tag, int containerId, @NonNull ViewControllerChild child) {
+            this.tag = tag;
+            this.containerId = containerId;
+            this.child = child;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.eightsines.holycycle;
+
+import android.content.res.Configuration;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+/**
+ * Optional extension of the {@link ViewController} for activities, which declare {@code android:configChanges}
+ * in the manifest and handle configuration changes in place (without re-creation).
+ * <p>When the configuration is changed, {@link #onControllerConfigurationChanged(Configuration newConfig)}
+ * is called, and then the content layout is checked. If {@link #onControllerGetContentLayoutId()} returns
+ * another layout, or the same layout id resolves to another resource (eg. {@code layout-land}),
+ * only the content view is inflated again. The running view controller is moved out of the started span first
+ * (blur, pause, stop), then {@link #onControllerContentViewCreated()} is called again, the state of views
+ * with the same ids is restored, and the view controller is moved back (start, resume, focus), so listeners
+ * bound to views in {@link #onControllerStart()} and later are bound to new views.
+ * The view controller instance and all its fields are kept, so references to old views must be updated
+ * in {@link #onControllerContentViewCreated()}.</p>
+ * <p>Content views created by the {@link ViewControllerContentViewProvider} are never re-created.</p>
+ */
+public interface ViewControllerConfigurationAware extends ViewController {
+    /**
+     * Called when the configuration of the device is changed while the view controller is running.
+     * Resources are already updated at this point.
+     *
+     * @param newConfig The new device configuration.
+     */
+    @MainThread
+    void onControllerConfigurationChanged(@NonNull Configuration newConfig);
+}
@@ -0,0 +1,31 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Optional extension of the {@link ViewController} for view controllers, which build their UI in code
+ * instead of inflating it from XML. This avoids XML parsing and reflective view construction,
+ * which is useful for simple, but frequently opened screens.
+ * <p>If the view controller implements this interface, {@link #onControllerGetContentLayoutId()} is not called,
+ * {@link #onControllerCreateContentView(Context context, ViewGroup parent)} is called in its place.
+ * The rest of the lifecycle is the same, including {@link #onControllerContentViewCreated()},
+ * {@link #getView()} and {@link #findViewById(int id)}.</p>
+ */
+public interface ViewControllerContentViewProvider extends ViewController {
+    /**
+     * Called when the view controller wants to create UI.
+     * This will be called between {@link #onControllerCreate(android.os.Bundle extras)}
+     * and {@link #onControllerStart()}, in place of {@link #onControllerGetContentLayoutId()}.
+     * <p>Do not attach the created view to the <var>parent</var>, it will be done by the delegate.</p>
+     *
+     * @param context Context which should be used to create views.
+     * @param parent The view, to which the content view will be attached. Use it only to generate layout params.
+     * @return Return the content view, or {@code null} for non-graphical view controller.
+     */
+    @Nullable
+    View onControllerCreateContentView(@NonNull Context context, @Nullable ViewGroup parent);
+}
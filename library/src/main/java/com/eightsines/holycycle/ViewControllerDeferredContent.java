@@ -0,0 +1,34 @@
+package com.eightsines.holycycle;
+
+import android.support.annotation.IdRes;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.view.ViewStub;
+
+/**
+ * Optional extension of the {@link ViewController} for view controllers, which have secondary parts of UI,
+ * that are not visible to the user at first (for example, content below the fold).
+ * <p>Such parts should be declared in the content layout as {@link ViewStub}s. They will be inflated
+ * after the first frame of the content view is drawn, or when the view controller gains window focus
+ * (whichever comes first), so they don't delay showing the screen.</p>
+ */
+public interface ViewControllerDeferredContent extends ViewController {
+    /**
+     * Called immediately after {@link #onControllerContentViewCreated()} to get the ids of the {@link ViewStub}s,
+     * which should be inflated later. Stubs which can't be found at the moment of inflation are skipped.
+     *
+     * @return Ids of the deferred {@link ViewStub}s, or an empty array.
+     */
+    @NonNull
+    int[] onControllerGetDeferredViewStubIds();
+
+    /**
+     * Called when the deferred {@link ViewStub} was inflated. This will be called after
+     * {@link #onControllerContentViewCreated()} and no later than {@link #onControllerFocus()}
+     * (if the view controller gains window focus at all).
+     *
+     * @param viewStubId Id of the inflated {@link ViewStub}.
+     * @param view The inflated view, which replaced the {@link ViewStub}.
+     */
+    void onControllerDeferredContentInflated(@IdRes int viewStubId, @NonNull View view);
+}
@@ -2,6 +2,7 @@ package com.eightsines.holycycle;
 
 import android.app.Dialog;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import com.eightsines.holycycle.app.ViewControllerDialogFragment;
 
 /**
@@ -19,7 +20,21 @@ public class ViewControllerDialogFragmentDelegate extends ViewControllerFragment
      * @param controller Managed view controller.
      */
     public ViewControllerDialogFragmentDelegate(@NonNull ViewControllerDialog controller) {
-        super(controller);
+        this(controller, null);
+    }
+
+    /**
+     * View controller delegate constructor.
+     * <p>See the {@link ViewControllerDialogFragment} for an example of use.</p>
+     *
+     * @param controller Managed view controller.
+     * @param finishingChecker Tells whether the host fragment is destroyed for good
+     * (see {@link ViewControllerFragmentDelegate.FinishingChecker}).
+     */
+    public ViewControllerDialogFragmentDelegate(@NonNull ViewControllerDialog controller,
+            @Nullable FinishingChecker finishingChecker) {
+
+        super(controller, finishingChecker);
         this.controller = controller;
     }
 
@@ -0,0 +1,264 @@
+package com.eightsines.holycycle;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes background work on behalf of the view controller and cancels it automatically, when the
+ * view controller leaves the lifecycle span, to which the work is bound. By default the work is bound
+ * to the current span, but not deeper than {@link ViewControllerLifecycle#SPAN_RESUMED}: work submitted
+ * in {@link ViewController#onControllerCreate(android.os.Bundle)} is cancelled when the view controller
+ * is destroyed, work submitted in {@link ViewController#onControllerStart()} is cancelled right before
+ * {@link ViewController#onControllerStop()}, and work submitted in {@link ViewController#onControllerResume()}
+ * or later is cancelled right before {@link ViewController#onControllerPause()} (so a transient blur doesn't
+ * cancel it). Use {@link #submit(int, Callable, Callback)} to bind the work to another span
+ * (see {@link ViewControllerLifecycle} for details).
+ * <p>Results are delivered on the main thread, and only if the work was not cancelled.</p>
+ * <p>All executors share one bounded thread pool.</p>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerExecutor implements ViewControllerLifecycle.Observer {
+    private static final int POOL_SIZE = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+    private static final long POOL_KEEP_ALIVE_SECONDS = 30L;
+
+    private static ExecutorService sharedPool;
+
+    /**
+     * Receives the result of the background work on the main thread.
+     *
+     * @param <T> Type of the result.
+     */
+    public interface Callback<T> {
+        /**
+         * Called when the work is successfully completed.
+         *
+         * @param result Result of the work.
+         */
+        void onTaskResult(@Nullable T result);
+
+        /**
+         * Called when the work has thrown an exception.
+         *
+         * @param error The exception.
+         */
+        void onTaskError(@NonNull Throwable error);
+    }
+
+    private ViewControllerLifecycle lifecycle;
+    private ArrayList<Task<?>> tasks = new ArrayList<>();
+    private Handler mainHandler;
+
+    /**
+     * Executor constructor. Mostly you want to use the executor owned by the delegate, but it is possible
+     * to create separate executor for the given lifecycle.
+     *
+     * @param lifecycle The lifecycle, to which submitted work is bound.
+     */
+    public ViewControllerExecutor(@NonNull ViewControllerLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Submit the work. The work will be cancelled when the view controller leaves the current lifecycle span,
+     * or the {@link ViewControllerLifecycle#SPAN_RESUMED} span, whichever is first.
+     *
+     * @param task The work.
+     * @param callback Receives the result on the main thread, can be {@code null}.
+     * @param <T> Type of the result.
+     * @return Future which represents the work.
+     */
+    @MainThread
+    @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> task, @Nullable Callback<T> callback) {
+        return submit(Math.min(lifecycle.getSpan(), ViewControllerLifecycle.SPAN_RESUMED), task, callback);
+    }
+
+    /**
+     * Submit the work, bound to the given lifecycle span. The work will be cancelled when the view controller
+     * leaves this span. For example, work bound to {@link ViewControllerLifecycle#SPAN_FOCUSED} is cancelled
+     * right before {@link ViewController#onControllerBlur()}.
+     *
+     * @param span The span, to which the work is bound. Must be already entered.
+     * @param task The work.
+     * @param callback Receives the result on the main thread, can be {@code null}.
+     * @param <T> Type of the result.
+     * @return Future which represents the work.
+     */
+    @MainThread
+    @NonNull
+    public <T> Future<T> submit(int span, @NonNull Callable<T> task, @Nullable Callback<T> callback) {
+        if (lifecycle.getSpan() == ViewControllerLifecycle.SPAN_NONE) {
+            throw new IllegalStateException("submit() was called outside of the view controller lifecycle.");
+        }
+
+        if (span < ViewControllerLifecycle.SPAN_CREATED || span > lifecycle.getSpan()) {
+            throw new IllegalArgumentException("Invalid span (" + span + ").");
+        }
+
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        Task<T> futureTask = new Task<>(task, callback, span);
+        tasks.add(futureTask);
+        getSharedPool().execute(futureTask);
+
+        return futureTask;
+    }
+
+    /**
+     * Submit the work without result. The work will be cancelled when the view controller
+     * leaves the current lifecycle span, or the {@link ViewControllerLifecycle#SPAN_RESUMED} span,
+     * whichever is first.
+     *
+     * @param task The work.
+     * @return Future which represents the work.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    @NonNull
+    public Future<?> submit(@NonNull Runnable task) {
+        return submit(Executors.<Void>callable(task, null), null);
+    }
+
+    /**
+     * Returns the number of submitted, but not yet finished or cancelled works.
+     *
+     * @return Number of pending works.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    public int getPendingTaskCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Cancel all submitted works.
+     */
+    @MainThread
+    public void cancelAll() {
+        cancelFromSpan(ViewControllerLifecycle.SPAN_CREATED);
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        cancelFromSpan(span);
+    }
+
+    private void cancelFromSpan(int span) {
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            Task<?> task = tasks.get(i);
+
+            if (task.span >= span) {
+                tasks.remove(i);
+                task.cancel(true);
+            }
+        }
+    }
+
+    @NonNull
+    static synchronized ExecutorService getSharedPool() {
+        if (sharedPool == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE,
+                    POOL_SIZE,
+                    POOL_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            return new Thread(runnable, "ViewController #" + threadCount.incrementAndGet());
+                        }
+                    });
+
+            pool.allowCoreThreadTimeOut(true);
+            sharedPool = pool;
+        }
+
+        return sharedPool;
+    }
+
+    private class Task<T> extends FutureTask<T> {
+        private Callback<T> callback;
+        private int span;
+
+        Task(@NonNull Callable<T> callable, @Nullable Callback<T> callback, int span) {
+            super(callable);
+
+            this.callback = callback;
+            this.span = span;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                // Cancelled by the caller through the future, so it is not pending anymore.
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    tasks.remove(this);
+                } else {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            tasks.remove(Task.this);
+                        }
+                    });
+                }
+            } else {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver();
+                    }
+                });
+            }
+        }
+
+        private void deliver() {
+            // Task may be cancelled after it was completed, but before delivering the result.
+            if (!tasks.remove(this)) {
+                return;
+            }
+
+            if (callback == null) {
+                return;
+            }
+
+            T result;
+
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                callback.onTaskError(e.getCause() == null ? e : e.getCause());
+                return;
+            } catch (InterruptedException e) {
+                // Should not happen, because the task is already completed.
+                callback.onTaskError(e);
+                return;
+            }
+
+            callback.onTaskResult(result);
+        }
+    }
+}
@@ -4,14 +4,20 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.support.v4.app.Fragment;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
 import com.eightsines.holycycle.app.ViewControllerFragment;
 import com.eightsines.holycycle.app.ViewControllerDialogFragment;
 import com.eightsines.holycycle.app.ViewControllerPlatformFragment;
@@ -34,9 +40,50 @@ public class ViewControllerFragmentDelegate {
     static final int STATE_STARTED = 4;
     static final int STATE_RESUMED = 5;
 
+    private static final String KEY_LAZY_CONTENT_VIEW_STATE =
+            "com.eightsines.holycycle.ViewControllerFragmentDelegate.LAZY_CONTENT_VIEW_STATE";
+
+    /**
+     * Tells whether the host fragment is destroyed for good. See {@link ViewControllerFragment} for an example.
+     */
+    public interface FinishingChecker {
+        /**
+         * Check whether the host fragment is destroyed (or is going to be destroyed) for good, ie. it is removed
+         * or its activity is finishing, and it will not be re-created.
+         *
+         * @return {@code true} if the host fragment is finishing.
+         */
+        boolean isFragmentFinishing();
+    }
+
     private ViewController controller;
+    private FinishingChecker finishingChecker;
+    private DeferredContentInflater deferredContentInflater;
+    private ViewControllerLifecycle lifecycle = new ViewControllerLifecycle();
+    private ViewControllerExecutor executor;
+    private ViewControllerIdleQueue idleQueue;
+    private ViewControllerUserDataWriter userDataWriter;
+    private ViewControllerStartupTasks startupTasks;
+    private ViewControllerRetainedStore retainedStore;
+    private ViewControllerChildren children;
+    private Bundle savedChildrenState;
+    private ViewControllerHandoff handoff;
+    private ViewControllerSavedState savedState;
+    private ViewControllerStateStore stateStore;
+    private ViewControllerResourceRegistry resourceRegistry;
+    private ViewControllerUpdateQueue updateQueue;
+    private StateSnapshotMarshaller stateSnapshotMarshaller;
+    private Context applicationContext;
     private View contentView;
+    private LayoutInflater lazyContentInflater;
+    private SparseArray<Parcelable> lazyContentViewState;
+    private boolean isContentViewLazy;
+    private Handler focusDebounceHandler;
+    private long focusDebounceDelay;
     private boolean hasWindowFocus;
+    private boolean isBlurPending;
+    private boolean isVisibleToUser = true;
+    private boolean isInstanceStateSaved;
     int state = STATE_INITIALIZED;
 
     private ViewTreeObserver.OnWindowFocusChangeListener windowFocusChangeListener = new ViewTreeObserver.OnWindowFocusChangeListener() {
@@ -45,19 +92,37 @@ public class ViewControllerFragmentDelegate {
             if (hasFocus && !hasWindowFocus) {
                 hasWindowFocus = true;
 
-                if (state == STATE_RESUMED) {
-                    controller.onControllerFocus();
+                if (isBlurPending) {
+                    // Focus is back within the debounce window, so the view controller was not blurred at all.
+                    cancelPendingBlur();
+                } else if (isControllerResumed()) {
+                    dispatchFocus();
                 }
             } else if (!hasFocus && hasWindowFocus) {
                 hasWindowFocus = false;
 
-                if (state == STATE_RESUMED) {
-                    controller.onControllerBlur();
+                if (isControllerResumed()) {
+                    if (focusDebounceDelay > 0L) {
+                        postPendingBlur();
+                    } else {
+                        dispatchBlur();
+                    }
                 }
             }
         }
     };
 
+    private Runnable pendingBlurRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isBlurPending = false;
+
+            if (isControllerResumed()) {
+                dispatchBlur();
+            }
+        }
+    };
+
     /**
      * View controller delegate constructor. Mostly you want use it like
      * {@code new ViewControllerFragmentDelegate(this)}, however it is possible to separate
@@ -68,7 +133,45 @@ public class ViewControllerFragmentDelegate {
      */
     @SuppressWarnings("WeakerAccess")
     public ViewControllerFragmentDelegate(@NonNull ViewController controller) {
+        this(controller, null);
+    }
+
+    /**
+     * View controller delegate constructor.
+     * <p>See the {@link ViewControllerFragment} for an example of use.</p>
+     *
+     * @param controller Managed view controller.
+     * @param finishingChecker Tells whether the host fragment is destroyed for good. If it is {@code null},
+     * the fragment is treated as finishing when it is destroyed without saving the instance state,
+     * which is wrong for fragments in the back stack.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ViewControllerFragmentDelegate(@NonNull ViewController controller,
+            @Nullable FinishingChecker finishingChecker) {
+
         this.controller = controller;
+        this.finishingChecker = finishingChecker;
+
+        if (controller instanceof ViewControllerDeferredContent) {
+            deferredContentInflater = new DeferredContentInflater((ViewControllerDeferredContent)controller);
+        }
+
+        if (controller instanceof ViewControllerIdle) {
+            idleQueue = new ViewControllerIdleQueue(lifecycle, (ViewControllerIdle)controller);
+        }
+    }
+
+    /**
+     * Call this method from {@link Fragment#onAttach(Context context)}
+     * after {@code super.onAttach(context)}.
+     * <p>Unlike {@link #onAttach()}, this method also allows to use helpers which require the context
+     * (like {@link #getStateStore()}).</p>
+     *
+     * @param context Pass {@code context} parameter here.
+     */
+    public void onAttach(@NonNull Context context) {
+        applicationContext = context.getApplicationContext();
+        onAttach();
     }
 
     /**
@@ -110,11 +213,42 @@ public class ViewControllerFragmentDelegate {
         }
 
         state = STATE_CREATED;
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+        handoff = new ViewControllerHandoff(lifecycle, arguments, controller.getClass().getClassLoader());
+        restoreRetainedStore(savedInstanceState);
+
+        if (applicationContext != null) {
+            ViewControllerStateStore.preload(applicationContext, savedInstanceState);
+        }
+
+        savedChildrenState = savedInstanceState;
         controller.onControllerCreate(arguments);
+        savedChildrenState = null;
+        Object retainedObject = (controller instanceof ViewControllerRetain
+                ? RetainedObjects.take(savedInstanceState)
+                : null);
+
+        if (retainedObject != null) {
+            ((ViewControllerRetain)controller).onControllerRestoreRetainedObject(retainedObject);
+        } else if (savedInstanceState != null) {
+            restoreStateSnapshot(savedInstanceState);
+
+            if (savedState != null) {
+                savedState.restore(savedInstanceState);
+            }
 
-        if (savedInstanceState != null) {
+            restoreStateFields(savedInstanceState);
+            restoreLazyState(savedInstanceState);
             controller.onControllerRestoreInstanceState(savedInstanceState);
         }
+
+        if (savedInstanceState != null && controller instanceof ViewControllerLazyContent) {
+            lazyContentViewState = savedInstanceState.getSparseParcelableArray(KEY_LAZY_CONTENT_VIEW_STATE);
+        }
+
+        if (startupTasks != null) {
+            startupTasks.launch();
+        }
     }
 
     /**
@@ -176,21 +310,39 @@ public class ViewControllerFragmentDelegate {
             contentView.getViewTreeObserver().removeOnWindowFocusChangeListener(windowFocusChangeListener);
         }
 
+        if (deferredContentInflater != null) {
+            deferredContentInflater.detach();
+        }
+
+        if (children != null) {
+            children.dispatchContentViewDestroyed();
+        }
+
+        saveLazyContentViewState();
         contentView = null;
+        lazyContentInflater = null;
         hasWindowFocus = false;
 
-        int contentLayoutResId = controller.onControllerGetContentLayoutId();
+        if (controller instanceof ViewControllerLazyContent
+                && ((ViewControllerLazyContent)controller).onControllerIsContentViewLazy()) {
 
-        if (contentLayoutResId == 0) {
+            // Real content view will be created in inflateLazyContentView().
+            contentView = createLazyContainer(inflater.getContext());
+            lazyContentInflater = inflater;
+            isContentViewLazy = true;
+        } else {
+            contentView = createContentView(inflater, container);
+            isContentViewLazy = false;
+        }
+
+        if (contentView == null) {
             // Assume that non-graphical view controller always has focus.
             hasWindowFocus = true;
             return null;
         }
 
-        contentView = inflater.inflate(contentLayoutResId, container, false);
-
         if (isPlatformFragment && Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB_MR2) {
-            controller.onControllerContentViewCreated();
+            dispatchContentViewCreated();
         }
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
@@ -226,7 +378,7 @@ public class ViewControllerFragmentDelegate {
                             + "), perhaps you forgot to call onCreateView()?");
         }
 
-        controller.onControllerContentViewCreated();
+        dispatchContentViewCreated();
     }
 
     // onActivityCreated(Bundle savedInstanceState) and onViewStateRestored(Bundle savedInstanceState) are not handled intentionally.
@@ -251,7 +403,8 @@ public class ViewControllerFragmentDelegate {
         }
 
         state = STATE_STARTED;
-        controller.onControllerStart();
+        isInstanceStateSaved = false;
+        dispatchStart();
     }
 
     /**
@@ -265,7 +418,8 @@ public class ViewControllerFragmentDelegate {
 
         // STATE_INSTANCE_STATE_SAVED - Should not happen, but handled for the great justice.
         if (state == STATE_INSTANCE_STATE_SAVED) {
-            controller.onControllerStart();
+            isInstanceStateSaved = false;
+            dispatchStart();
         } else if (state != STATE_STARTED) {
             throw new IllegalStateException(
                     "onResume() was called with an invalid state ("
@@ -273,12 +427,9 @@ public class ViewControllerFragmentDelegate {
                             + "), perhaps you forgot to call onStart()?");
         }
 
+        invalidateStateSnapshot();
         state = STATE_RESUMED;
-        controller.onControllerResume();
-
-        if (hasWindowFocus) {
-            controller.onControllerFocus();
-        }
+        dispatchResume();
     }
 
     /**
@@ -299,11 +450,21 @@ public class ViewControllerFragmentDelegate {
 
         state = STATE_STARTED;
 
-        if (hasWindowFocus) {
-            controller.onControllerBlur();
+        if (lazyContentInflater != null) {
+            // View controller was not started, because the lazy content view is not created yet.
+            return;
+        }
+
+        if (hasWindowFocus || isBlurPending) {
+            // Pending blur is delivered right now, so it is always called before onControllerPause().
+            cancelPendingBlur();
+            dispatchBlur();
         }
 
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        moveChildrenTo(ViewControllerLifecycle.SPAN_STARTED);
         controller.onControllerPause();
+        createStateSnapshot();
         controller.onControllerPersistUserData();
     }
 
@@ -322,7 +483,12 @@ public class ViewControllerFragmentDelegate {
         }
 
         state = STATE_STOPPED;
-        controller.onControllerStop();
+
+        if (lazyContentInflater == null) {
+            lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+            moveChildrenTo(ViewControllerLifecycle.SPAN_CREATED);
+            controller.onControllerStop();
+        }
     }
 
     /**
@@ -349,7 +515,17 @@ public class ViewControllerFragmentDelegate {
             contentView.getViewTreeObserver().removeOnWindowFocusChangeListener(windowFocusChangeListener);
         }
 
+        if (deferredContentInflater != null) {
+            deferredContentInflater.detach();
+        }
+
+        if (children != null) {
+            children.dispatchContentViewDestroyed();
+        }
+
+        saveLazyContentViewState();
         contentView = null;
+        lazyContentInflater = null;
     }
 
     /**
@@ -369,7 +545,15 @@ public class ViewControllerFragmentDelegate {
                             + "), perhaps you forgot to call onDestroyView()? Otherwise, there is very little chance that this may be due to problems with onDestroyView() in some versions of Android.");
         }
 
+        // Without the checker, fragment is treated as finishing if the instance state was not saved before
+        // destroying (state is already changed by onDestroyView(), so the separate flag is used).
+        lifecycle.setFinishing(finishingChecker == null
+                ? !isInstanceStateSaved
+                : finishingChecker.isFragmentFinishing());
         state = STATE_DESTROYED;
+        moveChildrenTo(ViewControllerLifecycle.SPAN_NONE);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+        invalidateStateSnapshot();
     }
 
     /**
@@ -395,6 +579,20 @@ public class ViewControllerFragmentDelegate {
      * after {@code super.onSaveInstanceState(Bundle outState)}.
      */
     public void onSaveInstanceState(@NonNull Bundle outState) {
+        onSaveInstanceState(outState, false);
+    }
+
+    /**
+     * Call this method from {@link Fragment#onSaveInstanceState(Bundle outState)}
+     * after {@code super.onSaveInstanceState(Bundle outState)}.
+     * <p>This is required only for view controllers which implement {@link ViewControllerRetain}.</p>
+     *
+     * @param outState Pass {@code outState} parameter here.
+     * @param isRecreating Pass {@code true} if the fragment will be re-created right away in the same process,
+     * eg. {@code isAdded() && getActivity().isChangingConfigurations()}. Fragments in the back stack
+     * are not re-created until they are shown again, so they must not retain objects.
+     */
+    public void onSaveInstanceState(@NonNull Bundle outState, boolean isRecreating) {
         // Allow to continue with STATE_INSTANCE_STATE_SAVED.
         if (state == STATE_DESTROYED) {
             return;
@@ -409,9 +607,65 @@ public class ViewControllerFragmentDelegate {
         }
 
         state = STATE_INSTANCE_STATE_SAVED;
+        isInstanceStateSaved = true;
+
+        if (userDataWriter != null) {
+            userDataWriter.flush();
+        }
+
+        if (retainedStore != null) {
+            retainedStore.save(outState);
+        }
+
+        if (children != null) {
+            children.save(outState);
+        }
+
+        if (isRecreating && controller instanceof ViewControllerRetain) {
+            Object retainedObject = ((ViewControllerRetain)controller).onControllerRetainObject();
+
+            // The instance state is still saved below, in case the retained object expires before re-creation.
+            if (retainedObject != null) {
+                RetainedObjects.put(outState, retainedObject);
+            }
+        }
+
+        saveStateSnapshot(outState);
+
+        if (savedState != null) {
+            savedState.save(outState);
+        }
+
+        saveStateFields(outState);
+        saveLazyContentViewState();
+
+        if (lazyContentViewState != null) {
+            outState.putSparseParcelableArray(KEY_LAZY_CONTENT_VIEW_STATE, lazyContentViewState);
+        }
+
         controller.onControllerSaveInstanceState(outState);
     }
 
+    /**
+     * Call this method from {@link Fragment#setUserVisibleHint(boolean isVisibleToUser)}
+     * after {@code super.setUserVisibleHint(isVisibleToUser)}.
+     * <p><em>This is required only for view controllers with lazy content view
+     * (see {@link ViewControllerLazyContent}), which are used in pagers.</em></p>
+     *
+     * @param isVisibleToUser Pass {@code isVisibleToUser} parameter here.
+     */
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        this.isVisibleToUser = isVisibleToUser;
+
+        if (isVisibleToUser && lazyContentInflater != null && (state == STATE_STARTED || state == STATE_RESUMED)) {
+            dispatchStart();
+
+            if (state == STATE_RESUMED) {
+                dispatchResume();
+            }
+        }
+    }
+
     /**
      * Pass return value from this method to {@link ViewController#getView()}.
      * <p><em>This method makes sense only for platform fragments (android.app.Fragment), because
@@ -439,4 +693,465 @@ public class ViewControllerFragmentDelegate {
     public <T extends View> T findViewById(int id) {
         return (contentView == null ? null : (T)contentView.findViewById(id));
     }
+
+    /**
+     * Set the debounce window for focus changes. If the window loses focus and gets it back within the given delay
+     * (eg. because of short-lived dialog or permission prompt), neither {@link ViewController#onControllerBlur()}
+     * nor {@link ViewController#onControllerFocus()} are called. Pending blur is always delivered
+     * before {@link ViewController#onControllerPause()}. Default is {@code 0} (no debounce).
+     *
+     * @param delayMillis Debounce window in milliseconds, or {@code 0} to disable debounce.
+     */
+    @MainThread
+    public void setFocusDebounceDelay(long delayMillis) {
+        if (delayMillis < 0L) {
+            throw new IllegalArgumentException("Focus debounce delay must not be negative (" + delayMillis + ").");
+        }
+
+        focusDebounceDelay = delayMillis;
+
+        if (delayMillis == 0L && isBlurPending) {
+            cancelPendingBlur();
+            pendingBlurRunnable.run();
+        }
+    }
+
+    /**
+     * Invalidate the state snapshot, if the managed view controller implements {@link ViewControllerStateSnapshot}.
+     * Call it if the instance state was changed after {@link ViewController#onControllerPause()}, so the snapshot
+     * will be created again when the instance state is saved.
+     */
+    public void invalidateStateSnapshot() {
+        if (stateSnapshotMarshaller != null) {
+            stateSnapshotMarshaller.cancel();
+            stateSnapshotMarshaller = null;
+        }
+    }
+
+    /**
+     * Check whether the managed view controller is destroyed (or is going to be destroyed) for good.
+     * Unlike the destruction because of configuration change (or after the instance state was saved),
+     * it will not be re-created.
+     * <p>Before {@link #onDestroy()} the result is computed at call time by the {@link FinishingChecker},
+     * so it is valid in {@link ViewController#onControllerPause()} and {@link ViewController#onControllerStop()}
+     * of the fragment which is removed or popped. Note that the fragment which is replaced and added
+     * to the back stack is also reported as finishing at that time, because the fragment manager doesn't tell
+     * these cases apart. Without the checker, this method returns {@code false} until {@link #onDestroy()}.</p>
+     *
+     * @return {@code true} if the view controller is finishing.
+     */
+    public boolean isFinishing() {
+        if (state == STATE_DESTROYED) {
+            return lifecycle.isFinishing();
+        }
+
+        return (finishingChecker != null && finishingChecker.isFragmentFinishing());
+    }
+
+    /**
+     * Returns the lifecycle of the managed view controller.
+     *
+     * @return The lifecycle.
+     */
+    @NonNull
+    public ViewControllerLifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    /**
+     * Returns the executor for background work, bound to the lifecycle of the managed view controller.
+     * The executor is created on first call.
+     *
+     * @return The executor.
+     */
+    @NonNull
+    public ViewControllerExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ViewControllerExecutor(lifecycle);
+        }
+
+        return executor;
+    }
+
+    /**
+     * Returns the queue of tasks, which are executed when the main thread is idle.
+     * The queue is created on first call (or in the constructor, if the managed view controller
+     * implements {@link ViewControllerIdle}).
+     *
+     * @return The idle queue.
+     */
+    @NonNull
+    public ViewControllerIdleQueue getIdleQueue() {
+        if (idleQueue == null) {
+            idleQueue = new ViewControllerIdleQueue(lifecycle);
+        }
+
+        return idleQueue;
+    }
+
+    /**
+     * Returns the write-behind helper for persisting user data. The writer is created on first call.
+     *
+     * @return The user data writer.
+     */
+    @NonNull
+    public ViewControllerUserDataWriter getUserDataWriter() {
+        if (userDataWriter == null) {
+            userDataWriter = new ViewControllerUserDataWriter(lifecycle);
+        }
+
+        return userDataWriter;
+    }
+
+    /**
+     * Returns initialization tasks of the managed view controller. Tasks should be added
+     * in {@link ViewController#onControllerCreate(Bundle extras)}. Tasks are created on first call.
+     *
+     * @return The startup tasks.
+     */
+    @NonNull
+    public ViewControllerStartupTasks getStartupTasks() {
+        if (startupTasks == null) {
+            startupTasks = new ViewControllerStartupTasks();
+        }
+
+        return startupTasks;
+    }
+
+    /**
+     * Returns the queue of UI updates, which are coalesced and applied at most once per frame
+     * while the managed view controller is started. The queue is created on first call.
+     *
+     * @return The update queue.
+     */
+    @NonNull
+    public ViewControllerUpdateQueue getUpdateQueue() {
+        if (updateQueue == null) {
+            updateQueue = new ViewControllerUpdateQueue(lifecycle);
+        }
+
+        return updateQueue;
+    }
+
+    /**
+     * Returns the registry of resources (listeners, receivers, observers), which are registered only while
+     * the managed view controller is inside of the given lifecycle span. The registry is created on first call.
+     *
+     * @return The resource registry.
+     */
+    @NonNull
+    public ViewControllerResourceRegistry getResourceRegistry() {
+        if (resourceRegistry == null) {
+            resourceRegistry = new ViewControllerResourceRegistry(lifecycle);
+        }
+
+        return resourceRegistry;
+    }
+
+    /**
+     * Returns the store for large instance state, which keeps values in memory (and on disk)
+     * instead of the {@link Bundle}. The store is created on first call.
+     * <p>Requires {@link #onAttach(Context)} to be called before.</p>
+     *
+     * @return The state store.
+     */
+    @NonNull
+    public ViewControllerStateStore getStateStore() {
+        if (stateStore == null) {
+            if (applicationContext == null) {
+                throw new IllegalStateException(
+                        "getStateStore() was called before onAttach(), perhaps you called onAttach() without the context?");
+            }
+
+            stateStore = new ViewControllerStateStore(applicationContext, lifecycle);
+        }
+
+        return stateStore;
+    }
+
+    /**
+     * Returns the typed container for the instance state, which marshals only modified properties.
+     * Properties should be declared in {@link ViewController#onControllerCreate(Bundle extras)}.
+     * The container is created on first call.
+     *
+     * @return The saved state.
+     */
+    @NonNull
+    public ViewControllerSavedState getSavedState() {
+        if (savedState == null) {
+            savedState = new ViewControllerSavedState(controller.getClass().getClassLoader());
+        }
+
+        return savedState;
+    }
+
+    /**
+     * Returns objects passed to the managed view controller using {@link ViewControllerHandoff}.
+     * Available since {@link ViewController#onControllerCreate(Bundle extras)}.
+     *
+     * @return The handoff.
+     */
+    @NonNull
+    public ViewControllerHandoff getHandoff() {
+        if (handoff == null) {
+            throw new IllegalStateException("Handoff is not available before onCreate().");
+        }
+
+        return handoff;
+    }
+
+    /**
+     * Returns the process-level store for derived data, which survives configuration changes and is cleared
+     * when the managed view controller is destroyed for good. The store is created on first call.
+     *
+     * @return The retained store.
+     */
+    @NonNull
+    public ViewControllerRetainedStore getRetainedStore() {
+        if (retainedStore == null) {
+            retainedStore = new ViewControllerRetainedStore(lifecycle, controller.getClass(), null);
+        }
+
+        return retainedStore;
+    }
+
+    /**
+     * Returns the container of lightweight child view controllers, which follow the lifecycle of the managed
+     * view controller and save their instance state into its instance state. The container is created on first call.
+     * Add children in {@link ViewController#onControllerCreate(Bundle extras)}, so their instance state
+     * could be restored.
+     *
+     * @return The children.
+     */
+    @NonNull
+    public ViewControllerChildren getChildren() {
+        if (children == null) {
+            children = new ViewControllerChildren(savedChildrenState);
+            savedChildrenState = null;
+        }
+
+        return children;
+    }
+
+    @Nullable
+    private View createContentView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container) {
+        if (controller instanceof ViewControllerContentViewProvider) {
+            return ((ViewControllerContentViewProvider)controller).onControllerCreateContentView(inflater.getContext(),
+                    container);
+        }
+
+        int contentLayoutResId = controller.onControllerGetContentLayoutId();
+
+        return (contentLayoutResId == 0
+                ? null
+                : ViewControllerLayoutInflaterFactory.wrap(inflater).inflate(contentLayoutResId, container, false));
+    }
+
+    @NonNull
+    ViewGroup createLazyContainer(@NonNull Context context) {
+        FrameLayout lazyContainer = new FrameLayout(context);
+
+        lazyContainer.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT));
+
+        return lazyContainer;
+    }
+
+    private void inflateLazyContentView() {
+        ViewGroup lazyContainer = (ViewGroup)contentView;
+        LayoutInflater inflater = lazyContentInflater;
+
+        lazyContentInflater = null;
+        View view = createContentView(inflater, lazyContainer);
+
+        if (view != null) {
+            lazyContainer.addView(view);
+            dispatchContentViewCreated();
+
+            // Fragment restores the view state before the lazy content is created, so it is restored here.
+            if (lazyContentViewState != null) {
+                view.restoreHierarchyState(lazyContentViewState);
+            }
+        }
+
+        lazyContentViewState = null;
+    }
+
+    private void saveLazyContentViewState() {
+        // Keep the previous state if the lazy content view was not created since then.
+        if (isContentViewLazy && contentView != null && lazyContentInflater == null) {
+            lazyContentViewState = new SparseArray<>();
+            contentView.saveHierarchyState(lazyContentViewState);
+        }
+    }
+
+    private void dispatchContentViewCreated() {
+        if (lazyContentInflater != null) {
+            // Content view is not created yet, this will be called again from inflateLazyContentView().
+            return;
+        }
+
+        awaitStartupTasks(ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED);
+        controller.onControllerContentViewCreated();
+
+        if (children != null) {
+            children.dispatchContentViewCreated(contentView);
+        }
+
+        if (deferredContentInflater != null) {
+            deferredContentInflater.attach(contentView);
+        }
+    }
+
+    private boolean isControllerResumed() {
+        // While the lazy content view is not created, the view controller is not even started.
+        return (state == STATE_RESUMED && lazyContentInflater == null);
+    }
+
+    private void dispatchStart() {
+        if (lazyContentInflater != null) {
+            if (!isVisibleToUser) {
+                // View controller is started later, when the fragment becomes visible (see setUserVisibleHint()).
+                return;
+            }
+
+            inflateLazyContentView();
+        }
+
+        awaitStartupTasks(ViewControllerStartupTasks.BARRIER_START);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        controller.onControllerStart();
+        moveChildrenTo(ViewControllerLifecycle.SPAN_STARTED);
+    }
+
+    private void dispatchResume() {
+        if (lazyContentInflater != null) {
+            return;
+        }
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        controller.onControllerResume();
+        moveChildrenTo(ViewControllerLifecycle.SPAN_RESUMED);
+
+        if (hasWindowFocus) {
+            dispatchFocus();
+        }
+    }
+
+    private void dispatchFocus() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        if (deferredContentInflater != null) {
+            deferredContentInflater.inflateNow();
+        }
+
+        controller.onControllerFocus();
+        moveChildrenTo(ViewControllerLifecycle.SPAN_FOCUSED);
+    }
+
+    private void dispatchBlur() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        moveChildrenTo(ViewControllerLifecycle.SPAN_RESUMED);
+        controller.onControllerBlur();
+    }
+
+    private void moveChildrenTo(int span) {
+        if (children != null) {
+            children.moveTo(span);
+        }
+    }
+
+    private void postPendingBlur() {
+        if (focusDebounceHandler == null) {
+            focusDebounceHandler = new Handler(Looper.getMainLooper());
+        }
+
+        isBlurPending = true;
+        focusDebounceHandler.postDelayed(pendingBlurRunnable, focusDebounceDelay);
+    }
+
+    private void cancelPendingBlur() {
+        if (isBlurPending) {
+            isBlurPending = false;
+            focusDebounceHandler.removeCallbacks(pendingBlurRunnable);
+        }
+    }
+
+    private void awaitStartupTasks(int barrier) {
+        if (startupTasks != null) {
+            startupTasks.await(barrier);
+        }
+    }
+
+    private void restoreStateSnapshot(@NonNull Bundle savedInstanceState) {
+        if (controller instanceof ViewControllerStateSnapshot) {
+            StateSnapshotMarshaller.restore(savedInstanceState, controller.getClass().getClassLoader());
+        }
+    }
+
+    private void restoreRetainedStore(@Nullable Bundle savedInstanceState) {
+        String ownerId = (savedInstanceState == null
+                ? null
+                : ViewControllerRetainedStore.getSavedOwnerId(savedInstanceState));
+
+        if (ownerId != null) {
+            retainedStore = new ViewControllerRetainedStore(lifecycle, controller.getClass(), ownerId);
+        }
+    }
+
+    private void restoreStateFields(@NonNull Bundle savedInstanceState) {
+        ViewControllerStateCodec<Object> codec = StateCodecs.get(controller.getClass());
+
+        if (codec != null) {
+            codec.restore(controller, savedInstanceState);
+        }
+    }
+
+    private void saveStateFields(@NonNull Bundle outState) {
+        ViewControllerStateCodec<Object> codec = StateCodecs.get(controller.getClass());
+
+        if (codec != null) {
+            codec.save(controller, outState);
+        }
+    }
+
+    private void restoreLazyState(@NonNull Bundle savedInstanceState) {
+        if (controller instanceof ViewControllerLazyRestore) {
+            ((ViewControllerLazyRestore)controller).onControllerRestoreLazyInstanceState(
+                    new ViewControllerLazyState(savedInstanceState, controller.getClass().getClassLoader()));
+        }
+    }
+
+    private void createStateSnapshot() {
+        if (!(controller instanceof ViewControllerStateSnapshot)) {
+            return;
+        }
+
+        invalidateStateSnapshot();
+        Bundle snapshot = ((ViewControllerStateSnapshot)controller).onControllerCreateStateSnapshot();
+
+        if (snapshot != null) {
+            stateSnapshotMarshaller = new StateSnapshotMarshaller(snapshot);
+            stateSnapshotMarshaller.start();
+        }
+    }
+
+    private void saveStateSnapshot(@NonNull Bundle outState) {
+        if (!(controller instanceof ViewControllerStateSnapshot)) {
+            return;
+        }
+
+        if (stateSnapshotMarshaller != null) {
+            stateSnapshotMarshaller.writeTo(outState);
+            stateSnapshotMarshaller = null;
+            return;
+        }
+
+        // Snapshot was invalidated (or not created yet), so save it synchronously.
+        Bundle snapshot = ((ViewControllerStateSnapshot)controller).onControllerCreateStateSnapshot();
+
+        if (snapshot != null) {
+            outState.putAll(snapshot);
+        }
+    }
 }
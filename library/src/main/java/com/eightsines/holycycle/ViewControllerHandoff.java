@@ -0,0 +1,331 @@
+package com.eightsines.holycycle;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Passes objects to the view controller in the same process without parcelling them. The caller deposits
+ * objects using {@code put*()} methods, and only a small token is put in the intent extras (or fragment arguments).
+ * The delegate resolves the token right before {@link ViewController#onControllerCreate(Bundle extras)},
+ * so the view controller can get the live objects there using {@link #get(String)}.
+ * <p>Objects are kept while the view controller exists (including re-creation after configuration change),
+ * and removed when it is destroyed for good (see {@link ViewControllerLifecycle#isFinishing()}).
+ * Objects which are not resolved during the time-to-live (eg. the launch was cancelled) are dropped.</p>
+ * <p>After the process death objects are lost. Use {@code putWithFallback()} methods to put also a marshalled copy
+ * of the parcelable in the extras. The copy is unmarshalled only when the live object is not available.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * // Caller:
+ * Intent intent = new Intent(context, GalleryActivity.class);
+ * ViewControllerHandoff.put(intent, GalleryActivity.EXTRA_PHOTOS, photos);
+ * startActivity(intent);
+ *
+ * // GalleryActivity.onControllerCreate(extras):
+ * List<Photo> photos = getControllerHandoff().get(EXTRA_PHOTOS);
+ * }</pre>
+ */
+public final class ViewControllerHandoff implements ViewControllerLifecycle.Observer {
+    public static final long DEFAULT_TTL_MILLIS = 10000L;
+
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.ViewControllerHandoff.TOKEN";
+    private static final String KEY_FALLBACK_PREFIX = "com.eightsines.holycycle.ViewControllerHandoff.FALLBACK:";
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+
+    private static final Runnable removeExpiredRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ViewControllerHandoff.class) {
+                scheduledRemoveAtMillis = Long.MAX_VALUE;
+                removeExpired();
+            }
+        }
+    };
+
+    private static Handler removeExpiredHandler;
+    private static long scheduledRemoveAtMillis = Long.MAX_VALUE;
+    private static long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    private ViewControllerLifecycle lifecycle;
+    private Bundle extras;
+    private ClassLoader classLoader;
+    private Entry entry;
+    private Map<String, Object> fallbackValues;
+
+    ViewControllerHandoff(@NonNull ViewControllerLifecycle lifecycle,
+            @Nullable Bundle extras,
+            @Nullable ClassLoader classLoader) {
+
+        this.lifecycle = lifecycle;
+        this.extras = extras;
+        this.classLoader = classLoader;
+
+        String token = (extras == null ? null : extras.getString(KEY_TOKEN));
+
+        if (token != null) {
+            synchronized (ViewControllerHandoff.class) {
+                removeExpired();
+                entry = entries.get(token);
+
+                if (entry != null) {
+                    entry.refCount++;
+                }
+            }
+        }
+
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Set time-to-live for objects, which are not resolved by the view controller yet.
+     * Default is {@link #DEFAULT_TTL_MILLIS}.
+     *
+     * @param ttlMillis Time-to-live in milliseconds.
+     */
+    @SuppressWarnings("unused")
+    public static synchronized void setTtl(long ttlMillis) {
+        if (ttlMillis <= 0L) {
+            throw new IllegalArgumentException("Time-to-live must be positive (" + ttlMillis + ").");
+        }
+
+        ViewControllerHandoff.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Deposit the object for the activity, which will be launched with the given intent.
+     *
+     * @param intent Intent which will be used to launch the activity. The token is put in its extras.
+     * @param key The key of the object.
+     * @param value The object. It must not be modified by the caller after this call.
+     */
+    @SuppressWarnings("unused")
+    public static void put(@NonNull Intent intent, @NonNull String key, @Nullable Object value) {
+        intent.putExtra(KEY_TOKEN, deposit(intent.getStringExtra(KEY_TOKEN), key, value));
+    }
+
+    /**
+     * Deposit the object for the fragment, which will be created with the given arguments.
+     *
+     * @param arguments Arguments of the fragment. The token is put in them.
+     * @param key The key of the object.
+     * @param value The object. It must not be modified by the caller after this call.
+     */
+    @SuppressWarnings("unused")
+    public static void put(@NonNull Bundle arguments, @NonNull String key, @Nullable Object value) {
+        arguments.putString(KEY_TOKEN, deposit(arguments.getString(KEY_TOKEN), key, value));
+    }
+
+    /**
+     * Deposit the object for the activity, and put its marshalled copy in the intent extras
+     * to use after the process death.
+     *
+     * @param intent Intent which will be used to launch the activity.
+     * @param key The key of the object.
+     * @param value The object. It must not be modified by the caller after this call.
+     */
+    @SuppressWarnings("unused")
+    public static void putWithFallback(@NonNull Intent intent, @NonNull String key, @NonNull Parcelable value) {
+        put(intent, key, value);
+        intent.putExtra(KEY_FALLBACK_PREFIX + key, marshall(value));
+    }
+
+    /**
+     * Deposit the object for the fragment, and put its marshalled copy in the arguments
+     * to use after the process death.
+     *
+     * @param arguments Arguments of the fragment.
+     * @param key The key of the object.
+     * @param value The object. It must not be modified by the caller after this call.
+     */
+    @SuppressWarnings("unused")
+    public static void putWithFallback(@NonNull Bundle arguments, @NonNull String key, @NonNull Parcelable value) {
+        put(arguments, key, value);
+        arguments.putByteArray(KEY_FALLBACK_PREFIX + key, marshall(value));
+    }
+
+    /**
+     * Remove deposited objects if the activity launch was cancelled.
+     *
+     * @param intent Intent which was passed to {@code put*()} methods.
+     */
+    @SuppressWarnings("unused")
+    public static void cancel(@NonNull Intent intent) {
+        cancel(intent.getStringExtra(KEY_TOKEN));
+    }
+
+    /**
+     * Remove deposited objects if the fragment creation was cancelled.
+     *
+     * @param arguments Arguments which were passed to {@code put*()} methods.
+     */
+    @SuppressWarnings("unused")
+    public static void cancel(@NonNull Bundle arguments) {
+        cancel(arguments.getString(KEY_TOKEN));
+    }
+
+    /**
+     * Get the deposited object. If the object is lost (eg. after the process death), but it was deposited
+     * with fallback, it is unmarshalled from the extras.
+     *
+     * @param key The key of the object.
+     * @param <T> Type of the object.
+     * @return The object, or {@code null} if there is no such object.
+     */
+    @SuppressWarnings("unchecked")
+    @MainThread
+    @Nullable
+    public <T> T get(@NonNull String key) {
+        if (entry != null) {
+            synchronized (ViewControllerHandoff.class) {
+                if (entry.values.containsKey(key)) {
+                    return (T)entry.values.get(key);
+                }
+            }
+        }
+
+        if (fallbackValues == null) {
+            fallbackValues = new HashMap<>();
+        } else if (fallbackValues.containsKey(key)) {
+            return (T)fallbackValues.get(key);
+        }
+
+        byte[] bytes = (extras == null ? null : extras.getByteArray(KEY_FALLBACK_PREFIX + key));
+        Object value = null;
+
+        if (bytes != null) {
+            Parcel parcel = Parcel.obtain();
+
+            try {
+                parcel.unmarshall(bytes, 0, bytes.length);
+                parcel.setDataPosition(0);
+                value = parcel.readParcelable(classLoader);
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        fallbackValues.put(key, value);
+        return (T)value;
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span != ViewControllerLifecycle.SPAN_CREATED || entry == null) {
+            return;
+        }
+
+        synchronized (ViewControllerHandoff.class) {
+            entry.refCount--;
+
+            if (entry.refCount == 0) {
+                if (lifecycle.isFinishing()) {
+                    entries.remove(entry.token);
+                } else {
+                    // The view controller will be re-created, but don't keep objects forever if it isn't.
+                    entry.expiresAtMillis = System.nanoTime() / 1000000L + ttlMillis;
+                    scheduleRemoveExpired(entry.expiresAtMillis);
+                }
+            }
+        }
+
+        entry = null;
+    }
+
+    @NonNull
+    private static synchronized String deposit(@Nullable String token, @NonNull String key, @Nullable Object value) {
+        removeExpired();
+        Entry depositEntry = (token == null ? null : entries.get(token));
+
+        if (depositEntry == null) {
+            // Random token, so the intent restored after the process death never matches the new deposit.
+            token = UUID.randomUUID().toString();
+            depositEntry = new Entry(token);
+            entries.put(token, depositEntry);
+        }
+
+        depositEntry.values.put(key, value);
+        depositEntry.expiresAtMillis = System.nanoTime() / 1000000L + ttlMillis;
+        scheduleRemoveExpired(depositEntry.expiresAtMillis);
+
+        return token;
+    }
+
+    private static synchronized void cancel(@Nullable String token) {
+        if (token != null) {
+            entries.remove(token);
+        }
+    }
+
+    private static void removeExpired() {
+        long nowMillis = System.nanoTime() / 1000000L;
+
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            Entry iteratorEntry = iterator.next();
+
+            if (iteratorEntry.refCount != 0) {
+                continue;
+            }
+
+            if (iteratorEntry.expiresAtMillis <= nowMillis) {
+                iterator.remove();
+            } else {
+                scheduleRemoveExpired(iteratorEntry.expiresAtMillis);
+            }
+        }
+    }
+
+    private static void scheduleRemoveExpired(long expiresAtMillis) {
+        // Objects are dropped on time, even if nothing is deposited or resolved anymore.
+        if (expiresAtMillis >= scheduledRemoveAtMillis) {
+            return;
+        }
+
+        if (removeExpiredHandler == null) {
+            removeExpiredHandler = new Handler(Looper.getMainLooper());
+        }
+
+        removeExpiredHandler.removeCallbacks(removeExpiredRunnable);
+        scheduledRemoveAtMillis = expiresAtMillis;
+
+        removeExpiredHandler.postDelayed(removeExpiredRunnable,
+                Math.max(0L, expiresAtMillis - System.nanoTime() / 1000000L));
+    }
+
+    @NonNull
+    private static byte[] marshall(@NonNull Parcelable value) {
+        Parcel parcel = Parcel.obtain();
+
+        try {
+            parcel.writeParcelable(value, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static class Entry {
+        private String token;
+        private Map<String, Object> values = new HashMap<>();
+        private long expiresAtMillis;
+        private int refCount;
+
+        Entry(@NonNull String token) {
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.eightsines.holycycle;
+
+/**
+ * Optional extension of the {@link ViewController} for view controllers, which want to perform
+ * non-critical initialization (analytics, prefetching, cache warm-up) when the main thread is actually idle,
+ * instead of doing it in {@link #onControllerStart()} or {@link #onControllerResume()} and delaying the first frame.
+ * <p>Smaller pieces of such work can be posted to the {@link ViewControllerIdleQueue}.</p>
+ */
+public interface ViewControllerIdle extends ViewController {
+    /**
+     * Called once per resume, when the main thread becomes idle for the first time after
+     * {@link #onControllerFocus()}. If the view controller is paused before that, this method is not called.
+     */
+    void onControllerIdle();
+}
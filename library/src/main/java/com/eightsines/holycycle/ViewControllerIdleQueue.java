@@ -0,0 +1,127 @@
+package com.eightsines.holycycle;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayDeque;
+
+/**
+ * Queue of small tasks, which are executed when the main thread is idle, one task per idle slot.
+ * Tasks are executed only while the view controller is resumed, after {@link ViewController#onControllerFocus()}.
+ * Tasks which were not executed before {@link ViewController#onControllerPause()} are kept till the next resume.
+ * <p>The queue also delivers {@link ViewControllerIdle#onControllerIdle()} (before any task).</p>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerIdleQueue implements ViewControllerLifecycle.Observer, MessageQueue.IdleHandler {
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerIdle controller;
+    private MessageQueue messageQueue;
+    private ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean isIdleCallbackPending;
+    private boolean isRegistered;
+
+    /**
+     * Idle queue constructor. Mostly you want to use the queue owned by the delegate, but it is possible
+     * to create separate queue for the given lifecycle.
+     *
+     * @param lifecycle The lifecycle, to which the queue is bound.
+     */
+    public ViewControllerIdleQueue(@NonNull ViewControllerLifecycle lifecycle) {
+        this(lifecycle, null);
+    }
+
+    ViewControllerIdleQueue(@NonNull ViewControllerLifecycle lifecycle, @Nullable ViewControllerIdle controller) {
+        this(lifecycle, controller, Looper.myQueue());
+    }
+
+    ViewControllerIdleQueue(@NonNull ViewControllerLifecycle lifecycle,
+            @Nullable ViewControllerIdle controller,
+            @NonNull MessageQueue messageQueue) {
+
+        this.lifecycle = lifecycle;
+        this.controller = controller;
+        this.messageQueue = messageQueue;
+
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Post the task to the queue.
+     *
+     * @param task The task.
+     */
+    @MainThread
+    public void post(@NonNull Runnable task) {
+        tasks.add(task);
+
+        if (lifecycle.isInSpan(ViewControllerLifecycle.SPAN_FOCUSED)) {
+            register();
+        }
+    }
+
+    /**
+     * Remove the task from the queue, if it was not executed yet.
+     *
+     * @param task The task.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    public void remove(@NonNull Runnable task) {
+        tasks.remove(task);
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+        if (span == ViewControllerLifecycle.SPAN_RESUMED) {
+            isIdleCallbackPending = (controller != null);
+        } else if (span == ViewControllerLifecycle.SPAN_FOCUSED && (isIdleCallbackPending || !tasks.isEmpty())) {
+            register();
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span == ViewControllerLifecycle.SPAN_RESUMED) {
+            isIdleCallbackPending = false;
+            unregister();
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        boolean shouldKeep = false;
+
+        try {
+            if (isIdleCallbackPending) {
+                isIdleCallbackPending = false;
+                controller.onControllerIdle();
+            } else if (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+
+            // Not kept if paused from the callback or the task.
+            shouldKeep = (isRegistered && (isIdleCallbackPending || !tasks.isEmpty()));
+        } finally {
+            // MessageQueue removes the idle handler when it throws, so it is registered again on the next focus.
+            isRegistered = shouldKeep;
+        }
+
+        return shouldKeep;
+    }
+
+    private void register() {
+        if (!isRegistered) {
+            isRegistered = true;
+            messageQueue.addIdleHandler(this);
+        }
+    }
+
+    private void unregister() {
+        if (isRegistered) {
+            isRegistered = false;
+            messageQueue.removeIdleHandler(this);
+        }
+    }
+}
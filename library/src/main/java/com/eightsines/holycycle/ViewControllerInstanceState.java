@@ -0,0 +1,32 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the field of the view controller as a part of the instance state. The annotation processor
+ * ({@code holycycle-processor}) generates the {@link ViewControllerStateCodec} for the view controller class,
+ * and the delegate uses it to save the field right before {@link ViewController#onControllerSaveInstanceState(Bundle outState)}
+ * and to restore it right before {@link ViewController#onControllerRestoreInstanceState(Bundle savedInstanceState)}.
+ * <p>The generated code accesses fields directly, so they must not be private, final, or static.
+ * Primitive fields are packed together into one byte array, without boxing. Supported types are primitives,
+ * arrays of primitives, {@code String}, {@code String[]}, {@code CharSequence}, {@code CharSequence[]},
+ * {@code Bundle}, {@code Parcelable}, {@code ArrayList<String>}, {@code ArrayList<Integer>},
+ * {@code ArrayList<? extends Parcelable>} and {@code Serializable}. Other arrays (eg. {@code Parcelable[]}
+ * or {@code Object[]}) are not supported.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * public class EditorActivity extends ViewControllerActivity {
+ *     @ViewControllerInstanceState int selectionStart;
+ *     @ViewControllerInstanceState int selectionEnd;
+ *     @ViewControllerInstanceState String query;
+ * }
+ * }</pre>
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface ViewControllerInstanceState {
+}
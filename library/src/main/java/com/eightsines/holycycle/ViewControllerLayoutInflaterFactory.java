@@ -0,0 +1,190 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Layout inflater factory, which creates views using pre-registered constructors instead of reflection
+ * (there is no {@code Class.forName()} and constructor lookup for registered tags).
+ * <p>Register constructors for the views used in your layouts (usually in {@link android.app.Application#onCreate()},
+ * either by hand or from generated code), and delegates will install this factory before inflating
+ * the view controller content. Tags without registered constructors are inflated as usual.</p>
+ * <p>If some factory is already installed on the inflater (for example, by AppCompat), it is asked first
+ * for registered tags, so AppCompat widgets substitution continues to work. Other tags (including
+ * {@code <fragment>}) are passed to the installed factory by the inflater itself.</p>
+ */
+public final class ViewControllerLayoutInflaterFactory implements LayoutInflater.Factory2 {
+    /**
+     * Creates a view for the registered tag.
+     */
+    public interface ViewConstructor {
+        /**
+         * Create the view. This is the equivalent of the {@code View(Context context, AttributeSet attrs)} constructor.
+         *
+         * @param context Context in which the view will be created.
+         * @param attrs Attributes of the view tag.
+         * @return The created view.
+         */
+        @NonNull
+        View newView(@NonNull Context context, @NonNull AttributeSet attrs);
+    }
+
+    private static volatile Map<String, ViewConstructor> constructors = Collections.emptyMap();
+
+    // LayoutInflater.setFactory2() merges the new factory with the existing one into the private
+    // FactoryMerger, so installed factories are remembered to keep wrap() idempotent.
+    private static final Map<LayoutInflater.Factory2, Boolean> installedFactories = new WeakHashMap<>();
+
+    private LayoutInflater.Factory previousFactory;
+    private LayoutInflater.Factory2 previousFactory2;
+
+    private ViewControllerLayoutInflaterFactory(@Nullable LayoutInflater.Factory previousFactory,
+            @Nullable LayoutInflater.Factory2 previousFactory2) {
+
+        this.previousFactory = previousFactory;
+        this.previousFactory2 = previousFactory2;
+    }
+
+    /**
+     * Register the view constructor for the given tag.
+     *
+     * @param name Tag name exactly as it is written in the layout (eg. {@code TextView} or {@code com.example.CustomView}).
+     * @param constructor The view constructor.
+     */
+    @SuppressWarnings("unused")
+    public static synchronized void register(@NonNull String name, @NonNull ViewConstructor constructor) {
+        Map<String, ViewConstructor> newConstructors = new HashMap<>(constructors);
+        newConstructors.put(name, constructor);
+        constructors = newConstructors;
+    }
+
+    /**
+     * Unregister the view constructor for the given tag.
+     *
+     * @param name Tag name.
+     */
+    @SuppressWarnings("unused")
+    public static synchronized void unregister(@NonNull String name) {
+        if (constructors.containsKey(name)) {
+            Map<String, ViewConstructor> newConstructors = new HashMap<>(constructors);
+            newConstructors.remove(name);
+            constructors = newConstructors;
+        }
+    }
+
+    /**
+     * Check whether any view constructor is registered.
+     *
+     * @return {@code true} if there is at least one registered view constructor.
+     */
+    public static boolean hasConstructors() {
+        return !constructors.isEmpty();
+    }
+
+    /**
+     * Install the factory on the given inflater itself, so it uses registered view constructors for everything
+     * it inflates (eg. in {@link android.app.Activity#setContentView(int layoutResID)}). Does nothing if there are
+     * no registered view constructors, or if some factory is already installed (for example, by AppCompat),
+     * because the factory can be set only once. Use {@link #wrap(LayoutInflater)} in the latter case.
+     *
+     * @param inflater The inflater.
+     */
+    public static void install(@NonNull LayoutInflater inflater) {
+        if (constructors.isEmpty() || inflater.getFactory() != null) {
+            return;
+        }
+
+        inflater.setFactory2(new ViewControllerLayoutInflaterFactory(null, null));
+    }
+
+    /**
+     * Returns an inflater, which uses registered view constructors. The given inflater is not changed.
+     * If there are no registered view constructors, the given inflater is returned as is.
+     *
+     * @param inflater The original inflater.
+     * @return An inflater, which uses registered view constructors.
+     */
+    @NonNull
+    public static LayoutInflater wrap(@NonNull LayoutInflater inflater) {
+        if (constructors.isEmpty() || isWrapped(inflater)) {
+            return inflater;
+        }
+
+        // Cloned inflater keeps the original factories, and setFactory2() chains them after the new one,
+        // so this factory handles only registered tags and leaves everything else to the original factories.
+        LayoutInflater result = inflater.cloneInContext(inflater.getContext());
+        result.setFactory2(new ViewControllerLayoutInflaterFactory(inflater.getFactory(), inflater.getFactory2()));
+
+        LayoutInflater.Factory2 installedFactory = result.getFactory2();
+
+        if (installedFactory != null) {
+            synchronized (installedFactories) {
+                installedFactories.put(installedFactory, Boolean.TRUE);
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean isWrapped(@NonNull LayoutInflater inflater) {
+        LayoutInflater.Factory2 factory = inflater.getFactory2();
+
+        if (factory == null) {
+            return false;
+        }
+
+        if (factory instanceof ViewControllerLayoutInflaterFactory) {
+            return true;
+        }
+
+        synchronized (installedFactories) {
+            return installedFactories.containsKey(factory);
+        }
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@Nullable View parent,
+            @NonNull String name,
+            @NonNull Context context,
+            @NonNull AttributeSet attrs) {
+
+        ViewConstructor constructor = constructors.get(name);
+
+        if (constructor == null) {
+            // The inflater passes the tag to the original factories by itself.
+            return null;
+        }
+
+        View view = null;
+
+        if (previousFactory2 != null) {
+            view = previousFactory2.onCreateView(parent, name, context, attrs);
+        } else if (previousFactory != null) {
+            view = previousFactory.onCreateView(name, context, attrs);
+        }
+
+        return (view == null ? constructor.newView(context, attrs) : view);
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull String name, @NonNull Context context, @NonNull AttributeSet attrs) {
+        ViewConstructor constructor = constructors.get(name);
+
+        if (constructor == null) {
+            return null;
+        }
+
+        View view = (previousFactory == null ? null : previousFactory.onCreateView(name, context, attrs));
+        return (view == null ? constructor.newView(context, attrs) : view);
+    }
+}
@@ -0,0 +1,26 @@
+package com.eightsines.holycycle;
+
+/**
+ * Optional extension of the {@link ViewController} for Fragment-based view controllers, which content view
+ * should not be created until the fragment is actually shown (for example, hidden tabs of a pager).
+ * <p>In lazy mode, fragment creates a cheap empty container instead of the content view, and
+ * {@link #onControllerGetContentLayoutId()} and {@link #onControllerContentViewCreated()} are postponed
+ * until the fragment is started and visible to the user for the first time (see
+ * {@link android.support.v4.app.Fragment#setUserVisibleHint(boolean isVisibleToUser)}).</p>
+ * <p>{@link #onControllerStart()}, {@link #onControllerResume()} and {@link #onControllerFocus()} are postponed
+ * together with the content view, so the usual order of callbacks is kept: the view controller is started
+ * only after {@link #onControllerContentViewCreated()}. While the fragment is not visible, the view controller
+ * stays in the {@link ViewControllerLifecycle#SPAN_CREATED} span.</p>
+ * <p>{@link #getView()} returns the container, and {@link #findViewById(int id)} works as usual.</p>
+ * <p>Fragment restores the state of its views before the lazy content view is created, so the delegate
+ * keeps the state of the lazy content view by itself, and restores it right after
+ * {@link #onControllerContentViewCreated()}.</p>
+ */
+public interface ViewControllerLazyContent extends ViewController {
+    /**
+     * Called from onCreateView() to decide, whether the content view should be created lazily.
+     *
+     * @return Return {@code true} to postpone the content view creation.
+     */
+    boolean onControllerIsContentViewLazy();
+}
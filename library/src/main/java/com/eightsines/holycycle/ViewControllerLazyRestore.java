@@ -0,0 +1,21 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+/**
+ * Optional extension of the {@link ViewController} for view controllers, which save the instance state
+ * in sections (see {@link ViewControllerLazyState}) and want to unmarshal them only on demand.
+ */
+public interface ViewControllerLazyRestore extends ViewController {
+    /**
+     * Called right before {@link #onControllerRestoreInstanceState(Bundle savedInstanceState)}.
+     * Sections are not unmarshalled yet, read only the ones which are needed right now.
+     * The lazy state can be kept to read other sections later.
+     *
+     * @param savedState Lazy view of the saved instance state.
+     */
+    @MainThread
+    void onControllerRestoreLazyInstanceState(@NonNull ViewControllerLazyState savedState);
+}
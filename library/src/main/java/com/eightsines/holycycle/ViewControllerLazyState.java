@@ -0,0 +1,137 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+
+/**
+ * Lazy view of the saved instance state, which consists of named sections. Each section is stored
+ * in the {@code outState} as its own marshalled blob, and it is unmarshalled only on the first
+ * {@link #getSection(String)} call. Sections which are never read (eg. collapsed panels or inactive tabs)
+ * are never unmarshalled.
+ * <p>Put sections in {@link ViewController#onControllerSaveInstanceState(Bundle outState)}
+ * using {@link #putSection(Bundle, String, Bundle)}, and read them from the lazy state passed to
+ * {@link ViewControllerLazyRestore#onControllerRestoreLazyInstanceState(ViewControllerLazyState savedState)}.
+ * It is fine to keep the lazy state and read sections later. Section which is still not read can be saved again
+ * without unmarshalling using {@link #copySectionTo(Bundle, String)}.</p>
+ * <p>Marshalled bytes are used only to restore the state in the same process or after the process death
+ * on the same device, so it is safe to use {@link Parcel#marshall()} here.</p>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerLazyState {
+    private static final String KEY_PREFIX = "com.eightsines.holycycle.ViewControllerLazyState:";
+
+    private Bundle savedInstanceState;
+    private ClassLoader classLoader;
+    private HashMap<String, Bundle> sections = new HashMap<>();
+
+    ViewControllerLazyState(@NonNull Bundle savedInstanceState, @Nullable ClassLoader classLoader) {
+        this.savedInstanceState = savedInstanceState;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Put the section in the instance state.
+     *
+     * @param outState Pass {@code outState} parameter here.
+     * @param name Unique name of the section.
+     * @param section The section.
+     */
+    @MainThread
+    public static void putSection(@NonNull Bundle outState, @NonNull String name, @NonNull Bundle section) {
+        Parcel parcel = Parcel.obtain();
+
+        try {
+            parcel.writeBundle(section);
+            outState.putByteArray(KEY_PREFIX + name, parcel.marshall());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Returns the saved instance state itself, to read values which are not in sections.
+     *
+     * @return The saved instance state.
+     */
+    @NonNull
+    public Bundle getBundle() {
+        return savedInstanceState;
+    }
+
+    /**
+     * Check whether the section was saved.
+     *
+     * @param name Name of the section.
+     * @return {@code true} if the section was saved.
+     */
+    @MainThread
+    public boolean hasSection(@NonNull String name) {
+        if (sections.containsKey(name)) {
+            return sections.get(name) != null;
+        }
+
+        return savedInstanceState.containsKey(KEY_PREFIX + name);
+    }
+
+    /**
+     * Returns the section. It is unmarshalled on the first call.
+     *
+     * @param name Name of the section.
+     * @return The section, or {@code null} if it was not saved.
+     */
+    @MainThread
+    @Nullable
+    public Bundle getSection(@NonNull String name) {
+        if (sections.containsKey(name)) {
+            return sections.get(name);
+        }
+
+        byte[] bytes = savedInstanceState.getByteArray(KEY_PREFIX + name);
+        Bundle section = null;
+
+        if (bytes != null) {
+            Parcel parcel = Parcel.obtain();
+
+            try {
+                parcel.unmarshall(bytes, 0, bytes.length);
+                parcel.setDataPosition(0);
+                section = parcel.readBundle(classLoader);
+            } finally {
+                parcel.recycle();
+            }
+        }
+
+        sections.put(name, section);
+        return section;
+    }
+
+    /**
+     * Put the section in the instance state again, without unmarshalling it. If the section was already
+     * unmarshalled, it is marshalled again.
+     *
+     * @param outState Pass {@code outState} parameter here.
+     * @param name Name of the section.
+     */
+    @MainThread
+    public void copySectionTo(@NonNull Bundle outState, @NonNull String name) {
+        if (sections.containsKey(name)) {
+            Bundle section = sections.get(name);
+
+            if (section != null) {
+                putSection(outState, name, section);
+            }
+
+            return;
+        }
+
+        byte[] bytes = savedInstanceState.getByteArray(KEY_PREFIX + name);
+
+        if (bytes != null) {
+            outState.putByteArray(KEY_PREFIX + name, bytes);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.eightsines.holycycle;
+
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+
+/**
+ * Current lifecycle span of the view controller. Every delegate owns one lifecycle, and helpers
+ * (like {@link ViewControllerExecutor}) use it to bind their work to the view controller lifecycle.
+ * <p>Spans are nested:</p>
+ * <ol>
+ * <li>{@link #SPAN_CREATED} - from {@link ViewController#onControllerCreate(android.os.Bundle extras)}
+ * till the Activity or Fragment is destroyed;</li>
+ * <li>{@link #SPAN_STARTED} - from {@link ViewController#onControllerStart()}
+ * till {@link ViewController#onControllerStop()};</li>
+ * <li>{@link #SPAN_RESUMED} - from {@link ViewController#onControllerResume()}
+ * till {@link ViewController#onControllerPause()};</li>
+ * <li>{@link #SPAN_FOCUSED} - from {@link ViewController#onControllerFocus()}
+ * till {@link ViewController#onControllerBlur()}.</li>
+ * </ol>
+ * <p>Observers are notified before the corresponding view controller method is called, so when
+ * {@link ViewController#onControllerStart()} is called, the lifecycle is already in the {@link #SPAN_STARTED} span,
+ * and when {@link ViewController#onControllerStop()} is called, it is already out of it.
+ * Spans are always entered and exited one by one, observers are notified about span enter in order
+ * of addition, and about span exit in reverse order.</p>
+ * <p>This class is not thread safe and should be used only from the main thread.</p>
+ */
+public class ViewControllerLifecycle {
+    public static final int SPAN_NONE = 0;
+    public static final int SPAN_CREATED = 1;
+    public static final int SPAN_STARTED = 2;
+    public static final int SPAN_RESUMED = 3;
+    public static final int SPAN_FOCUSED = 4;
+
+    /**
+     * Lifecycle observer.
+     */
+    public interface Observer {
+        /**
+         * Called when the lifecycle enters the span.
+         *
+         * @param span One of {@link #SPAN_CREATED}, {@link #SPAN_STARTED}, {@link #SPAN_RESUMED}
+         * or {@link #SPAN_FOCUSED}.
+         */
+        void onLifecycleSpanEnter(int span);
+
+        /**
+         * Called when the lifecycle exits the span.
+         *
+         * @param span One of {@link #SPAN_CREATED}, {@link #SPAN_STARTED}, {@link #SPAN_RESUMED}
+         * or {@link #SPAN_FOCUSED}.
+         */
+        void onLifecycleSpanExit(int span);
+    }
+
+    private int span = SPAN_NONE;
+    private boolean isFinishing;
+    private ArrayList<Observer> observers = new ArrayList<>();
+
+    ViewControllerLifecycle() {
+    }
+
+    /**
+     * Returns the current span.
+     *
+     * @return One of {@link #SPAN_NONE}, {@link #SPAN_CREATED}, {@link #SPAN_STARTED}, {@link #SPAN_RESUMED}
+     * or {@link #SPAN_FOCUSED}.
+     */
+    public int getSpan() {
+        return span;
+    }
+
+    /**
+     * Check whether the lifecycle is inside of the given span.
+     *
+     * @param span Span to check.
+     * @return {@code true} if the current span is the given span or is nested in it.
+     */
+    public boolean isInSpan(int span) {
+        return (span != SPAN_NONE && this.span >= span);
+    }
+
+    /**
+     * Check whether the view controller is destroyed for good (it is not going to be re-created with the saved
+     * instance state). The value is valid when observers are notified about exiting {@link #SPAN_CREATED}.
+     *
+     * @return {@code true} if the view controller is destroyed for good.
+     */
+    public boolean isFinishing() {
+        return isFinishing;
+    }
+
+    /**
+     * Add the observer. If the lifecycle is already inside of some spans, the observer will be notified
+     * about entering them immediately.
+     *
+     * @param observer The observer.
+     */
+    public void addObserver(@NonNull Observer observer) {
+        if (observers.contains(observer)) {
+            return;
+        }
+
+        observers.add(observer);
+
+        for (int currentSpan = SPAN_CREATED; currentSpan <= span; currentSpan++) {
+            observer.onLifecycleSpanEnter(currentSpan);
+        }
+    }
+
+    /**
+     * Remove the observer. The observer is not notified about exiting spans.
+     *
+     * @param observer The observer.
+     */
+    public void removeObserver(@NonNull Observer observer) {
+        observers.remove(observer);
+    }
+
+    void setFinishing(boolean isFinishing) {
+        this.isFinishing = isFinishing;
+    }
+
+    void moveTo(int newSpan) {
+        while (span < newSpan) {
+            span++;
+            Observer[] currentObservers = observers.toArray(new Observer[observers.size()]);
+
+            for (Observer observer : currentObservers) {
+                observer.onLifecycleSpanEnter(span);
+            }
+        }
+
+        while (span > newSpan) {
+            int exitedSpan = span;
+            span--;
+            Observer[] currentObservers = observers.toArray(new Observer[observers.size()]);
+
+            for (int i = currentObservers.length - 1; i >= 0; i--) {
+                currentObservers[i].onLifecycleSpanExit(exitedSpan);
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.eightsines.holycycle;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Starts loading data for the view controller before it is created, to use the time between
+ * {@code startActivity()} (or fragment transaction commit) and {@link ViewController#onControllerCreate(Bundle extras)}.
+ * <p>Register prefetchers for view controller classes (usually in {@link android.app.Application#onCreate()}).
+ * When the screen is about to be launched, call {@link #prefetch(Class, Intent)} or {@link #prefetch(Class, Bundle)}
+ * with the same intent or arguments that will be used to launch it. The prefetcher is started on the shared
+ * thread pool, and a token is put in the intent extras (or arguments). Then take the result
+ * in {@link ViewController#onControllerCreate(Bundle extras)} using {@link #take(Bundle)}.</p>
+ * <p>The result is available only once, and only until its time-to-live expires. If the launch is cancelled,
+ * call {@link #cancel(Intent)} or {@link #cancel(Bundle)} to stop loading and free the result.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * // Caller:
+ * Intent intent = new Intent(context, ProfileActivity.class).putExtra(ProfileActivity.EXTRA_ID, id);
+ * ViewControllerPrefetch.prefetch(ProfileActivity.class, intent);
+ * startActivity(intent);
+ *
+ * // ProfileActivity.onControllerCreate(extras):
+ * Future<Profile> profileFuture = ViewControllerPrefetch.take(extras);
+ * }</pre>
+ */
+public final class ViewControllerPrefetch {
+    public static final long DEFAULT_TTL_MILLIS = 10000L;
+
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.ViewControllerPrefetch.TOKEN";
+
+    private static final Map<Class<?>, Registration> registrations = new HashMap<>();
+    private static final Map<String, PendingResult> pendingResults = new HashMap<>();
+
+    private static final Runnable removeExpiredRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ViewControllerPrefetch.class) {
+                scheduledRemoveAtMillis = Long.MAX_VALUE;
+                removeExpired();
+            }
+        }
+    };
+
+    private static Handler removeExpiredHandler;
+    private static long scheduledRemoveAtMillis = Long.MAX_VALUE;
+
+    private ViewControllerPrefetch() {
+    }
+
+    /**
+     * Register the prefetcher with the default time-to-live.
+     *
+     * @param controllerClass Class of the view controller (eg. activity or fragment class).
+     * @param prefetcher The prefetcher.
+     */
+    @SuppressWarnings("unused")
+    public static void register(@NonNull Class<? extends ViewController> controllerClass,
+            @NonNull ViewControllerPrefetcher<?> prefetcher) {
+
+        register(controllerClass, prefetcher, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Register the prefetcher.
+     *
+     * @param controllerClass Class of the view controller (eg. activity or fragment class).
+     * @param prefetcher The prefetcher.
+     * @param ttlMillis Time-to-live of the prefetched result in milliseconds. If the result is not taken during
+     * this time, it is dropped.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static synchronized void register(@NonNull Class<? extends ViewController> controllerClass,
+            @NonNull ViewControllerPrefetcher<?> prefetcher,
+            long ttlMillis) {
+
+        if (ttlMillis <= 0L) {
+            throw new IllegalArgumentException("Time-to-live must be positive (" + ttlMillis + ").");
+        }
+
+        registrations.put(controllerClass, new Registration(prefetcher, ttlMillis));
+    }
+
+    /**
+     * Unregister the prefetcher.
+     *
+     * @param controllerClass Class of the view controller.
+     */
+    @SuppressWarnings("unused")
+    public static synchronized void unregister(@NonNull Class<? extends ViewController> controllerClass) {
+        registrations.remove(controllerClass);
+    }
+
+    /**
+     * Start prefetching for the activity, which will be launched with the given intent.
+     * Call it after all extras are put in the intent.
+     *
+     * @param controllerClass Class of the view controller.
+     * @param intent Intent which will be used to launch the activity. The token is put in its extras.
+     * @return {@code true} if prefetching was started, {@code false} if there is no registered prefetcher.
+     */
+    @SuppressWarnings("unused")
+    public static boolean prefetch(@NonNull Class<? extends ViewController> controllerClass, @NonNull Intent intent) {
+        // Intent.getExtras() already returns a copy.
+        String token = start(controllerClass, intent.getExtras());
+
+        if (token == null) {
+            return false;
+        }
+
+        intent.putExtra(KEY_TOKEN, token);
+        return true;
+    }
+
+    /**
+     * Start prefetching for the fragment, which will be created with the given arguments.
+     * Call it after all arguments are put in the bundle.
+     *
+     * @param controllerClass Class of the view controller.
+     * @param arguments Arguments of the fragment. The token is put in them.
+     * @return {@code true} if prefetching was started, {@code false} if there is no registered prefetcher.
+     */
+    @SuppressWarnings("unused")
+    public static boolean prefetch(@NonNull Class<? extends ViewController> controllerClass, @NonNull Bundle arguments) {
+        String token = start(controllerClass, new Bundle(arguments));
+
+        if (token == null) {
+            return false;
+        }
+
+        arguments.putString(KEY_TOKEN, token);
+        return true;
+    }
+
+    /**
+     * Take the prefetched result. Should be called from {@link ViewController#onControllerCreate(Bundle extras)}.
+     * The result can be taken only once, so when the view controller is re-created (eg. after configuration change),
+     * this method returns {@code null}.
+     *
+     * @param extras Pass {@code extras} parameter of {@link ViewController#onControllerCreate(Bundle extras)} here.
+     * @param <T> Type of the prefetched data.
+     * @return Future which represents prefetching, or {@code null} if there is no prefetched result
+     * (it was not started, already taken, cancelled, or expired).
+     */
+    @SuppressWarnings({ "unchecked", "unused" })
+    @Nullable
+    public static <T> Future<T> take(@Nullable Bundle extras) {
+        String token = (extras == null ? null : extras.getString(KEY_TOKEN));
+
+        if (token == null) {
+            return null;
+        }
+
+        synchronized (ViewControllerPrefetch.class) {
+            removeExpired();
+            PendingResult pendingResult = pendingResults.remove(token);
+            return (pendingResult == null ? null : (Future<T>)pendingResult.future);
+        }
+    }
+
+    /**
+     * Cancel prefetching if the activity launch was cancelled.
+     *
+     * @param intent Intent which was passed to {@link #prefetch(Class, Intent)}.
+     */
+    @SuppressWarnings("unused")
+    public static void cancel(@NonNull Intent intent) {
+        cancel(intent.getStringExtra(KEY_TOKEN));
+    }
+
+    /**
+     * Cancel prefetching if the fragment creation was cancelled.
+     *
+     * @param arguments Arguments which were passed to {@link #prefetch(Class, Bundle)}.
+     */
+    @SuppressWarnings("unused")
+    public static void cancel(@NonNull Bundle arguments) {
+        cancel(arguments.getString(KEY_TOKEN));
+    }
+
+    @Nullable
+    private static synchronized String start(@NonNull Class<? extends ViewController> controllerClass,
+            @Nullable final Bundle extras) {
+
+        final Registration registration = registrations.get(controllerClass);
+
+        if (registration == null) {
+            return null;
+        }
+
+        removeExpired();
+
+        Future<?> future = ViewControllerExecutor.getSharedPool().submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return registration.prefetcher.onControllerPrefetch(extras);
+            }
+        });
+
+        // Random token, so the intent restored after the process death never matches the new prefetch.
+        String token = UUID.randomUUID().toString();
+        long expiresAtMillis = System.nanoTime() / 1000000L + registration.ttlMillis;
+
+        pendingResults.put(token, new PendingResult(future, expiresAtMillis));
+        scheduleRemoveExpired(expiresAtMillis);
+
+        return token;
+    }
+
+    private static synchronized void cancel(@Nullable String token) {
+        PendingResult pendingResult = (token == null ? null : pendingResults.remove(token));
+
+        if (pendingResult != null) {
+            pendingResult.future.cancel(true);
+        }
+    }
+
+    private static void removeExpired() {
+        long nowMillis = System.nanoTime() / 1000000L;
+
+        for (Iterator<PendingResult> iterator = pendingResults.values().iterator(); iterator.hasNext(); ) {
+            PendingResult pendingResult = iterator.next();
+
+            if (pendingResult.expiresAtMillis <= nowMillis) {
+                iterator.remove();
+                pendingResult.future.cancel(true);
+            } else {
+                scheduleRemoveExpired(pendingResult.expiresAtMillis);
+            }
+        }
+    }
+
+    private static void scheduleRemoveExpired(long expiresAtMillis) {
+        // Results are dropped on time, even if nothing is prefetched or taken anymore.
+        if (expiresAtMillis >= scheduledRemoveAtMillis) {
+            return;
+        }
+
+        if (removeExpiredHandler == null) {
+            removeExpiredHandler = new Handler(Looper.getMainLooper());
+        }
+
+        removeExpiredHandler.removeCallbacks(removeExpiredRunnable);
+        scheduledRemoveAtMillis = expiresAtMillis;
+
+        removeExpiredHandler.postDelayed(removeExpiredRunnable,
+                Math.max(0L, expiresAtMillis - System.nanoTime() / 1000000L));
+    }
+
+    private static class Registration {
+        private ViewControllerPrefetcher<?> prefetcher;
+        private long ttlMillis;
+
+        Registration(@NonNull ViewControllerPrefetcher<?> prefetcher, long ttlMillis) {
+            this.prefetcher = prefetcher;
+            this.ttlMillis = ttlMillis;
+        }
+    }
+
+    private static class PendingResult {
+        private Future<?> future;
+        private long expiresAtMillis;
+
+        PendingResult(@NonNull Future<?> future, long expiresAtMillis) {
+            this.future = future;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
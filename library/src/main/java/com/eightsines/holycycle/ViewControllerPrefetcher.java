@@ -0,0 +1,24 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+/**
+ * Loads data for the view controller before it is created. See {@link ViewControllerPrefetch} for details.
+ *
+ * @param <T> Type of the loaded data.
+ */
+public interface ViewControllerPrefetcher<T> {
+    /**
+     * Called on a background thread right after the screen launch is requested.
+     *
+     * @param extras Copy of the extras (for activities) or arguments (for fragments), which will be passed
+     * to {@link ViewController#onControllerCreate(Bundle extras)}.
+     * @return Loaded data.
+     * @throws Exception If data can't be loaded.
+     */
+    @WorkerThread
+    @Nullable
+    T onControllerPrefetch(@Nullable Bundle extras) throws Exception;
+}
@@ -0,0 +1,246 @@
+package com.eightsines.holycycle;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.net.Uri;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+
+/**
+ * Registry of resources (listeners, receivers, observers), which must be registered only while the view controller
+ * is inside of some lifecycle span. Declare resources once in {@link ViewController#onControllerCreate(android.os.Bundle extras)},
+ * and the registry will register them when the view controller enters the span, and unregister them when
+ * it exits the span.
+ * <p>When the span is entered, resources bound to it are registered in the order of declaration. When the span
+ * is exited, they are unregistered in the reverse order. If the resource is declared when the view controller
+ * is already inside of the span, it is registered immediately.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * getControllerResourceRegistry().addReceiver(ViewControllerLifecycle.SPAN_STARTED,
+ *         this,
+ *         batteryReceiver,
+ *         new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+ * }</pre>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerResourceRegistry implements ViewControllerLifecycle.Observer {
+    /**
+     * Resource which can be registered and unregistered.
+     */
+    public interface Binding {
+        /**
+         * Called when the view controller enters the span. Register the resource here.
+         */
+        @MainThread
+        void onBind();
+
+        /**
+         * Called when the view controller exits the span. Unregister the resource here.
+         */
+        @MainThread
+        void onUnbind();
+    }
+
+    private ViewControllerLifecycle lifecycle;
+    private ArrayList<Entry> entries = new ArrayList<>();
+
+    /**
+     * Resource registry constructor. Mostly you want to use the registry owned by the delegate, but it is possible
+     * to create separate registry for the given lifecycle.
+     *
+     * @param lifecycle The lifecycle, to which resources are bound.
+     */
+    public ViewControllerResourceRegistry(@NonNull ViewControllerLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Add the custom resource (eg. location listener).
+     *
+     * @param span The span, inside of which the resource is registered. One of {@link ViewControllerLifecycle#SPAN_CREATED},
+     * {@link ViewControllerLifecycle#SPAN_STARTED}, {@link ViewControllerLifecycle#SPAN_RESUMED}
+     * or {@link ViewControllerLifecycle#SPAN_FOCUSED}.
+     * @param binding The resource.
+     * @return The same binding, to allow to remove it later.
+     */
+    @MainThread
+    @NonNull
+    public Binding add(int span, @NonNull Binding binding) {
+        if (span < ViewControllerLifecycle.SPAN_CREATED || span > ViewControllerLifecycle.SPAN_FOCUSED) {
+            throw new IllegalArgumentException("Invalid span (" + span + ").");
+        }
+
+        Entry entry = new Entry(span, binding);
+        entries.add(entry);
+
+        if (lifecycle.isInSpan(span)) {
+            entry.bind();
+        }
+
+        return binding;
+    }
+
+    /**
+     * Add the broadcast receiver.
+     *
+     * @param span The span, inside of which the receiver is registered.
+     * @param context Context to register the receiver with.
+     * @param receiver The receiver.
+     * @param filter Intents to receive.
+     * @return Binding which represents the receiver.
+     */
+    @MainThread
+    @NonNull
+    public Binding addReceiver(int span,
+            @NonNull final Context context,
+            @NonNull final BroadcastReceiver receiver,
+            @NonNull final IntentFilter filter) {
+
+        return add(span, new Binding() {
+            @Override
+            public void onBind() {
+                context.registerReceiver(receiver, filter);
+            }
+
+            @Override
+            public void onUnbind() {
+                context.unregisterReceiver(receiver);
+            }
+        });
+    }
+
+    /**
+     * Add the sensor listener.
+     *
+     * @param span The span, inside of which the listener is registered.
+     * @param sensorManager The sensor manager.
+     * @param listener The listener.
+     * @param sensor The sensor.
+     * @param samplingPeriodUs Sampling period in microseconds, or one of {@code SensorManager.SENSOR_DELAY_*} constants.
+     * @return Binding which represents the listener.
+     */
+    @MainThread
+    @NonNull
+    public Binding addSensorListener(int span,
+            @NonNull final SensorManager sensorManager,
+            @NonNull final SensorEventListener listener,
+            @NonNull final Sensor sensor,
+            final int samplingPeriodUs) {
+
+        return add(span, new Binding() {
+            @Override
+            public void onBind() {
+                sensorManager.registerListener(listener, sensor, samplingPeriodUs);
+            }
+
+            @Override
+            public void onUnbind() {
+                sensorManager.unregisterListener(listener, sensor);
+            }
+        });
+    }
+
+    /**
+     * Add the content observer.
+     *
+     * @param span The span, inside of which the observer is registered.
+     * @param contentResolver The content resolver.
+     * @param uri The URI to watch.
+     * @param notifyForDescendants Whether to watch descendants of the URI.
+     * @param observer The observer.
+     * @return Binding which represents the observer.
+     */
+    @MainThread
+    @NonNull
+    public Binding addContentObserver(int span,
+            @NonNull final ContentResolver contentResolver,
+            @NonNull final Uri uri,
+            final boolean notifyForDescendants,
+            @NonNull final ContentObserver observer) {
+
+        return add(span, new Binding() {
+            @Override
+            public void onBind() {
+                contentResolver.registerContentObserver(uri, notifyForDescendants, observer);
+            }
+
+            @Override
+            public void onUnbind() {
+                contentResolver.unregisterContentObserver(observer);
+            }
+        });
+    }
+
+    /**
+     * Remove the resource. If it is registered, it is unregistered immediately.
+     *
+     * @param binding Binding returned by one of {@code add*()} methods.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    public void remove(@NonNull Binding binding) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+
+            if (entry.binding == binding) {
+                entries.remove(i);
+                entry.unbind();
+            }
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+        Entry[] currentEntries = entries.toArray(new Entry[entries.size()]);
+
+        for (Entry entry : currentEntries) {
+            if (entry.span == span) {
+                entry.bind();
+            }
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        Entry[] currentEntries = entries.toArray(new Entry[entries.size()]);
+
+        for (int i = currentEntries.length - 1; i >= 0; i--) {
+            if (currentEntries[i].span == span) {
+                currentEntries[i].unbind();
+            }
+        }
+    }
+
+    private static class Entry {
+        private int span;
+        private Binding binding;
+        private boolean isBound;
+
+        Entry(int span, @NonNull Binding binding) {
+            this.span = span;
+            this.binding = binding;
+        }
+
+        void bind() {
+            if (!isBound) {
+                isBound = true;
+                binding.onBind();
+            }
+        }
+
+        void unbind() {
+            if (isBound) {
+                isBound = false;
+                binding.onUnbind();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Optional extension of the {@link ViewController} for view controllers which keep live objects
+ * (loaded data, caches, running operations) across configuration changes.
+ * <p>When the view controller is going to be re-created right away because of the configuration change,
+ * the delegate asks it for the retained object. The instance state is saved as usual anyway, so nothing is lost
+ * if the retained object doesn't come back.</p>
+ * <p>The new view controller gets the same object in {@link #onControllerRestoreRetainedObject(Object retainedObject)}.
+ * In this case the whole instance state restore is skipped: {@link #onControllerRestoreInstanceState(Bundle savedInstanceState)}
+ * is not called, and neither {@link ViewControllerStateSnapshot}, {@link ViewControllerSavedState},
+ * {@link ViewControllerInstanceState} fields nor {@link ViewControllerLazyRestore} sections are restored,
+ * so the retained object must carry everything the view controller needs.</p>
+ * <p>After the process death, or when the retained object is {@code null}, the regular instance state
+ * is used.</p>
+ * <p>The retained object must not hold references to views, activity or other configuration-dependent objects,
+ * otherwise they will be leaked.</p>
+ */
+public interface ViewControllerRetain extends ViewController {
+    /**
+     * Called right before {@link #onControllerSaveInstanceState(Bundle outState)}, when the view controller
+     * is going to be re-created because of the configuration change.
+     *
+     * @return Object to pass to the new view controller, or {@code null} to save the instance state as usual.
+     */
+    @MainThread
+    @Nullable
+    Object onControllerRetainObject();
+
+    /**
+     * Called right after {@link #onControllerCreate(Bundle extras)} instead of
+     * {@link #onControllerRestoreInstanceState(Bundle savedInstanceState)}, when the view controller
+     * was re-created because of the configuration change.
+     *
+     * @param retainedObject Object returned from {@link #onControllerRetainObject()} by the previous view controller.
+     */
+    @MainThread
+    void onControllerRestoreRetainedObject(@NonNull Object retainedObject);
+}
@@ -0,0 +1,177 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Process-level store for derived data (parsed models, computed layouts and so on), which is expensive
+ * to compute, but can be computed again if lost. Values are kept in memory for the view controller identity
+ * (class of the view controller plus instance id, which is saved in the instance state), so they survive
+ * configuration changes and fragment back stack.
+ * <p>All stores share one memory budget. When it is exceeded, least recently used values are evicted
+ * (from any view controller). Values of the view controller are removed when it is destroyed for good
+ * (see {@link ViewControllerLifecycle#isFinishing()}).</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * ParsedDocument document = getControllerRetainedStore().get(KEY_DOCUMENT);
+ *
+ * if (document == null) {
+ *     document = parse(source);
+ *     getControllerRetainedStore().put(KEY_DOCUMENT, document, document.getSizeInBytes());
+ * }
+ * }</pre>
+ * <p>Methods of this class are thread-safe.</p>
+ */
+public class ViewControllerRetainedStore implements ViewControllerLifecycle.Observer {
+    public static final int DEFAULT_MAX_SIZE_BYTES = 8 * 1024 * 1024;
+
+    private static final String KEY_OWNER_ID = "com.eightsines.holycycle.ViewControllerRetainedStore.OWNER_ID";
+
+    // Access-ordered, so the eldest entry is the least recently used one.
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private static int maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+    private static int sizeBytes;
+
+    private ViewControllerLifecycle lifecycle;
+    private String ownerKey;
+    private String ownerId;
+
+    ViewControllerRetainedStore(@NonNull ViewControllerLifecycle lifecycle,
+            @NonNull Class<?> controllerClass,
+            @Nullable String ownerId) {
+
+        this.lifecycle = lifecycle;
+        this.ownerId = (ownerId == null ? UUID.randomUUID().toString() : ownerId);
+        this.ownerKey = controllerClass.getName() + ":" + this.ownerId + ":";
+
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Set the memory budget shared by all stores. If it is already exceeded, least recently used values
+     * are evicted immediately. Default is {@link #DEFAULT_MAX_SIZE_BYTES}.
+     *
+     * @param maxSizeBytes The budget in bytes.
+     */
+    @SuppressWarnings("unused")
+    public static synchronized void setMaxSize(int maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("Max size must be positive (" + maxSizeBytes + ").");
+        }
+
+        ViewControllerRetainedStore.maxSizeBytes = maxSizeBytes;
+        trimToSize();
+    }
+
+    /**
+     * Put the value. If the value is bigger than the whole budget, it is not stored at all.
+     *
+     * @param key The key of the value.
+     * @param value The value.
+     * @param valueSizeBytes Approximate size of the value in bytes.
+     */
+    public void put(@NonNull String key, @NonNull Object value, int valueSizeBytes) {
+        if (valueSizeBytes < 0) {
+            throw new IllegalArgumentException("Size must not be negative (" + valueSizeBytes + ").");
+        }
+
+        synchronized (ViewControllerRetainedStore.class) {
+            removeEntry(ownerKey + key);
+
+            if (valueSizeBytes <= maxSizeBytes) {
+                entries.put(ownerKey + key, new Entry(value, valueSizeBytes));
+                sizeBytes += valueSizeBytes;
+                trimToSize();
+            }
+        }
+    }
+
+    /**
+     * Get the value.
+     *
+     * @param key The key of the value.
+     * @param <T> Type of the value.
+     * @return The value, or {@code null} if there is no such value or it was evicted.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(@NonNull String key) {
+        synchronized (ViewControllerRetainedStore.class) {
+            Entry entry = entries.get(ownerKey + key);
+            return (entry == null ? null : (T)entry.value);
+        }
+    }
+
+    /**
+     * Remove the value.
+     *
+     * @param key The key of the value.
+     */
+    @SuppressWarnings("unused")
+    public void remove(@NonNull String key) {
+        synchronized (ViewControllerRetainedStore.class) {
+            removeEntry(ownerKey + key);
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span != ViewControllerLifecycle.SPAN_CREATED || !lifecycle.isFinishing()) {
+            return;
+        }
+
+        synchronized (ViewControllerRetainedStore.class) {
+            for (Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, Entry> mapEntry = iterator.next();
+
+                if (mapEntry.getKey().startsWith(ownerKey)) {
+                    sizeBytes -= mapEntry.getValue().sizeBytes;
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    void save(@NonNull Bundle outState) {
+        outState.putString(KEY_OWNER_ID, ownerId);
+    }
+
+    @Nullable
+    static String getSavedOwnerId(@NonNull Bundle savedInstanceState) {
+        return savedInstanceState.getString(KEY_OWNER_ID);
+    }
+
+    private static void removeEntry(@NonNull String entryKey) {
+        Entry entry = entries.remove(entryKey);
+
+        if (entry != null) {
+            sizeBytes -= entry.sizeBytes;
+        }
+    }
+
+    private static void trimToSize() {
+        for (Iterator<Entry> iterator = entries.values().iterator(); sizeBytes > maxSizeBytes && iterator.hasNext(); ) {
+            sizeBytes -= iterator.next().sizeBytes;
+            iterator.remove();
+        }
+    }
+
+    private static class Entry {
+        private Object value;
+        private int sizeBytes;
+
+        Entry(@NonNull Object value, int sizeBytes) {
+            this.value = value;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Typed container for the instance state, which tracks modifications of its properties. When the instance state
+ * is saved, only modified (dirty) properties are marshalled again, and previously marshalled bytes are reused
+ * for the rest. This is useful for fragments in the back stack, for which the instance state can be saved
+ * many times without any changes.
+ * <p>Declare properties in {@link ViewController#onControllerCreate(Bundle extras)}. The delegate restores them
+ * right before {@link ViewController#onControllerRestoreInstanceState(Bundle savedInstanceState)}
+ * and saves them right before {@link ViewController#onControllerSaveInstanceState(Bundle outState)}.
+ * Restored values are unmarshalled lazily, on the first {@link Property#get()} call.</p>
+ * <p>Values can be of any type supported by {@link Parcel#writeValue(Object)}. If the value is mutable and
+ * it is modified in place, call {@link Property#invalidate()}.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * private ViewControllerSavedState.Property<String> query;
+ *
+ * public void onControllerCreate(@Nullable Bundle extras) {
+ *     query = getControllerSavedState().property("query", "");
+ * }
+ * }</pre>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerSavedState {
+    private static final String KEY_PREFIX = "com.eightsines.holycycle.ViewControllerSavedState:";
+
+    private ClassLoader classLoader;
+    private LinkedHashMap<String, Property<?>> properties = new LinkedHashMap<>();
+
+    ViewControllerSavedState(@Nullable ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Declare the property.
+     *
+     * @param key Unique key of the property.
+     * @param initialValue Value of the property, if there is no saved instance state.
+     * @param <T> Type of the value.
+     * @return The property.
+     */
+    @MainThread
+    @NonNull
+    public <T> Property<T> property(@NonNull String key, @Nullable T initialValue) {
+        if (properties.containsKey(key)) {
+            throw new IllegalArgumentException("Property \"" + key + "\" is already declared.");
+        }
+
+        Property<T> property = new Property<>(initialValue);
+        properties.put(key, property);
+        return property;
+    }
+
+    void restore(@NonNull Bundle savedInstanceState) {
+        for (Map.Entry<String, Property<?>> entry : properties.entrySet()) {
+            byte[] bytes = savedInstanceState.getByteArray(KEY_PREFIX + entry.getKey());
+
+            if (bytes != null) {
+                entry.getValue().restore(bytes);
+            }
+        }
+    }
+
+    void save(@NonNull Bundle outState) {
+        for (Map.Entry<String, Property<?>> entry : properties.entrySet()) {
+            outState.putByteArray(KEY_PREFIX + entry.getKey(), entry.getValue().marshall());
+        }
+    }
+
+    /**
+     * Property of the instance state.
+     *
+     * @param <T> Type of the value.
+     */
+    public final class Property<T> {
+        private T value;
+        private byte[] bytes;
+        private boolean isUnmarshalled = true;
+
+        Property(@Nullable T value) {
+            this.value = value;
+        }
+
+        /**
+         * Returns the value.
+         *
+         * @return The value.
+         */
+        @SuppressWarnings("unchecked")
+        @MainThread
+        @Nullable
+        public T get() {
+            if (!isUnmarshalled) {
+                Parcel parcel = Parcel.obtain();
+
+                try {
+                    parcel.unmarshall(bytes, 0, bytes.length);
+                    parcel.setDataPosition(0);
+                    value = (T)parcel.readValue(classLoader);
+                } finally {
+                    parcel.recycle();
+                }
+
+                isUnmarshalled = true;
+            }
+
+            return value;
+        }
+
+        /**
+         * Set the value and mark the property as modified.
+         *
+         * @param value The value.
+         */
+        @MainThread
+        public void set(@Nullable T value) {
+            this.value = value;
+            isUnmarshalled = true;
+            bytes = null;
+        }
+
+        /**
+         * Mark the property as modified. Call it if the value was modified in place.
+         */
+        @MainThread
+        public void invalidate() {
+            // Unmarshal first, so the restored value is not lost when the bytes are dropped.
+            get();
+            bytes = null;
+        }
+
+        void restore(@NonNull byte[] bytes) {
+            this.bytes = bytes;
+            isUnmarshalled = false;
+            value = null;
+        }
+
+        @NonNull
+        byte[] marshall() {
+            if (bytes == null) {
+                Parcel parcel = Parcel.obtain();
+
+                try {
+                    parcel.writeValue(value);
+                    bytes = parcel.marshall();
+                } finally {
+                    parcel.recycle();
+                }
+            }
+
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.eightsines.holycycle;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Initialization tasks of the view controller, which are executed in parallel according to their dependencies.
+ * Tasks should be added in {@link ViewController#onControllerCreate(android.os.Bundle extras)}. Right after it
+ * the delegate launches background tasks on the shared thread pool, and continues with the content view creation.
+ * <p>Main thread blocks only at barriers: right before {@link ViewController#onControllerContentViewCreated()}
+ * the delegate waits for tasks with {@link #BARRIER_CONTENT_VIEW_CREATED} barrier, and right before
+ * {@link ViewController#onControllerStart()} it waits for all remaining tasks. Tasks with {@link #THREAD_MAIN}
+ * are executed on the main thread while it waits at the barrier, so they are executed after
+ * the content view is set. While the main thread waits, it also executes background tasks which are not
+ * picked up by the shared thread pool yet, so busy pool never holds the barrier. By default the wait is
+ * unbounded, like a plain {@code Future.get()}. Use {@link #setAwaitTimeout(long timeoutMillis)} to fail
+ * the barrier instead, eg. in debug builds to catch a task which waits for the main thread.</p>
+ * <p>If some task throws an exception, tasks which depend on it are not executed, and the exception is
+ * rethrown on the main thread at the barrier.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * getControllerStartupTasks()
+ *         .add("db", ViewControllerStartupTasks.THREAD_BACKGROUND, ViewControllerStartupTasks.BARRIER_START, openDbTask)
+ *         .add("config", ViewControllerStartupTasks.THREAD_BACKGROUND, ViewControllerStartupTasks.BARRIER_START, configTask)
+ *         .add("bind", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, bindTask, "db", "config");
+ * }</pre>
+ */
+public class ViewControllerStartupTasks {
+    public static final int THREAD_MAIN = 0;
+    public static final int THREAD_BACKGROUND = 1;
+
+    public static final int BARRIER_CONTENT_VIEW_CREATED = 0;
+    public static final int BARRIER_START = 1;
+
+    private static final int TASK_STATE_PENDING = 0;
+    private static final int TASK_STATE_QUEUED = 1;
+    private static final int TASK_STATE_RUNNING = 2;
+    private static final int TASK_STATE_DONE = 3;
+    private static final int TASK_STATE_FAILED = 4;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Task> tasks = new LinkedHashMap<>();
+    private boolean isLaunched;
+    private long awaitTimeoutMillis;
+
+    ViewControllerStartupTasks() {
+    }
+
+    /**
+     * Add the task. Should be called from {@link ViewController#onControllerCreate(android.os.Bundle extras)}.
+     *
+     * @param name Unique name of the task.
+     * @param thread Either {@link #THREAD_MAIN} or {@link #THREAD_BACKGROUND}.
+     * @param barrier The barrier, before which the task must be completed. Either {@link #BARRIER_CONTENT_VIEW_CREATED}
+     * or {@link #BARRIER_START}.
+     * @param runnable The task.
+     * @param dependencies Names of tasks, which must be completed before this task is started.
+     * @return This object, to allow chaining.
+     */
+    @MainThread
+    @NonNull
+    public ViewControllerStartupTasks add(@NonNull String name,
+            int thread,
+            int barrier,
+            @NonNull Runnable runnable,
+            @NonNull String... dependencies) {
+
+        if (thread != THREAD_MAIN && thread != THREAD_BACKGROUND) {
+            throw new IllegalArgumentException("Invalid thread (" + thread + ") for startup task \"" + name + "\".");
+        }
+
+        if (barrier != BARRIER_CONTENT_VIEW_CREATED && barrier != BARRIER_START) {
+            throw new IllegalArgumentException("Invalid barrier (" + barrier + ") for startup task \"" + name + "\".");
+        }
+
+        synchronized (lock) {
+            if (isLaunched) {
+                throw new IllegalStateException("add() was called after startup tasks were launched, perhaps you called it after onControllerCreate()?");
+            }
+
+            if (tasks.containsKey(name)) {
+                throw new IllegalArgumentException("Startup task \"" + name + "\" is already added.");
+            }
+
+            tasks.put(name, new Task(name, thread, barrier, runnable, dependencies));
+        }
+
+        return this;
+    }
+
+    /**
+     * Set the maximum time, during which the main thread waits for tasks at a barrier. When the time is out,
+     * the barrier fails with an exception. By default there is no timeout.
+     *
+     * @param timeoutMillis The timeout in milliseconds.
+     * @return This object, to allow chaining.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    @NonNull
+    public ViewControllerStartupTasks setAwaitTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0L) {
+            throw new IllegalArgumentException("Invalid await timeout (" + timeoutMillis + ").");
+        }
+
+        synchronized (lock) {
+            awaitTimeoutMillis = timeoutMillis;
+        }
+
+        return this;
+    }
+
+    void launch() {
+        ArrayList<Task> readyTasks = new ArrayList<>();
+
+        synchronized (lock) {
+            if (isLaunched) {
+                return;
+            }
+
+            isLaunched = true;
+
+            for (Task task : tasks.values()) {
+                for (String dependencyName : task.dependencyNames) {
+                    Task dependency = tasks.get(dependencyName);
+
+                    if (dependency == null) {
+                        throw new IllegalStateException("Startup task \""
+                                + task.name
+                                + "\" depends on unknown task \""
+                                + dependencyName
+                                + "\".");
+                    }
+
+                    dependency.dependents.add(task);
+                }
+
+                task.remainingDependencies = task.dependencyNames.length;
+            }
+
+            resolveBarriers();
+
+            for (Task task : tasks.values()) {
+                if (task.thread == THREAD_BACKGROUND && task.remainingDependencies == 0) {
+                    task.state = TASK_STATE_QUEUED;
+                    readyTasks.add(task);
+                }
+            }
+        }
+
+        for (Task task : readyTasks) {
+            ViewControllerExecutor.getSharedPool().execute(task);
+        }
+    }
+
+    void await(int barrier) {
+        boolean isInterrupted = false;
+        long deadlineMillis = 0L;
+
+        try {
+            while (true) {
+                Task mainTask = null;
+
+                synchronized (lock) {
+                    if (!isLaunched) {
+                        return;
+                    }
+
+                    boolean isCompleted = true;
+
+                    for (Task task : tasks.values()) {
+                        if (task.barrier > barrier) {
+                            continue;
+                        }
+
+                        if (task.state == TASK_STATE_FAILED) {
+                            throw new RuntimeException("Startup task \"" + task.failedTaskName + "\" has failed.", task.error);
+                        }
+
+                        if (task.state != TASK_STATE_DONE) {
+                            isCompleted = false;
+                        }
+                    }
+
+                    if (isCompleted) {
+                        return;
+                    }
+
+                    mainTask = claimTaskForMainThread(barrier);
+
+                    if (mainTask == null) {
+                        long nowMillis = System.nanoTime() / 1000000L;
+
+                        if (awaitTimeoutMillis == 0L) {
+                            // Zero means to wait without a timeout.
+                            deadlineMillis = 0L;
+                        } else if (deadlineMillis == 0L) {
+                            deadlineMillis = nowMillis + awaitTimeoutMillis;
+                        } else if (nowMillis >= deadlineMillis) {
+                            throw new IllegalStateException("Startup tasks were not completed in "
+                                    + awaitTimeoutMillis
+                                    + " ms, perhaps some task waits for the main thread?");
+                        }
+
+                        try {
+                            lock.wait(deadlineMillis == 0L ? 0L : deadlineMillis - nowMillis);
+                        } catch (InterruptedException e) {
+                            isInterrupted = true;
+                        }
+
+                        continue;
+                    }
+                }
+
+                mainTask.execute();
+            }
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Nullable
+    private Task claimTaskForMainThread(int barrier) {
+        Task queuedTask = null;
+
+        for (Task task : tasks.values()) {
+            if (task.barrier > barrier || task.remainingDependencies != 0) {
+                continue;
+            }
+
+            if (task.thread == THREAD_MAIN && task.state == TASK_STATE_PENDING) {
+                task.state = TASK_STATE_RUNNING;
+                return task;
+            }
+
+            if (queuedTask == null && task.state == TASK_STATE_QUEUED) {
+                queuedTask = task;
+            }
+        }
+
+        // Background task, which is still waiting in the shared pool queue, is executed right here
+        // rather than waiting for the pool (which may be busy with unrelated work).
+        if (queuedTask != null) {
+            queuedTask.state = TASK_STATE_RUNNING;
+        }
+
+        return queuedTask;
+    }
+
+    private void resolveBarriers() {
+        LinkedHashMap<Task, Integer> remainingDependencies = new LinkedHashMap<>();
+        ArrayList<Task> readyTasks = new ArrayList<>();
+
+        for (Task task : tasks.values()) {
+            remainingDependencies.put(task, task.dependencyNames.length);
+
+            if (task.dependencyNames.length == 0) {
+                readyTasks.add(task);
+            }
+        }
+
+        for (int i = 0; i < readyTasks.size(); i++) {
+            for (Task dependent : readyTasks.get(i).dependents) {
+                int remaining = remainingDependencies.get(dependent) - 1;
+                remainingDependencies.put(dependent, remaining);
+
+                if (remaining == 0) {
+                    readyTasks.add(dependent);
+                }
+            }
+        }
+
+        if (readyTasks.size() != tasks.size()) {
+            for (Task task : tasks.values()) {
+                if (remainingDependencies.get(task) != 0) {
+                    throw new IllegalStateException("Startup task \"" + task.name + "\" has cyclic dependencies.");
+                }
+            }
+        }
+
+        // Task must be completed before the barrier of any task which depends on it.
+        for (int i = readyTasks.size() - 1; i >= 0; i--) {
+            Task task = readyTasks.get(i);
+
+            for (Task dependent : task.dependents) {
+                task.barrier = Math.min(task.barrier, dependent.barrier);
+            }
+        }
+    }
+
+    private void complete(@NonNull Task task, Throwable error) {
+        ArrayList<Task> readyTasks = new ArrayList<>();
+
+        synchronized (lock) {
+            if (error == null) {
+                task.state = TASK_STATE_DONE;
+
+                for (Task dependent : task.dependents) {
+                    dependent.remainingDependencies--;
+
+                    if (dependent.thread == THREAD_BACKGROUND && dependent.remainingDependencies == 0) {
+                        dependent.state = TASK_STATE_QUEUED;
+                        readyTasks.add(dependent);
+                    }
+                }
+            } else {
+                fail(task, task.name, error);
+            }
+
+            lock.notifyAll();
+        }
+
+        for (Task readyTask : readyTasks) {
+            ViewControllerExecutor.getSharedPool().execute(readyTask);
+        }
+    }
+
+    private void fail(@NonNull Task task, @NonNull String failedTaskName, @NonNull Throwable error) {
+        task.state = TASK_STATE_FAILED;
+        task.failedTaskName = failedTaskName;
+        task.error = error;
+
+        // Dependent tasks will never be started, so mark them as failed too.
+        for (Task dependent : task.dependents) {
+            if (dependent.state == TASK_STATE_PENDING) {
+                fail(dependent, failedTaskName, error);
+            }
+        }
+    }
+
+    private class Task implements Runnable {
+        private String name;
+        private int thread;
+        private int barrier;
+        private Runnable runnable;
+        private String[] dependencyNames;
+        private ArrayList<Task> dependents = new ArrayList<>();
+        private int remainingDependencies;
+        private int state = TASK_STATE_PENDING;
+        private String failedTaskName;
+        private Throwable error;
+
+        Task(@NonNull String name, int thread, int barrier, @NonNull Runnable runnable, @NonNull String[] dependencyNames) {
+            this.name = name;
+            this.thread = thread;
+            this.barrier = barrier;
+            this.runnable = runnable;
+            this.dependencyNames = dependencyNames;
+        }
+
+        @Override
+        public void run() {
+            synchronized (lock) {
+                // Task may be already executed by the main thread.
+                if (state != TASK_STATE_QUEUED) {
+                    return;
+                }
+
+                state = TASK_STATE_RUNNING;
+            }
+
+            execute();
+        }
+
+        private void execute() {
+            try {
+                runnable.run();
+            } catch (RuntimeException | Error e) {
+                complete(this, e);
+                return;
+            }
+
+            complete(this, null);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+
+/**
+ * Saves and restores fields marked with {@link ViewControllerInstanceState}. Implementations are generated
+ * by the annotation processor (as {@code <ViewControllerClass>$$StateCodec}), don't implement this interface manually.
+ *
+ * @param <T> Type of the view controller.
+ */
+public interface ViewControllerStateCodec<T> {
+    /**
+     * Save fields of the view controller.
+     *
+     * @param controller The view controller.
+     * @param outState Bundle to save fields to.
+     */
+    void save(@NonNull T controller, @NonNull Bundle outState);
+
+    /**
+     * Restore fields of the view controller.
+     *
+     * @param controller The view controller.
+     * @param savedInstanceState Bundle to restore fields from.
+     */
+    void restore(@NonNull T controller, @NonNull Bundle savedInstanceState);
+}
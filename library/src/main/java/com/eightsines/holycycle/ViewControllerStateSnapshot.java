@@ -0,0 +1,29 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+
+/**
+ * Optional extension of the {@link ViewController} for view controllers with big instance state.
+ * Instead of writing the whole state in {@link #onControllerSaveInstanceState(Bundle outState)} on the main thread,
+ * the view controller creates an immutable snapshot of the state right after {@link #onControllerPause()},
+ * and the delegate marshals it into a byte array on a background thread. When the instance state is saved,
+ * the delegate just copies the ready byte array into {@code outState}.
+ * <p>If the snapshot is not marshalled yet, or it was invalidated, the delegate falls back to
+ * the synchronous path and copies the snapshot values into {@code outState} directly.</p>
+ * <p>Values of the snapshot are put back into {@code savedInstanceState} before
+ * {@link #onControllerRestoreInstanceState(Bundle savedInstanceState)} is called, so they are read as usual.
+ * {@link #onControllerSaveInstanceState(Bundle outState)} is still called, and can be used for small values.</p>
+ */
+public interface ViewControllerStateSnapshot extends ViewController {
+    /**
+     * Called right after {@link #onControllerPause()}, and also when the instance state is saved,
+     * but the snapshot was invalidated. The returned bundle must not be modified afterwards.
+     * If the state is changed after this call (while the view controller is paused), invalidate the snapshot
+     * using the delegate.
+     *
+     * @return Snapshot of the instance state, or {@code null} if there is nothing to save.
+     */
+    @Nullable
+    Bundle onControllerCreateStateSnapshot();
+}
@@ -0,0 +1,461 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store for large instance state (big lists, editor contents), which should not be put in the {@link Bundle}.
+ * Values are kept in the process memory, and the {@code outState} bundle carries only a small token.
+ * <p>When the view controller is re-created in the same process, values are returned as is, without any parcelling.
+ * In background, values are also written to the app-private directory, so after the process death they are
+ * loaded from disk in background too. The delegate starts loading in {@code onCreate()}, so usually values are
+ * already loaded when {@link #get(Bundle, String)} is called, otherwise it waits for the load to complete.</p>
+ * <p>Values are removed when the view controller is destroyed for good (see {@link ViewControllerLifecycle#isFinishing()}),
+ * or when their time-to-live expires.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * public void onControllerSaveInstanceState(@NonNull Bundle outState) {
+ *     // Values are written to disk in background, so put a snapshot rather than the live list.
+ *     getControllerStateStore().put(outState, KEY_ITEMS, new ArrayList<>(items));
+ * }
+ *
+ * public void onControllerRestoreInstanceState(@NonNull Bundle savedInstanceState) {
+ *     items = getControllerStateStore().get(savedInstanceState, KEY_ITEMS);
+ * }
+ * }</pre>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ */
+public class ViewControllerStateStore implements ViewControllerLifecycle.Observer {
+    public static final long DEFAULT_TTL_MILLIS = 24L * 60L * 60L * 1000L;
+
+    private static final String TAG = "ViewControllerState";
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.ViewControllerStateStore.TOKEN";
+    private static final String DIR_NAME = "holycycle_state";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30L;
+
+    private static final Map<String, Entry> entries = new HashMap<>();
+    private static long ttlMillis = DEFAULT_TTL_MILLIS;
+    private static ExecutorService diskExecutor;
+    private static boolean isExpiredFilesRemoved;
+
+    private File dir;
+    private ViewControllerLifecycle lifecycle;
+    private String token;
+
+    /**
+     * State store constructor. Mostly you want to use the store owned by the delegate, but it is possible
+     * to create separate store for the given lifecycle.
+     *
+     * @param context Any context, used to find the app-private directory.
+     * @param lifecycle The lifecycle, to which the store is bound.
+     */
+    public ViewControllerStateStore(@NonNull Context context, @NonNull ViewControllerLifecycle lifecycle) {
+        this.dir = context.getApplicationContext().getDir(DIR_NAME, Context.MODE_PRIVATE);
+        this.lifecycle = lifecycle;
+
+        lifecycle.addObserver(this);
+        removeExpiredFiles(dir);
+    }
+
+    /**
+     * Start loading values in background, if they are not in memory. Called by the delegate
+     * from {@code onCreate()}, long before the view controller restores the instance state.
+     *
+     * @param context Any context, used to find the app-private directory.
+     * @param savedInstanceState Pass {@code savedInstanceState} parameter here.
+     */
+    static void preload(@NonNull Context context, @Nullable Bundle savedInstanceState) {
+        String savedToken = (savedInstanceState == null ? null : savedInstanceState.getString(KEY_TOKEN));
+
+        if (savedToken == null) {
+            return;
+        }
+
+        File dir = context.getApplicationContext().getDir(DIR_NAME, Context.MODE_PRIVATE);
+
+        synchronized (ViewControllerStateStore.class) {
+            removeExpiredEntries();
+            obtainEntry(dir, savedToken);
+        }
+    }
+
+    /**
+     * Set time-to-live for stored values. Values which are not restored during this time are removed.
+     * Default is {@link #DEFAULT_TTL_MILLIS}.
+     *
+     * @param ttlMillis Time-to-live in milliseconds.
+     */
+    @SuppressWarnings("unused")
+    public static synchronized void setTtl(long ttlMillis) {
+        if (ttlMillis <= 0L) {
+            throw new IllegalArgumentException("Time-to-live must be positive (" + ttlMillis + ").");
+        }
+
+        ViewControllerStateStore.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Put the value. Should be called from {@link ViewController#onControllerSaveInstanceState(Bundle outState)}.
+     * The value is written to disk in background, so it must not be modified after this call. Pass a copy
+     * (eg. {@code new ArrayList<>(items)}) if the view controller continues to modify the value. If the value
+     * is modified anyway (or can't be serialized), it is not written, and will be lost after the process death.
+     *
+     * @param outState Pass {@code outState} parameter here. Only the token is put in it.
+     * @param key The key of the value.
+     * @param value The value.
+     */
+    @MainThread
+    public void put(@NonNull Bundle outState, @NonNull String key, @Nullable Serializable value) {
+        if (token == null) {
+            token = UUID.randomUUID().toString();
+        }
+
+        outState.putString(KEY_TOKEN, token);
+
+        synchronized (ViewControllerStateStore.class) {
+            removeExpiredEntries();
+            Entry entry = entries.get(token);
+
+            if (entry == null) {
+                entry = new Entry(new File(dir, token), new HashMap<String, Serializable>());
+                entries.put(token, entry);
+            } else if (entry.values == null) {
+                // Values are still loading, but they will be replaced on the next save anyway.
+                entry.values = new HashMap<>();
+                entry.loadFuture = null;
+            }
+
+            entry.values.put(key, value);
+            entry.expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+
+            if (!entry.isWriteScheduled) {
+                entry.isWriteScheduled = true;
+                getDiskExecutor().execute(new WriteRunnable(entry));
+            }
+        }
+    }
+
+    /**
+     * Get the value. Should be called from {@link ViewController#onControllerRestoreInstanceState(Bundle savedInstanceState)}.
+     * After the process death, the first call waits until values are loaded from disk.
+     *
+     * @param savedInstanceState Pass {@code savedInstanceState} parameter here.
+     * @param key The key of the value.
+     * @param <T> Type of the value.
+     * @return The value, or {@code null} if there is no such value or it is expired.
+     */
+    @SuppressWarnings("unchecked")
+    @MainThread
+    @Nullable
+    public <T extends Serializable> T get(@Nullable Bundle savedInstanceState, @NonNull String key) {
+        String savedToken = (savedInstanceState == null ? null : savedInstanceState.getString(KEY_TOKEN));
+
+        if (savedToken == null) {
+            return null;
+        }
+
+        // Continue to use the same token, so values will be replaced on the next save.
+        token = savedToken;
+
+        Entry entry;
+
+        synchronized (ViewControllerStateStore.class) {
+            removeExpiredEntries();
+            entry = obtainEntry(dir, token);
+
+            if (entry.values != null) {
+                return (T)entry.values.get(key);
+            }
+        }
+
+        // Wait outside of the lock, so the disk thread and other stores are not blocked.
+        HashMap<String, Serializable> values = awaitValues(entry.loadFuture);
+
+        synchronized (ViewControllerStateStore.class) {
+            if (entry.values == null) {
+                entry.values = values;
+                entry.loadFuture = null;
+            }
+
+            return (T)entry.values.get(key);
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span == ViewControllerLifecycle.SPAN_CREATED && lifecycle.isFinishing() && token != null) {
+            synchronized (ViewControllerStateStore.class) {
+                Entry entry = entries.remove(token);
+
+                if (entry != null) {
+                    removeEntry(entry);
+                } else {
+                    // Values may be still on disk, if the view controller was not restored.
+                    getDiskExecutor().execute(new DeleteRunnable(new File(dir, token)));
+                }
+            }
+
+            token = null;
+        }
+    }
+
+    @NonNull
+    private static Entry obtainEntry(@NonNull File dir, @NonNull String token) {
+        Entry entry = entries.get(token);
+
+        if (entry == null) {
+            final File file = new File(dir, token);
+
+            entry = new Entry(file, null);
+            entry.expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+
+            entry.loadFuture = getDiskExecutor().submit(new Callable<HashMap<String, Serializable>>() {
+                @Override
+                public HashMap<String, Serializable> call() {
+                    return readValues(file);
+                }
+            });
+
+            entries.put(token, entry);
+        }
+
+        return entry;
+    }
+
+    @NonNull
+    private static HashMap<String, Serializable> awaitValues(@NonNull Future<HashMap<String, Serializable>> loadFuture) {
+        boolean isInterrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return loadFuture.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                } catch (ExecutionException e) {
+                    Log.w(TAG, "Failed to read the stored state", e.getCause());
+                    return new HashMap<>();
+                }
+            }
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void removeExpiredEntries() {
+        long nowMillis = System.currentTimeMillis();
+
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+
+            if (entry.expiresAtMillis <= nowMillis) {
+                iterator.remove();
+                removeEntry(entry);
+            }
+        }
+    }
+
+    private static void removeEntry(@NonNull Entry entry) {
+        entry.isRemoved = true;
+        getDiskExecutor().execute(new DeleteRunnable(entry.file));
+    }
+
+    private static synchronized void removeExpiredFiles(@NonNull final File dir) {
+        if (isExpiredFilesRemoved) {
+            return;
+        }
+
+        isExpiredFilesRemoved = true;
+        final long expiredBeforeMillis = System.currentTimeMillis() - ttlMillis;
+
+        getDiskExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = dir.listFiles();
+
+                if (files == null) {
+                    return;
+                }
+
+                for (File file : files) {
+                    if (file.lastModified() < expiredBeforeMillis || file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                        deleteFile(file);
+                    }
+                }
+            }
+        });
+    }
+
+    @NonNull
+    private static HashMap<String, Serializable> readValues(@NonNull File file) {
+        if (!file.exists()) {
+            return new HashMap<>();
+        }
+
+        if (file.lastModified() < System.currentTimeMillis() - ttlMillis) {
+            deleteFile(file);
+            return new HashMap<>();
+        }
+
+        ObjectInputStream in = null;
+
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            @SuppressWarnings("unchecked")
+            HashMap<String, Serializable> values = (HashMap<String, Serializable>)in.readObject();
+
+            return values;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            Log.w(TAG, "Failed to read the stored state", e);
+            return new HashMap<>();
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static void writeValues(@NonNull File file, @NonNull HashMap<String, Serializable> values) {
+        File tempFile = new File(file.getPath() + TEMP_FILE_SUFFIX);
+        ObjectOutputStream out = null;
+
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeObject(values);
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename \"" + tempFile + "\" to \"" + file + "\"");
+            }
+        } catch (IOException | RuntimeException e) {
+            // RuntimeException - eg. ConcurrentModificationException if the value is modified while it is written.
+            Log.w(TAG, "Failed to write the stored state, it will be lost after the process death", e);
+            deleteFile(tempFile);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void deleteFile(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete \"" + file + "\"");
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+    }
+
+    @NonNull
+    static synchronized ExecutorService getDiskExecutor() {
+        if (diskExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1,
+                    1,
+                    THREAD_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            return new Thread(runnable, TAG);
+                        }
+                    });
+
+            executor.allowCoreThreadTimeOut(true);
+            diskExecutor = executor;
+        }
+
+        return diskExecutor;
+    }
+
+    private static class Entry {
+        private File file;
+        private HashMap<String, Serializable> values;
+        private Future<HashMap<String, Serializable>> loadFuture;
+        private long expiresAtMillis;
+        private boolean isWriteScheduled;
+        private boolean isRemoved;
+
+        Entry(@NonNull File file, @Nullable HashMap<String, Serializable> values) {
+            this.file = file;
+            this.values = values;
+        }
+    }
+
+    private static class WriteRunnable implements Runnable {
+        private Entry entry;
+
+        WriteRunnable(@NonNull Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            HashMap<String, Serializable> values;
+
+            synchronized (ViewControllerStateStore.class) {
+                entry.isWriteScheduled = false;
+
+                if (entry.isRemoved) {
+                    return;
+                }
+
+                values = new HashMap<>(entry.values);
+            }
+
+            writeValues(entry.file, values);
+        }
+    }
+
+    private static class DeleteRunnable implements Runnable {
+        private File file;
+
+        DeleteRunnable(@NonNull File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            deleteFile(file);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.eightsines.holycycle;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Queue of UI updates, which are applied at most once per frame. Updates can be posted from any thread
+ * and are coalesced by key, so only the latest value for every key is applied.
+ * <p>Updates are applied only while the view controller is started. While it is stopped, updates are buffered,
+ * and the final state is applied right before {@link ViewController#onControllerStart()}. Pending updates
+ * are dropped when the view controller is destroyed.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * // Called hundreds of times per second from the sync thread:
+ * getControllerUpdateQueue().post("progress", progress, progressUpdater);
+ * }</pre>
+ */
+public class ViewControllerUpdateQueue implements ViewControllerLifecycle.Observer {
+    /**
+     * Applies the update to the UI.
+     *
+     * @param <T> Type of the value.
+     */
+    public interface Updater<T> {
+        /**
+         * Called on the main thread to apply the latest value.
+         *
+         * @param key The key of the update.
+         * @param value The latest value.
+         */
+        @MainThread
+        void onApplyUpdate(@NonNull String key, @Nullable T value);
+    }
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, PendingUpdate<?>> pendingUpdates = new LinkedHashMap<>();
+    private Handler mainHandler;
+    private Object frameCallback;
+    private boolean isStarted;
+    private boolean isScheduled;
+
+    private final Runnable scheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+
+    private final Runnable applyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyPendingUpdates();
+        }
+    };
+
+    /**
+     * Update queue constructor. Mostly you want to use the queue owned by the delegate, but it is possible
+     * to create separate queue for the given lifecycle.
+     *
+     * @param lifecycle The lifecycle, to which the queue is bound.
+     */
+    public ViewControllerUpdateQueue(@NonNull ViewControllerLifecycle lifecycle) {
+        this(lifecycle, new Handler(Looper.getMainLooper()));
+    }
+
+    ViewControllerUpdateQueue(@NonNull ViewControllerLifecycle lifecycle, @NonNull Handler mainHandler) {
+        this.mainHandler = mainHandler;
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Post the update. Can be called from any thread.
+     *
+     * @param key The key of the update. Pending update with the same key is replaced.
+     * @param value The value.
+     * @param updater Applies the value to the UI.
+     * @param <T> Type of the value.
+     */
+    public <T> void post(@NonNull String key, @Nullable T value, @NonNull Updater<T> updater) {
+        synchronized (lock) {
+            // Remove first to move the key to the end of the queue.
+            pendingUpdates.remove(key);
+            pendingUpdates.put(key, new PendingUpdate<>(key, value, updater));
+
+            if (!isStarted || isScheduled) {
+                return;
+            }
+
+            isScheduled = true;
+        }
+
+        if (mainHandler.getLooper().getThread() == Thread.currentThread()) {
+            scheduleFrame();
+        } else {
+            // Choreographer is bound to the thread, so schedule the frame from the main thread.
+            mainHandler.post(scheduleRunnable);
+        }
+    }
+
+    /**
+     * Remove the pending update. Can be called from any thread.
+     *
+     * @param key The key of the update.
+     */
+    @SuppressWarnings("unused")
+    public void remove(@NonNull String key) {
+        synchronized (lock) {
+            pendingUpdates.remove(key);
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+        if (span == ViewControllerLifecycle.SPAN_STARTED) {
+            synchronized (lock) {
+                isStarted = true;
+            }
+
+            applyPendingUpdates();
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span == ViewControllerLifecycle.SPAN_STARTED) {
+            synchronized (lock) {
+                isStarted = false;
+                isScheduled = false;
+            }
+
+            mainHandler.removeCallbacks(scheduleRunnable);
+            mainHandler.removeCallbacks(applyRunnable);
+
+            if (frameCallback != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                removeFrameCallback();
+            }
+        } else if (span == ViewControllerLifecycle.SPAN_CREATED) {
+            synchronized (lock) {
+                pendingUpdates.clear();
+            }
+        }
+    }
+
+    private void scheduleFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            mainHandler.post(applyRunnable);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (frameCallback == null) {
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    applyPendingUpdates();
+                }
+            };
+        }
+
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback)frameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void removeFrameCallback() {
+        Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback)frameCallback);
+    }
+
+    private void applyPendingUpdates() {
+        ArrayList<PendingUpdate<?>> updates;
+
+        synchronized (lock) {
+            isScheduled = false;
+
+            if (!isStarted || pendingUpdates.isEmpty()) {
+                return;
+            }
+
+            updates = new ArrayList<>(pendingUpdates.values());
+            pendingUpdates.clear();
+        }
+
+        for (PendingUpdate<?> update : updates) {
+            update.apply();
+        }
+    }
+
+    private static class PendingUpdate<T> {
+        private String key;
+        private T value;
+        private Updater<T> updater;
+
+        PendingUpdate(@NonNull String key, @Nullable T value, @NonNull Updater<T> updater) {
+            this.key = key;
+            this.value = value;
+            this.updater = updater;
+        }
+
+        void apply() {
+            updater.onApplyUpdate(key, value);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.eightsines.holycycle;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind helper for {@link ViewController#onControllerPersistUserData()}. Instead of writing user data
+ * on the main thread, the view controller hands over an immutable snapshot of the data, which is written
+ * on a background thread.
+ * <p>Snapshots with the same key are coalesced: if the previous snapshot is not written yet, it is replaced
+ * by the new one. All pending snapshots are flushed (the main thread waits for them to be written) when
+ * the view controller is stopped, before the instance state is saved, and when it is destroyed.</p>
+ * <p>All writers share one background thread, so snapshots are written in order.</p>
+ */
+public class ViewControllerUserDataWriter implements ViewControllerLifecycle.Observer {
+    private static final String TAG = "ViewControllerUserData";
+    private static final long THREAD_KEEP_ALIVE_SECONDS = 30L;
+
+    private static ExecutorService sharedExecutor;
+
+    /**
+     * Writes the snapshot of user data.
+     *
+     * @param <T> Type of the snapshot.
+     */
+    public interface Writer<T> {
+        /**
+         * Called on a background thread to write the snapshot.
+         *
+         * @param key The key of the snapshot.
+         * @param snapshot The snapshot.
+         */
+        @WorkerThread
+        void onWriteUserData(@NonNull String key, @NonNull T snapshot);
+    }
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, PendingWrite<?>> pendingWrites = new LinkedHashMap<>();
+    private boolean isWriting;
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                PendingWrite<?> pendingWrite;
+
+                synchronized (lock) {
+                    Iterator<Map.Entry<String, PendingWrite<?>>> iterator = pendingWrites.entrySet().iterator();
+
+                    if (!iterator.hasNext()) {
+                        isWriting = false;
+                        lock.notifyAll();
+                        return;
+                    }
+
+                    pendingWrite = iterator.next().getValue();
+                    iterator.remove();
+                }
+
+                try {
+                    pendingWrite.write();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to write user data for \"" + pendingWrite.key + "\"", e);
+                }
+            }
+        }
+    };
+
+    /**
+     * User data writer constructor. Mostly you want to use the writer owned by the delegate, but it is possible
+     * to create separate writer for the given lifecycle.
+     *
+     * @param lifecycle The lifecycle, to which the writer is bound.
+     */
+    public ViewControllerUserDataWriter(@NonNull ViewControllerLifecycle lifecycle) {
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Schedule the snapshot to be written. Can be called from any thread.
+     *
+     * @param key The key of the snapshot. Pending snapshot with the same key is replaced.
+     * @param snapshot Immutable snapshot of user data.
+     * @param writer Writer for the snapshot.
+     * @param <T> Type of the snapshot.
+     */
+    public <T> void put(@NonNull String key, @NonNull T snapshot, @NonNull Writer<T> writer) {
+        synchronized (lock) {
+            // Remove first to move the key to the end of the queue.
+            pendingWrites.remove(key);
+            pendingWrites.put(key, new PendingWrite<>(key, snapshot, writer));
+
+            if (!isWriting) {
+                isWriting = true;
+                getSharedExecutor().execute(writeRunnable);
+            }
+        }
+    }
+
+    /**
+     * Wait until all pending snapshots are written.
+     */
+    public void flush() {
+        boolean isInterrupted = false;
+
+        synchronized (lock) {
+            while (isWriting) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        }
+
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span == ViewControllerLifecycle.SPAN_STARTED || span == ViewControllerLifecycle.SPAN_CREATED) {
+            flush();
+        }
+    }
+
+    @NonNull
+    private static synchronized ExecutorService getSharedExecutor() {
+        if (sharedExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1,
+                    1,
+                    THREAD_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(@NonNull Runnable runnable) {
+                            return new Thread(runnable, TAG);
+                        }
+                    });
+
+            executor.allowCoreThreadTimeOut(true);
+            sharedExecutor = executor;
+        }
+
+        return sharedExecutor;
+    }
+
+    private static class PendingWrite<T> {
+        private String key;
+        private T snapshot;
+        private Writer<T> writer;
+
+        PendingWrite(@NonNull String key, @NonNull T snapshot, @NonNull Writer<T> writer) {
+            this.key = key;
+            this.snapshot = snapshot;
+            this.writer = writer;
+        }
+
+        void write() {
+            writer.onWriteUserData(key, snapshot);
+        }
+    }
+}
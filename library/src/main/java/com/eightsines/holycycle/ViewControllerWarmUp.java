@@ -0,0 +1,183 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.StyleRes;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.widget.FrameLayout;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Warms up view controllers, which user will probably open soon. For each of them, the view controller class
+ * is loaded and initialized, and the content layout is inflated once and thrown away. This warms up
+ * class linking, the layout inflater and resource caches, so the first navigation to the screen is faster.
+ * <p>Work is started when the main thread becomes idle, and performed on a background thread.
+ * Usually you want to start the warm up from the {@link android.app.Application#onCreate()} or
+ * from the {@link ViewController#onControllerResume()} of the first screen:</p>
+ * <pre>
+ * new ViewControllerWarmUp(context)
+ *         .setTheme(R.style.AppTheme)
+ *         .add(ProfileActivity.class, R.layout.activity_profile)
+ *         .add("com.example.SettingsFragment", R.layout.fragment_settings)
+ *         .start();
+ * </pre>
+ * <p>Inflated views are never attached to a window, but keep in mind that some custom views may not like
+ * to be created on a background thread. Errors are logged and ignored.</p>
+ */
+public class ViewControllerWarmUp {
+    private static final String TAG = "ViewControllerWarmUp";
+
+    private Context context;
+    private int themeResId;
+    private List<String> classNames = new ArrayList<>();
+    private List<Integer> layoutResIds = new ArrayList<>();
+    private MessageQueue.IdleHandler idleHandler;
+    MessageQueue messageQueue;
+    private volatile boolean isCancelled;
+
+    /**
+     * Warm up constructor.
+     *
+     * @param context Any context, application context will be used.
+     */
+    public ViewControllerWarmUp(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Set the theme, which is used to inflate layouts. Usually this is the theme of the application or activities.
+     * Layouts which refer to theme attributes can't be inflated without it.
+     *
+     * @param themeResId Resource id of the theme.
+     * @return This object for chaining.
+     */
+    @NonNull
+    public ViewControllerWarmUp setTheme(@StyleRes int themeResId) {
+        this.themeResId = themeResId;
+        return this;
+    }
+
+    /**
+     * Add the view controller to warm up.
+     *
+     * @param controllerClass Class of the view controller (Activity or Fragment).
+     * @param layoutResId Content layout id of the view controller, or zero.
+     * @return This object for chaining.
+     */
+    @NonNull
+    public ViewControllerWarmUp add(@NonNull Class<? extends ViewController> controllerClass, @LayoutRes int layoutResId) {
+        return add(controllerClass.getName(), layoutResId);
+    }
+
+    /**
+     * Add the view controller to warm up. Unlike {@link #add(Class controllerClass, int layoutResId)},
+     * this method doesn't require to load the class on the calling thread.
+     *
+     * @param controllerClassName Fully qualified class name of the view controller (Activity or Fragment).
+     * @param layoutResId Content layout id of the view controller, or zero.
+     * @return This object for chaining.
+     */
+    @NonNull
+    public ViewControllerWarmUp add(@NonNull String controllerClassName, @LayoutRes int layoutResId) {
+        classNames.add(controllerClassName);
+        layoutResIds.add(layoutResId);
+        return this;
+    }
+
+    /**
+     * Start the warm up, when the main thread becomes idle. Must be called from the main thread.
+     */
+    @MainThread
+    public void start() {
+        if (idleHandler != null) {
+            throw new IllegalStateException("start() was already called.");
+        }
+
+        final List<String> currentClassNames = new ArrayList<>(classNames);
+        final List<Integer> currentLayoutResIds = new ArrayList<>(layoutResIds);
+
+        idleHandler = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!isCancelled) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+                            // Some views create handlers in constructors, give them a looper.
+                            Looper.prepare();
+
+                            for (int i = 0, size = currentClassNames.size(); i < size && !isCancelled; i++) {
+                                warmUp(currentClassNames.get(i), currentLayoutResIds.get(i));
+                            }
+                        }
+                    }, TAG);
+
+                    thread.start();
+                }
+
+                return false;
+            }
+        };
+
+        if (messageQueue == null) {
+            messageQueue = Looper.myQueue();
+        }
+
+        messageQueue.addIdleHandler(idleHandler);
+    }
+
+    /**
+     * Cancel the warm up. The view controller, which is being warmed up at the moment, will be finished.
+     * Must be called from the main thread.
+     */
+    @SuppressWarnings("unused")
+    @MainThread
+    public void cancel() {
+        isCancelled = true;
+
+        if (idleHandler != null) {
+            messageQueue.removeIdleHandler(idleHandler);
+        }
+    }
+
+    void warmUp(@NonNull String className, int layoutResId) {
+        try {
+            Class.forName(className, true, context.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            onWarmUpError("Failed to load " + className, e);
+        }
+
+        if (layoutResId == 0) {
+            return;
+        }
+
+        try {
+            Context themedContext = (themeResId == 0 ? context : new ContextThemeWrapper(context, themeResId));
+
+            // Without the theme the shared inflater of the context is returned, so it is always cloned
+            // to keep it untouched by the background thread.
+            LayoutInflater inflater = ((LayoutInflater)themedContext.getSystemService(Context.LAYOUT_INFLATER_SERVICE))
+                    .cloneInContext(themedContext);
+
+            ViewControllerLayoutInflaterFactory.wrap(inflater)
+                    .inflate(layoutResId, new FrameLayout(themedContext), false);
+        } catch (RuntimeException | LinkageError e) {
+            // LinkageError - eg. NoClassDefFoundError for a custom view, which is missing on this API level.
+            onWarmUpError("Failed to inflate layout for " + className, e);
+        }
+    }
+
+    void onWarmUpError(@NonNull String message, @NonNull Throwable error) {
+        Log.w(TAG, message, error);
+    }
+}
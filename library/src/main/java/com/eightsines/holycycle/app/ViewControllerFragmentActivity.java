@@ -1,5 +1,6 @@
 package com.eightsines.holycycle.app;
 
+import android.content.res.Configuration;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -7,6 +8,18 @@ import android.support.v4.app.FragmentActivity;
 import android.view.View;
 import com.eightsines.holycycle.ViewController;
 import com.eightsines.holycycle.ViewControllerActivityDelegate;
+import com.eightsines.holycycle.ViewControllerChildren;
+import com.eightsines.holycycle.ViewControllerExecutor;
+import com.eightsines.holycycle.ViewControllerHandoff;
+import com.eightsines.holycycle.ViewControllerIdleQueue;
+import com.eightsines.holycycle.ViewControllerLifecycle;
+import com.eightsines.holycycle.ViewControllerResourceRegistry;
+import com.eightsines.holycycle.ViewControllerRetainedStore;
+import com.eightsines.holycycle.ViewControllerSavedState;
+import com.eightsines.holycycle.ViewControllerStartupTasks;
+import com.eightsines.holycycle.ViewControllerStateStore;
+import com.eightsines.holycycle.ViewControllerUpdateQueue;
+import com.eightsines.holycycle.ViewControllerUserDataWriter;
 
 /**
  * This class should be used instead of {@link FragmentActivity}.
@@ -19,7 +32,7 @@ public abstract class ViewControllerFragmentActivity extends FragmentActivity im
         super.onCreate(savedInstanceState);
 
         controllerDelegate = new ViewControllerActivityDelegate(this, this);
-        controllerDelegate.onCreate(savedInstanceState);
+        controllerDelegate.onCreate(savedInstanceState, getLastCustomNonConfigurationInstance());
     }
 
     @Override
@@ -64,6 +77,17 @@ public abstract class ViewControllerFragmentActivity extends FragmentActivity im
         controllerDelegate.onSaveInstanceState(outState);
     }
 
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return controllerDelegate.onRetainNonConfigurationInstance();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        controllerDelegate.onConfigurationChanged(newConfig);
+    }
+
     @Override
     public void onWindowFocusChanged(boolean hasFocus) {
         super.onWindowFocusChanged(hasFocus);
@@ -130,4 +154,151 @@ public abstract class ViewControllerFragmentActivity extends FragmentActivity im
     public View getView() {
         return controllerDelegate.getView();
     }
+
+    /**
+     * Returns the lifecycle of this view controller.
+     *
+     * @return The lifecycle.
+     */
+    @NonNull
+    public ViewControllerLifecycle getControllerLifecycle() {
+        return controllerDelegate.getLifecycle();
+    }
+
+    /**
+     * Returns the executor for background work, bound to the lifecycle of this view controller.
+     *
+     * @return The executor.
+     */
+    @NonNull
+    public ViewControllerExecutor getControllerExecutor() {
+        return controllerDelegate.getExecutor();
+    }
+
+    /**
+     * Returns the queue of tasks, which are executed when the main thread is idle.
+     *
+     * @return The idle queue.
+     */
+    @NonNull
+    public ViewControllerIdleQueue getControllerIdleQueue() {
+        return controllerDelegate.getIdleQueue();
+    }
+
+    /**
+     * Returns the write-behind helper for persisting user data.
+     *
+     * @return The user data writer.
+     */
+    @NonNull
+    public ViewControllerUserDataWriter getControllerUserDataWriter() {
+        return controllerDelegate.getUserDataWriter();
+    }
+
+    /**
+     * Set the debounce window for focus changes, so short focus loss (eg. because of permission prompt)
+     * doesn't cause {@link #onControllerBlur()} and {@link #onControllerFocus()} calls.
+     * Call it from {@link #onControllerCreate(Bundle)} or later.
+     *
+     * @param delayMillis Debounce window in milliseconds, or {@code 0} to disable debounce.
+     */
+    public void setControllerFocusDebounceDelay(long delayMillis) {
+        controllerDelegate.setFocusDebounceDelay(delayMillis);
+    }
+
+    /**
+     * Returns initialization tasks of this view controller. Tasks should be added
+     * in {@link #onControllerCreate(Bundle)}.
+     *
+     * @return The startup tasks.
+     */
+    @NonNull
+    public ViewControllerStartupTasks getControllerStartupTasks() {
+        return controllerDelegate.getStartupTasks();
+    }
+
+    /**
+     * Returns the queue of UI updates, which are coalesced and applied at most once per frame
+     * while this view controller is started.
+     *
+     * @return The update queue.
+     */
+    @NonNull
+    public ViewControllerUpdateQueue getControllerUpdateQueue() {
+        return controllerDelegate.getUpdateQueue();
+    }
+
+    /**
+     * Invalidate the state snapshot (see {@link com.eightsines.holycycle.ViewControllerStateSnapshot}),
+     * if the instance state was changed after {@link #onControllerPause()}.
+     */
+    public void invalidateControllerStateSnapshot() {
+        controllerDelegate.invalidateStateSnapshot();
+    }
+
+    /**
+     * Returns the registry of resources (listeners, receivers, observers), which are registered only while
+     * this view controller is inside of the given lifecycle span.
+     *
+     * @return The resource registry.
+     */
+    @NonNull
+    public ViewControllerResourceRegistry getControllerResourceRegistry() {
+        return controllerDelegate.getResourceRegistry();
+    }
+
+    /**
+     * Returns the store for large instance state, which keeps values in memory (and on disk)
+     * instead of the {@link Bundle}.
+     *
+     * @return The state store.
+     */
+    @NonNull
+    public ViewControllerStateStore getControllerStateStore() {
+        return controllerDelegate.getStateStore();
+    }
+
+    /**
+     * Returns the typed container for the instance state, which marshals only modified properties.
+     * Properties should be declared in {@link #onControllerCreate(Bundle)}.
+     *
+     * @return The saved state.
+     */
+    @NonNull
+    public ViewControllerSavedState getControllerSavedState() {
+        return controllerDelegate.getSavedState();
+    }
+
+    /**
+     * Returns objects passed to this view controller using {@link ViewControllerHandoff}.
+     * Available since {@link #onControllerCreate(Bundle)}.
+     *
+     * @return The handoff.
+     */
+    @NonNull
+    public ViewControllerHandoff getControllerHandoff() {
+        return controllerDelegate.getHandoff();
+    }
+
+    /**
+     * Returns the process-level store for derived data, which survives configuration changes and is cleared
+     * when this view controller is destroyed for good.
+     *
+     * @return The retained store.
+     */
+    @NonNull
+    public ViewControllerRetainedStore getControllerRetainedStore() {
+        return controllerDelegate.getRetainedStore();
+    }
+
+    /**
+     * Returns the container of lightweight child view controllers, which are bound to sub-views
+     * of the content view and follow the lifecycle of this view controller.
+     *
+     * @return The children.
+     */
+    @NonNull
+    public ViewControllerChildren getControllerChildren() {
+        return controllerDelegate.getChildren();
+    }
 }
@@ -0,0 +1,287 @@
+package com.eightsines.holycycle.reactive;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import com.eightsines.holycycle.ViewControllerLifecycle;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Reactive Streams subscriber, bound to the view controller lifecycle. Items are requested from the upstream
+ * only while the view controller is inside of the active span ({@link ViewControllerLifecycle#SPAN_STARTED}
+ * by default), so the upstream is paused right before {@link com.eightsines.holycycle.ViewController#onControllerStop()}
+ * and resumed on {@link com.eightsines.holycycle.ViewController#onControllerStart()}.
+ * <p>Items are requested one by one and delivered on the main thread. An item which arrives while
+ * the subscriber is paused is either kept and delivered when the active span is entered again
+ * ({@link #PAUSE_POLICY_KEEP_LATEST}), or dropped ({@link #PAUSE_POLICY_DROP_ALL}). Completion and error
+ * are also delivered only inside of the active span. The subscription is cancelled when the view controller
+ * is destroyed.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * flowable.subscribe(new ViewControllerStreamSubscriber<>(getControllerLifecycle(), receiver));
+ * }</pre>
+ * <p>This class requires {@code org.reactivestreams:reactive-streams} (or a library which depends on it,
+ * like RxJava 2 or Reactor) in the application dependencies.</p>
+ *
+ * @param <T> Type of items.
+ */
+public class ViewControllerStreamSubscriber<T> implements Subscriber<T>, ViewControllerLifecycle.Observer {
+    public static final int PAUSE_POLICY_KEEP_LATEST = 0;
+    public static final int PAUSE_POLICY_DROP_ALL = 1;
+
+    /**
+     * Receives stream signals on the main thread.
+     *
+     * @param <T> Type of items.
+     */
+    public interface Receiver<T> {
+        /**
+         * Called when the next item is received.
+         *
+         * @param item The item.
+         */
+        @MainThread
+        void onStreamItem(@NonNull T item);
+
+        /**
+         * Called when the stream is terminated with an error.
+         *
+         * @param error The error.
+         */
+        @MainThread
+        void onStreamError(@NonNull Throwable error);
+
+        /**
+         * Called when the stream is successfully completed.
+         */
+        @MainThread
+        void onStreamComplete();
+    }
+
+    private ViewControllerLifecycle lifecycle;
+    private int activeSpan;
+    private int pausePolicy;
+    private Receiver<T> receiver;
+    private Handler mainHandler;
+    private AtomicBoolean isSubscribed = new AtomicBoolean();
+
+    // Fields below are accessed only from the main thread.
+    private Subscription subscription;
+    private T pendingItem;
+    private Throwable pendingError;
+    private boolean isTerminalPending;
+    private boolean isRequested;
+    private boolean isActive;
+    private boolean isDone;
+
+    /**
+     * Subscriber constructor, which requests items while the view controller is started,
+     * and keeps the latest item while it is stopped.
+     *
+     * @param lifecycle The lifecycle of the view controller.
+     * @param receiver Receives stream signals.
+     */
+    public ViewControllerStreamSubscriber(@NonNull ViewControllerLifecycle lifecycle, @NonNull Receiver<T> receiver) {
+        this(lifecycle, ViewControllerLifecycle.SPAN_STARTED, PAUSE_POLICY_KEEP_LATEST, receiver);
+    }
+
+    /**
+     * Subscriber constructor.
+     *
+     * @param lifecycle The lifecycle of the view controller.
+     * @param activeSpan The span, inside of which items are requested. One of {@link ViewControllerLifecycle#SPAN_CREATED},
+     * {@link ViewControllerLifecycle#SPAN_STARTED}, {@link ViewControllerLifecycle#SPAN_RESUMED}
+     * or {@link ViewControllerLifecycle#SPAN_FOCUSED}.
+     * @param pausePolicy What to do with items which arrive outside of the active span.
+     * Either {@link #PAUSE_POLICY_KEEP_LATEST} or {@link #PAUSE_POLICY_DROP_ALL}.
+     * @param receiver Receives stream signals.
+     */
+    @MainThread
+    public ViewControllerStreamSubscriber(@NonNull ViewControllerLifecycle lifecycle,
+            int activeSpan,
+            int pausePolicy,
+            @NonNull Receiver<T> receiver) {
+
+        this(lifecycle, activeSpan, pausePolicy, receiver, new Handler(Looper.getMainLooper()));
+    }
+
+    ViewControllerStreamSubscriber(@NonNull ViewControllerLifecycle lifecycle,
+            int activeSpan,
+            int pausePolicy,
+            @NonNull Receiver<T> receiver,
+            @NonNull Handler mainHandler) {
+
+        if (activeSpan < ViewControllerLifecycle.SPAN_CREATED || activeSpan > ViewControllerLifecycle.SPAN_FOCUSED) {
+            throw new IllegalArgumentException("Invalid active span (" + activeSpan + ").");
+        }
+
+        if (pausePolicy != PAUSE_POLICY_KEEP_LATEST && pausePolicy != PAUSE_POLICY_DROP_ALL) {
+            throw new IllegalArgumentException("Invalid pause policy (" + pausePolicy + ").");
+        }
+
+        if (lifecycle.getSpan() == ViewControllerLifecycle.SPAN_NONE) {
+            throw new IllegalStateException("ViewControllerStreamSubscriber was created outside of the view controller lifecycle.");
+        }
+
+        this.lifecycle = lifecycle;
+        this.activeSpan = activeSpan;
+        this.pausePolicy = pausePolicy;
+        this.receiver = receiver;
+        this.mainHandler = mainHandler;
+
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Cancel the subscription. No more signals will be delivered to the receiver.
+     */
+    @MainThread
+    public void cancel() {
+        if (isDone) {
+            return;
+        }
+
+        isDone = true;
+        pendingItem = null;
+        pendingError = null;
+        lifecycle.removeObserver(this);
+
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(@NonNull final Subscription subscription) {
+        if (!isSubscribed.compareAndSet(false, true)) {
+            // Reactive Streams rule 2.5: the subscriber must cancel the second subscription.
+            subscription.cancel();
+            return;
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isDone) {
+                    subscription.cancel();
+                    return;
+                }
+
+                ViewControllerStreamSubscriber.this.subscription = subscription;
+                drain();
+            }
+        });
+    }
+
+    @Override
+    public void onNext(final T item) {
+        if (item == null) {
+            throw new NullPointerException("onNext() was called with null item.");
+        }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                isRequested = false;
+
+                if (isDone) {
+                    return;
+                }
+
+                if (isActive || pausePolicy == PAUSE_POLICY_KEEP_LATEST) {
+                    pendingItem = item;
+                }
+
+                drain();
+            }
+        });
+    }
+
+    @Override
+    public void onError(@NonNull final Throwable error) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDone) {
+                    pendingError = error;
+                    isTerminalPending = true;
+                    drain();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onComplete() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isDone) {
+                    isTerminalPending = true;
+                    drain();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+        if (span == activeSpan) {
+            isActive = true;
+            drain();
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span == activeSpan) {
+            // Item which is already requested is kept or dropped in onNext() according to the pause policy.
+            isActive = false;
+        }
+
+        if (span == ViewControllerLifecycle.SPAN_CREATED) {
+            cancel();
+        }
+    }
+
+    private void drain() {
+        if (!isActive || isDone) {
+            return;
+        }
+
+        if (pendingItem != null) {
+            T item = pendingItem;
+            pendingItem = null;
+            receiver.onStreamItem(item);
+
+            // Receiver may cancel the subscription, or the view controller may leave the active span.
+            if (!isActive || isDone) {
+                return;
+            }
+        }
+
+        if (isTerminalPending) {
+            Throwable error = pendingError;
+
+            isDone = true;
+            pendingError = null;
+            lifecycle.removeObserver(this);
+
+            if (error == null) {
+                receiver.onStreamComplete();
+            } else {
+                receiver.onStreamError(error);
+            }
+
+            return;
+        }
+
+        if (subscription != null && !isRequested) {
+            isRequested = true;
+            subscription.request(1L);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.eightsines.holycycle.recycler;
+
+import android.support.annotation.LayoutRes;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Item controller, which manages a single {@code RecyclerView} item view (see {@link ViewControllerItemAdapter}).
+ * Item controllers are created once per view holder and reused together with it, so every controller
+ * is attached only once, but can be bound to many items during its life.
+ * <p>Lifecycle:</p>
+ * <ol>
+ * <li>{@link #onItemAttach()} - the content view is created, find views and set listeners here;</li>
+ * <li>{@link #onItemBind(Object item)} - the controller is bound to the item, update views here.
+ * Always called while the controller is invisible;</li>
+ * <li>{@link #onItemVisible()} - the item view is on the screen and the host view controller is inside
+ * of the active span, start animations, timers, video playback and so on here;</li>
+ * <li>{@link #onItemInvisible()} - the item view is scrolled off the screen, or the host view controller
+ * exits the active span, stop everything which was started in {@link #onItemVisible()} here;</li>
+ * <li>{@link #onItemRecycle()} - the item is going to be reused for another item, release resources
+ * which are bound to the current item here.</li>
+ * </ol>
+ * <p>Methods of this class are called only from the main thread.</p>
+ *
+ * @param <T> Type of items.
+ */
+public abstract class ViewControllerItem<T> {
+    View view;
+    T item;
+    boolean isVisible;
+
+    /**
+     * Returns the content layout id of the item view.
+     *
+     * @return The content layout id.
+     */
+    @LayoutRes
+    public abstract int onItemGetContentLayoutId();
+
+    /**
+     * Called once, when the content view of the item is created.
+     */
+    @MainThread
+    public void onItemAttach() {
+    }
+
+    /**
+     * Called when the controller is bound to the item. Can be called again without {@link #onItemRecycle()},
+     * when the item is changed in place.
+     *
+     * @param item The item.
+     */
+    @MainThread
+    public void onItemBind(@NonNull T item) {
+    }
+
+    /**
+     * Called when the item view becomes visible and the host view controller is inside of the active span.
+     */
+    @MainThread
+    public void onItemVisible() {
+    }
+
+    /**
+     * Called when the item view is no longer visible, or the host view controller exits the active span.
+     */
+    @MainThread
+    public void onItemInvisible() {
+    }
+
+    /**
+     * Called when the controller is unbound from the item, before it is returned to the recycling pool.
+     */
+    @MainThread
+    public void onItemRecycle() {
+    }
+
+    /**
+     * Returns the content view of the item.
+     *
+     * @return The content view.
+     */
+    @NonNull
+    public View getView() {
+        return view;
+    }
+
+    /**
+     * Finds a view that was identified by the id attribute in the content view of the item.
+     *
+     * @param id The id to search for.
+     * @param <V> Type of the view.
+     * @return The view if found or {@code null} otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <V extends View> V findViewById(int id) {
+        return (V)view.findViewById(id);
+    }
+
+    /**
+     * Returns the currently bound item.
+     *
+     * @return The item, or {@code null} if the controller is not bound.
+     */
+    @Nullable
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * Check whether the controller is visible, ie. it is between {@link #onItemVisible()}
+     * and {@link #onItemInvisible()}.
+     *
+     * @return {@code true} if the controller is visible.
+     */
+    public boolean isVisible() {
+        return isVisible;
+    }
+}
@@ -0,0 +1,285 @@
+package com.eightsines.holycycle.recycler;
+
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import com.eightsines.holycycle.ViewControllerLayoutInflaterFactory;
+import com.eightsines.holycycle.ViewControllerLifecycle;
+import java.util.ArrayList;
+
+/**
+ * {@code RecyclerView} adapter, where every item view is managed by the item controller (see {@link ViewControllerItem}).
+ * Item controller is visible only while its view is attached to the {@code RecyclerView} and the host view controller
+ * is inside of the active span ({@link ViewControllerLifecycle#SPAN_STARTED} by default), so interactive widgets
+ * (video, timers, live counters) are stopped when they are scrolled off the screen
+ * and right before {@link com.eightsines.holycycle.ViewController#onControllerStop()} of the host.
+ * <p>Item controllers are created once per view holder, so they are pooled and reused together with view holders
+ * by the {@code RecycledViewPool} of the {@code RecyclerView}. Use {@code RecycledViewPool.setMaxRecycledViews()}
+ * to change the size of the pool for the particular view type.</p>
+ * <p>Adapter observes the host lifecycle only while it is attached to the {@code RecyclerView}, so adapters
+ * of destroyed content views don't pile up in the host lifecycle. When the adapter is detached
+ * (eg. by {@code setAdapter(null)}), or the host view controller is destroyed, all bound item controllers
+ * are recycled.</p>
+ * <p>Example:</p>
+ * <pre>{@code
+ * recyclerView.setAdapter(new ViewControllerItemAdapter<FeedItem>(getControllerLifecycle()) {
+ *     protected ViewControllerItem<FeedItem> onCreateItemController(int viewType) {
+ *         return (viewType == TYPE_VIDEO ? new VideoItemController() : new TextItemController());
+ *     }
+ *
+ *     public FeedItem getItem(int position) {
+ *         return items.get(position);
+ *     }
+ *
+ *     public int getItemViewType(int position) {
+ *         return (items.get(position).hasVideo() ? TYPE_VIDEO : TYPE_TEXT);
+ *     }
+ *
+ *     public int getItemCount() {
+ *         return items.size();
+ *     }
+ * });
+ * }</pre>
+ * <p>This class requires {@code com.android.support:recyclerview-v7} in the application dependencies.</p>
+ * <p>Methods of this class should be called only from the main thread.</p>
+ *
+ * @param <T> Type of items.
+ */
+public abstract class ViewControllerItemAdapter<T> extends RecyclerView.Adapter<ViewControllerItemAdapter.ItemHolder<T>>
+        implements ViewControllerLifecycle.Observer {
+
+    /**
+     * View holder, which owns the item controller.
+     *
+     * @param <T> Type of items.
+     */
+    public static class ItemHolder<T> extends RecyclerView.ViewHolder {
+        private final ViewControllerItem<T> controller;
+        private boolean isAttached;
+        private boolean isBound;
+
+        ItemHolder(@NonNull ViewControllerItem<T> controller) {
+            super(controller.view);
+            this.controller = controller;
+        }
+
+        /**
+         * Returns the item controller.
+         *
+         * @return The item controller.
+         */
+        @NonNull
+        public ViewControllerItem<T> getController() {
+            return controller;
+        }
+    }
+
+    private ViewControllerLifecycle lifecycle;
+    private int activeSpan;
+    private boolean isActive;
+    private int attachedRecyclerViewsCount;
+    private ArrayList<ItemHolder<T>> attachedHolders = new ArrayList<>();
+    private ArrayList<ItemHolder<T>> boundHolders = new ArrayList<>();
+
+    /**
+     * Adapter constructor, where item controllers are visible while the host view controller is started.
+     *
+     * @param lifecycle The lifecycle of the host view controller.
+     */
+    public ViewControllerItemAdapter(@NonNull ViewControllerLifecycle lifecycle) {
+        this(lifecycle, ViewControllerLifecycle.SPAN_STARTED);
+    }
+
+    /**
+     * Adapter constructor.
+     *
+     * @param lifecycle The lifecycle of the host view controller.
+     * @param activeSpan The span of the host view controller, inside of which item controllers can be visible.
+     * One of {@link ViewControllerLifecycle#SPAN_CREATED}, {@link ViewControllerLifecycle#SPAN_STARTED},
+     * {@link ViewControllerLifecycle#SPAN_RESUMED} or {@link ViewControllerLifecycle#SPAN_FOCUSED}.
+     */
+    @MainThread
+    public ViewControllerItemAdapter(@NonNull ViewControllerLifecycle lifecycle, int activeSpan) {
+        if (activeSpan < ViewControllerLifecycle.SPAN_CREATED || activeSpan > ViewControllerLifecycle.SPAN_FOCUSED) {
+            throw new IllegalArgumentException("Invalid active span (" + activeSpan + ").");
+        }
+
+        if (lifecycle.getSpan() == ViewControllerLifecycle.SPAN_NONE) {
+            throw new IllegalStateException("ViewControllerItemAdapter was created outside of the view controller lifecycle.");
+        }
+
+        this.lifecycle = lifecycle;
+        this.activeSpan = activeSpan;
+    }
+
+    /**
+     * Create the item controller for the given view type. Called only when the {@code RecycledViewPool}
+     * has no free view holder for this view type.
+     *
+     * @param viewType The view type, as returned from {@link #getItemViewType(int position)}.
+     * @return New item controller.
+     */
+    @NonNull
+    protected abstract ViewControllerItem<T> onCreateItemController(int viewType);
+
+    /**
+     * Returns the item at the given position.
+     *
+     * @param position The position.
+     * @return The item.
+     */
+    @NonNull
+    public abstract T getItem(int position);
+
+    @NonNull
+    @Override
+    public ItemHolder<T> onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ViewControllerItem<T> controller = onCreateItemController(viewType);
+
+        controller.view = ViewControllerLayoutInflaterFactory.wrap(LayoutInflater.from(parent.getContext()))
+                .inflate(controller.onItemGetContentLayoutId(), parent, false);
+
+        controller.onItemAttach();
+        return new ItemHolder<>(controller);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ItemHolder<T> holder, int position) {
+        ViewControllerItem<T> controller = holder.controller;
+
+        // Item is re-bound in place (eg. after notifyItemChanged()), so it is bound while invisible.
+        setVisible(controller, false);
+
+        controller.item = getItem(position);
+
+        if (!holder.isBound) {
+            holder.isBound = true;
+            boundHolders.add(holder);
+        }
+
+        controller.onItemBind(controller.item);
+        updateVisibility(holder);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ItemHolder<T> holder) {
+        unbind(holder);
+    }
+
+    @Override
+    public boolean onFailedToRecycleView(@NonNull ItemHolder<T> holder) {
+        // View holder is not returned to the pool, so release it for good.
+        unbind(holder);
+        return super.onFailedToRecycleView(holder);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        attachedRecyclerViewsCount++;
+
+        if (attachedRecyclerViewsCount == 1) {
+            // Entered spans are replayed to the new observer, so this also updates isActive.
+            lifecycle.addObserver(this);
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        attachedRecyclerViewsCount--;
+
+        if (attachedRecyclerViewsCount == 0) {
+            lifecycle.removeObserver(this);
+            isActive = false;
+            unbindAll();
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull ItemHolder<T> holder) {
+        if (!holder.isAttached) {
+            holder.isAttached = true;
+            attachedHolders.add(holder);
+        }
+
+        updateVisibility(holder);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull ItemHolder<T> holder) {
+        if (holder.isAttached) {
+            holder.isAttached = false;
+            attachedHolders.remove(holder);
+        }
+
+        updateVisibility(holder);
+    }
+
+    @Override
+    public void onLifecycleSpanEnter(int span) {
+        if (span == activeSpan) {
+            isActive = true;
+
+            for (ItemHolder<T> holder : new ArrayList<>(attachedHolders)) {
+                updateVisibility(holder);
+            }
+        }
+    }
+
+    @Override
+    public void onLifecycleSpanExit(int span) {
+        if (span == activeSpan) {
+            isActive = false;
+
+            for (int i = attachedHolders.size() - 1; i >= 0; i--) {
+                updateVisibility(attachedHolders.get(i));
+            }
+        }
+
+        if (span == ViewControllerLifecycle.SPAN_CREATED) {
+            // The host is destroyed, so item controllers will never be recycled by the RecyclerView.
+            lifecycle.removeObserver(this);
+            unbindAll();
+        }
+    }
+
+    private void unbindAll() {
+        for (int i = boundHolders.size() - 1; i >= 0; i--) {
+            unbind(boundHolders.get(i));
+        }
+    }
+
+    private void unbind(@NonNull ItemHolder<T> holder) {
+        ViewControllerItem<T> controller = holder.controller;
+        setVisible(controller, false);
+
+        if (holder.isBound) {
+            holder.isBound = false;
+            boundHolders.remove(holder);
+        }
+
+        if (controller.item != null) {
+            controller.onItemRecycle();
+            controller.item = null;
+        }
+    }
+
+    private void updateVisibility(@NonNull ItemHolder<T> holder) {
+        setVisible(holder.controller, isActive && holder.isAttached && holder.controller.item != null);
+    }
+
+    private static <T> void setVisible(@NonNull ViewControllerItem<T> controller, boolean isVisible) {
+        if (controller.isVisible == isVisible) {
+            return;
+        }
+
+        controller.isVisible = isVisible;
+
+        if (isVisible) {
+            controller.onItemVisible();
+        } else {
+            controller.onItemInvisible();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.eightsines.holycycle;
+
+import android.view.View;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class DeferredContentInflaterTest {
+    private static final int VIEW_STUB_ID = 1;
+    private static final int MISSING_VIEW_STUB_ID = 2;
+
+    private ViewControllerDeferredContent controller;
+    private View contentView;
+    private ViewTreeObserver viewTreeObserver;
+    private ViewStub viewStub;
+    private View inflatedView;
+    private DeferredContentInflater inflater;
+
+    @Before
+    public void setUp() {
+        controller = Mockito.mock(ViewControllerDeferredContent.class);
+        contentView = Mockito.mock(View.class);
+        viewTreeObserver = Mockito.mock(ViewTreeObserver.class);
+        viewStub = Mockito.mock(ViewStub.class);
+        inflatedView = Mockito.mock(View.class);
+
+        Mockito.when(controller.onControllerGetDeferredViewStubIds())
+                .thenReturn(new int[] { VIEW_STUB_ID, MISSING_VIEW_STUB_ID });
+
+        Mockito.when(contentView.getViewTreeObserver()).thenReturn(viewTreeObserver);
+        Mockito.when(contentView.findViewById(VIEW_STUB_ID)).thenReturn(viewStub);
+        Mockito.when(viewTreeObserver.isAlive()).thenReturn(true);
+        Mockito.when(viewStub.inflate()).thenReturn(inflatedView);
+
+        inflater = new DeferredContentInflater(controller);
+    }
+
+    @Test
+    public void testInflateAfterFirstFrame() {
+        inflater.attach(contentView);
+        Mockito.verify(viewTreeObserver).addOnPreDrawListener(inflater);
+
+        inflater.onPreDraw();
+        Mockito.verify(viewTreeObserver).removeOnPreDrawListener(inflater);
+        Mockito.verify(contentView).post(inflater);
+        Mockito.verify(controller, Mockito.never()).onControllerDeferredContentInflated(
+                Mockito.anyInt(),
+                Mockito.any(View.class));
+
+        inflater.run();
+        Mockito.verify(controller).onControllerDeferredContentInflated(VIEW_STUB_ID, inflatedView);
+        Mockito.verify(controller, Mockito.never()).onControllerDeferredContentInflated(
+                Mockito.eq(MISSING_VIEW_STUB_ID),
+                Mockito.any(View.class));
+
+        // Stubs are inflated only once.
+        inflater.run();
+        inflater.inflateNow();
+        Mockito.verify(viewStub, Mockito.times(1)).inflate();
+    }
+
+    @Test
+    public void testInflateNow() {
+        inflater.attach(contentView);
+        inflater.inflateNow();
+
+        Mockito.verify(controller).onControllerDeferredContentInflated(VIEW_STUB_ID, inflatedView);
+        Mockito.verify(viewTreeObserver).removeOnPreDrawListener(inflater);
+        Mockito.verify(contentView).removeCallbacks(inflater);
+    }
+
+    @Test
+    public void testDetachBeforeInflate() {
+        inflater.attach(contentView);
+        inflater.onPreDraw();
+        inflater.detach();
+
+        Mockito.verify(contentView).removeCallbacks(inflater);
+
+        // Already posted runnable does nothing.
+        inflater.run();
+        Mockito.verify(viewStub, Mockito.never()).inflate();
+    }
+
+    @Test
+    public void testNoViewStubs() {
+        Mockito.when(controller.onControllerGetDeferredViewStubIds()).thenReturn(new int[0]);
+
+        inflater.attach(contentView);
+        inflater.inflateNow();
+
+        Mockito.verifyZeroInteractions(contentView);
+        Mockito.verify(viewStub, Mockito.never()).inflate();
+    }
+}
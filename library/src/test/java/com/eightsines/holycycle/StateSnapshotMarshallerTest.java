@@ -0,0 +1,55 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import com.eightsines.holycycle.util.TestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class StateSnapshotMarshallerTest {
+    private static final String KEY_SNAPSHOT = "com.eightsines.holycycle.StateSnapshotMarshaller.SNAPSHOT";
+
+    private Bundle snapshot;
+    private Bundle outState;
+    private StateSnapshotMarshaller marshaller;
+
+    @Before
+    public void setUp() {
+        snapshot = TestUtils.createMockBundle("snapshot");
+        outState = TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE);
+        marshaller = new StateSnapshotMarshaller(snapshot);
+    }
+
+    @Test
+    public void testWriteBeforeMarshalling() {
+        marshaller.writeTo(outState);
+        Mockito.verify(outState).putAll(snapshot);
+
+        // Snapshot is already written synchronously, so it must not be marshalled anymore.
+        marshaller.run();
+        Mockito.verifyZeroInteractions(snapshot);
+        Mockito.verifyNoMoreInteractions(outState);
+    }
+
+    @Test
+    public void testWriteAfterCancel() {
+        marshaller.cancel();
+        marshaller.run();
+        Mockito.verifyZeroInteractions(snapshot);
+
+        marshaller.writeTo(outState);
+        Mockito.verify(outState).putAll(snapshot);
+        Mockito.verify(outState, Mockito.never()).putByteArray(Mockito.anyString(), Mockito.any(byte[].class));
+    }
+
+    @Test
+    public void testRestoreWithoutSnapshot() {
+        Bundle savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+
+        StateSnapshotMarshaller.restore(null, null);
+        StateSnapshotMarshaller.restore(savedInstanceState, null);
+
+        Mockito.verify(savedInstanceState).getByteArray(KEY_SNAPSHOT);
+        Mockito.verifyNoMoreInteractions(savedInstanceState);
+    }
+}
@@ -2,12 +2,22 @@ package com.eightsines.holycycle;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Parcelable;
+import android.support.v4.app.FragmentActivity;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import com.eightsines.holycycle.util.TestUtils;
 import junit.framework.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -203,6 +213,64 @@ public class ViewControllerActivityDelegateTest {
         controllerDelegate.onPause();
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetFocusDebounceDelayNegative() {
+        controllerDelegate.setFocusDebounceDelay(-1L);
+    }
+
+    @Test
+    public void testFocusDebounceSuppressesShortBlur() {
+        Handler focusDebounceHandler = setUpFocusDebounce();
+        performResume(true);
+
+        // Focus is back within the debounce window (eg. a permission prompt was shown and dismissed).
+        controllerDelegate.onWindowFocusChanged(false);
+        Runnable pendingBlurRunnable = capturePendingBlur(focusDebounceHandler);
+        controllerDelegate.onWindowFocusChanged(true);
+
+        Mockito.verify(focusDebounceHandler).removeCallbacks(pendingBlurRunnable);
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_FOCUSED, controllerDelegate.getLifecycle().getSpan());
+        ensureNoMoreInteractions();
+    }
+
+    @Test
+    public void testFocusDebounceBlurAfterDelay() {
+        Handler focusDebounceHandler = setUpFocusDebounce();
+        performResume(true);
+
+        controllerDelegate.onWindowFocusChanged(false);
+        ensureNoMoreInteractions();
+
+        capturePendingBlur(focusDebounceHandler).run();
+
+        Mockito.verify(controller).onControllerBlur();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_RESUMED, controllerDelegate.getLifecycle().getSpan());
+        ensureNoMoreInteractions();
+    }
+
+    @Test
+    public void testFocusDebouncePendingBlurBeforePause() {
+        Handler focusDebounceHandler = setUpFocusDebounce();
+        performResume(true);
+
+        controllerDelegate.onWindowFocusChanged(false);
+        Runnable pendingBlurRunnable = capturePendingBlur(focusDebounceHandler);
+        ensureNoMoreInteractions();
+
+        controllerDelegate.onPause();
+
+        InOrder inOrder = Mockito.inOrder(controller);
+        inOrder.verify(controller).onControllerBlur();
+        inOrder.verify(controller).onControllerPause();
+        inOrder.verify(controller).onControllerPersistUserData();
+        Mockito.verify(focusDebounceHandler).removeCallbacks(pendingBlurRunnable);
+        ensureNoMoreInteractions();
+
+        // Focus is back after the pause, so the view controller is focused again only after the resume.
+        controllerDelegate.onWindowFocusChanged(true);
+        ensureNoMoreInteractions();
+    }
+
     @Test
     public void testOnResumeFinishInResume() {
         performStart();
@@ -624,6 +692,208 @@ public class ViewControllerActivityDelegateTest {
         ensureNoMoreInteractions();
     }
 
+    @Test
+    public void testOnCreateContentViewProvider() {
+        ViewControllerContentViewProvider providerController = Mockito.mock(ViewControllerContentViewProvider.class);
+        ViewControllerActivityDelegate providerDelegate = new ViewControllerActivityDelegate(activity, providerController);
+        ViewGroup parent = Mockito.mock(ViewGroup.class);
+        View view = Mockito.mock(View.class);
+
+        Mockito.when(activity.findViewById(android.R.id.content)).thenReturn(parent);
+        Mockito.when(providerController.onControllerCreateContentView(activity, parent)).thenReturn(view);
+
+        providerDelegate.onCreate(null);
+
+        Mockito.verify(providerController).onControllerCreate(null);
+        Mockito.verify(providerController).onControllerCreateContentView(activity, parent);
+        Mockito.verify(activity).setContentView(view);
+        Mockito.verify(providerController).onControllerContentViewCreated();
+        Mockito.verifyNoMoreInteractions(providerController);
+
+        Assert.assertSame(parent, providerDelegate.getView());
+    }
+
+    @Test
+    public void testInstallLayoutInflaterFactoryBeforeSetContentView() {
+        LayoutInflater inflater = Mockito.mock(LayoutInflater.class);
+
+        Mockito.when(activity.getLayoutInflater()).thenReturn(inflater);
+        Mockito.when(controller.onControllerGetContentLayoutId()).thenReturn(1);
+
+        ViewControllerLayoutInflaterFactory.register("com.example.RegisteredView",
+                Mockito.mock(ViewControllerLayoutInflaterFactory.ViewConstructor.class));
+
+        try {
+            controllerDelegate.onCreate(null);
+        } finally {
+            ViewControllerLayoutInflaterFactory.unregister("com.example.RegisteredView");
+        }
+
+        InOrder inOrder = Mockito.inOrder(inflater, activity);
+        inOrder.verify(inflater).setFactory2(Mockito.any(LayoutInflater.Factory2.class));
+        inOrder.verify(activity).setContentView(1);
+    }
+
+    @Test
+    public void testOnCreateContentViewProviderNoContentView() {
+        ViewControllerContentViewProvider providerController = Mockito.mock(ViewControllerContentViewProvider.class);
+        ViewControllerActivityDelegate providerDelegate = new ViewControllerActivityDelegate(activity, providerController);
+
+        providerDelegate.onCreate(null);
+
+        Mockito.verify(providerController).onControllerCreate(null);
+        Mockito.verify(providerController).onControllerCreateContentView(activity, null);
+        Mockito.verifyNoMoreInteractions(providerController);
+
+        Assert.assertNull(providerDelegate.getView());
+    }
+
+    @Test
+    public void testRetainObjectOnConfigurationChange() {
+        ViewControllerRetain retainController = Mockito.mock(ViewControllerRetain.class);
+        ViewControllerActivityDelegate retainDelegate = new ViewControllerActivityDelegate(activity, retainController);
+        Bundle outState = TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE);
+        Bundle savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+        Object retainedObject = new Object();
+
+        Mockito.when(activity.isChangingConfigurations()).thenReturn(true);
+        Mockito.when(retainController.onControllerRetainObject()).thenReturn(retainedObject);
+
+        retainDelegate.onCreate(null, null);
+        retainDelegate.onStart();
+        retainDelegate.onSaveInstanceState(outState);
+        Object nonConfigurationInstance = retainDelegate.onRetainNonConfigurationInstance();
+        retainDelegate.onDestroy();
+
+        Mockito.verify(retainController, Mockito.times(1)).onControllerRetainObject();
+        Mockito.verify(retainController).onControllerSaveInstanceState(outState);
+
+        ViewControllerActivityDelegate recreatedDelegate = new ViewControllerActivityDelegate(activity, retainController);
+        recreatedDelegate.onCreate(savedInstanceState, nonConfigurationInstance);
+
+        Mockito.verify(retainController).onControllerRestoreRetainedObject(retainedObject);
+        Mockito.verify(retainController, Mockito.never()).onControllerRestoreInstanceState(savedInstanceState);
+    }
+
+    @Test
+    public void testRetainObjectFromFragmentActivity() {
+        FragmentActivity fragmentActivity = Mockito.mock(FragmentActivity.class);
+        ViewControllerRetain retainController = Mockito.mock(ViewControllerRetain.class);
+        Bundle savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+        Object retainedObject = new Object();
+
+        Mockito.when(fragmentActivity.getLastCustomNonConfigurationInstance()).thenReturn(retainedObject);
+
+        new ViewControllerActivityDelegate(fragmentActivity, retainController).onCreate(savedInstanceState);
+
+        Mockito.verify(fragmentActivity, Mockito.never()).getLastNonConfigurationInstance();
+        Mockito.verify(retainController).onControllerRestoreRetainedObject(retainedObject);
+        Mockito.verify(retainController, Mockito.never()).onControllerRestoreInstanceState(savedInstanceState);
+    }
+
+    @Test
+    public void testReinflateContentViewOnConfigurationChange() {
+        ViewControllerConfigurationAware awareController = Mockito.mock(ViewControllerConfigurationAware.class);
+        ViewControllerActivityDelegate awareDelegate = new ViewControllerActivityDelegate(activity, awareController);
+        ViewGroup contentParent = Mockito.mock(ViewGroup.class);
+        Configuration newConfig = Mockito.mock(Configuration.class);
+
+        Mockito.when(activity.getResources()).thenReturn(Mockito.mock(Resources.class));
+        Mockito.when(activity.findViewById(android.R.id.content)).thenReturn(contentParent);
+        Mockito.when(awareController.onControllerGetContentLayoutId()).thenReturn(1, 2);
+
+        awareDelegate.onCreate(null, null);
+        awareDelegate.onStart();
+        awareDelegate.onResume();
+        awareDelegate.onWindowFocusChanged(true);
+        awareDelegate.onConfigurationChanged(newConfig);
+
+        InOrder inOrder = Mockito.inOrder(awareController, contentParent, activity);
+        inOrder.verify(awareController).onControllerConfigurationChanged(newConfig);
+        inOrder.verify(awareController).onControllerBlur();
+        inOrder.verify(awareController).onControllerPause();
+        inOrder.verify(awareController).onControllerStop();
+        inOrder.verify(contentParent).saveHierarchyState(Mockito.<SparseArray<Parcelable>>any());
+        inOrder.verify(activity).setContentView(2);
+        inOrder.verify(awareController).onControllerContentViewCreated();
+        inOrder.verify(contentParent).restoreHierarchyState(Mockito.<SparseArray<Parcelable>>any());
+        inOrder.verify(awareController).onControllerStart();
+        inOrder.verify(awareController).onControllerResume();
+        inOrder.verify(awareController).onControllerFocus();
+
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_FOCUSED, awareDelegate.getLifecycle().getSpan());
+    }
+
+    @Test
+    public void testSameContentViewOnConfigurationChange() {
+        ViewControllerConfigurationAware awareController = Mockito.mock(ViewControllerConfigurationAware.class);
+        ViewControllerActivityDelegate awareDelegate = new ViewControllerActivityDelegate(activity, awareController);
+        Configuration newConfig = Mockito.mock(Configuration.class);
+
+        Mockito.when(activity.getResources()).thenReturn(Mockito.mock(Resources.class));
+        Mockito.when(awareController.onControllerGetContentLayoutId()).thenReturn(1);
+
+        awareDelegate.onCreate(null, null);
+        awareDelegate.onStart();
+        awareDelegate.onConfigurationChanged(newConfig);
+
+        Mockito.verify(awareController).onControllerConfigurationChanged(newConfig);
+        Mockito.verify(awareController, Mockito.never()).onControllerStop();
+        Mockito.verify(awareController, Mockito.times(1)).onControllerContentViewCreated();
+    }
+
+    @Test
+    public void testLifecycleSpans() {
+        ViewControllerLifecycle lifecycle = controllerDelegate.getLifecycle();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_NONE, lifecycle.getSpan());
+
+        performResume(true);
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_FOCUSED, lifecycle.getSpan());
+
+        controllerDelegate.onWindowFocusChanged(false);
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_RESUMED, lifecycle.getSpan());
+
+        controllerDelegate.onPause();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_STARTED, lifecycle.getSpan());
+
+        controllerDelegate.onStop();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_CREATED, lifecycle.getSpan());
+
+        controllerDelegate.onDestroy();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_NONE, lifecycle.getSpan());
+    }
+
+    @Test
+    public void testFinishingWithoutFinishCall() {
+        performCreate();
+        Mockito.when(activity.isFinishing()).thenReturn(true);
+
+        // Eg. finishAffinity() after the instance state was saved.
+        controllerDelegate.onSaveInstanceState(TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE));
+        controllerDelegate.onDestroy();
+
+        Assert.assertTrue(controllerDelegate.getLifecycle().isFinishing());
+    }
+
+    @Test
+    public void testNotFinishingAfterInstanceStateSaved() {
+        performCreate();
+
+        controllerDelegate.onSaveInstanceState(TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE));
+        controllerDelegate.onDestroy();
+
+        Assert.assertFalse(controllerDelegate.getLifecycle().isFinishing());
+    }
+
+    @Test
+    public void testIsFinishingBeforeDestroy() {
+        performStart();
+        Assert.assertFalse(controllerDelegate.isFinishing());
+
+        Mockito.when(activity.isFinishing()).thenReturn(true);
+        Assert.assertTrue(controllerDelegate.isFinishing());
+    }
+
     private void performDestroy() {
         controllerDelegate.finish();
         controllerDelegate.onDestroy();
@@ -723,6 +993,21 @@ public class ViewControllerActivityDelegateTest {
         ensureNoMoreInteractions();
     }
 
+    private Handler setUpFocusDebounce() {
+        Handler focusDebounceHandler = Mockito.mock(Handler.class);
+
+        controllerDelegate.setFocusDebounceDelay(500L);
+        controllerDelegate.focusDebounceHandler = focusDebounceHandler;
+
+        return focusDebounceHandler;
+    }
+
+    private static Runnable capturePendingBlur(Handler focusDebounceHandler) {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(focusDebounceHandler).postDelayed(captor.capture(), Mockito.eq(500L));
+        return captor.getValue();
+    }
+
     private void ensureNoMoreInteractions() {
         Mockito.verifyNoMoreInteractions(controller);
         Mockito.reset(controller);
@@ -0,0 +1,123 @@
+package com.eightsines.holycycle;
+
+import android.view.View;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ViewControllerChildrenTest {
+    private ViewControllerChildren children;
+    private ViewControllerChild firstChild;
+    private ViewControllerChild secondChild;
+    private ViewControllerChild nestedChild;
+
+    @Before
+    public void setUp() {
+        children = new ViewControllerChildren(null);
+        firstChild = Mockito.mock(ViewControllerChild.class);
+        secondChild = Mockito.mock(ViewControllerChild.class);
+        nestedChild = Mockito.mock(ViewControllerChild.class);
+
+        children.add("first", 1, firstChild, null);
+        children.add("second", 2, secondChild, null);
+
+        firstChild.children = new ViewControllerChildren(null);
+        firstChild.children.add("nested", 3, nestedChild, null);
+    }
+
+    @Test
+    public void testEnterInNestingOrder() {
+        children.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        InOrder inOrder = Mockito.inOrder(firstChild, secondChild, nestedChild);
+        inOrder.verify(firstChild).onControllerStart();
+        inOrder.verify(nestedChild).onControllerStart();
+        inOrder.verify(firstChild).onControllerResume();
+        inOrder.verify(nestedChild).onControllerResume();
+        inOrder.verify(firstChild).onControllerFocus();
+        inOrder.verify(nestedChild).onControllerFocus();
+        inOrder.verify(secondChild).onControllerStart();
+        inOrder.verify(secondChild).onControllerResume();
+        inOrder.verify(secondChild).onControllerFocus();
+    }
+
+    @Test
+    public void testExitInReverseNestingOrder() {
+        children.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        children.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+
+        InOrder inOrder = Mockito.inOrder(firstChild, secondChild, nestedChild);
+        inOrder.verify(secondChild).onControllerBlur();
+        inOrder.verify(secondChild).onControllerPause();
+        inOrder.verify(secondChild).onControllerPersistUserData();
+        inOrder.verify(secondChild).onControllerStop();
+        inOrder.verify(nestedChild).onControllerBlur();
+        inOrder.verify(firstChild).onControllerBlur();
+        inOrder.verify(nestedChild).onControllerPause();
+        inOrder.verify(nestedChild).onControllerPersistUserData();
+        inOrder.verify(firstChild).onControllerPause();
+        inOrder.verify(firstChild).onControllerPersistUserData();
+        inOrder.verify(nestedChild).onControllerStop();
+        inOrder.verify(firstChild).onControllerStop();
+    }
+
+    @Test
+    public void testLateChildCatchesUp() {
+        children.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+
+        ViewControllerChild lateChild = Mockito.mock(ViewControllerChild.class);
+        children.add("late", 4, lateChild, null);
+
+        InOrder inOrder = Mockito.inOrder(lateChild);
+        inOrder.verify(lateChild).onControllerCreate(null);
+        inOrder.verify(lateChild).onControllerStart();
+        inOrder.verify(lateChild).onControllerResume();
+        Mockito.verify(lateChild, Mockito.never()).onControllerFocus();
+    }
+
+    @Test
+    public void testRemoveStopsChild() {
+        children.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        children.remove(secondChild);
+
+        Mockito.verify(secondChild).onControllerStop();
+        Assert.assertNull(children.find("second"));
+        Assert.assertSame(firstChild, children.find("first"));
+    }
+
+    @Test
+    public void testRestartAroundLateContentView() {
+        View parentView = Mockito.mock(View.class);
+        Mockito.when(parentView.findViewById(Mockito.anyInt())).thenReturn(Mockito.mock(View.class));
+
+        children.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        children.dispatchContentViewCreated(parentView);
+
+        InOrder inOrder = Mockito.inOrder(firstChild, secondChild);
+        inOrder.verify(secondChild).onControllerStop();
+        inOrder.verify(firstChild).onControllerStop();
+        inOrder.verify(firstChild).onControllerContentViewCreated();
+        inOrder.verify(secondChild).onControllerContentViewCreated();
+        inOrder.verify(firstChild).onControllerStart();
+        inOrder.verify(secondChild).onControllerStart();
+    }
+
+    @Test
+    public void testNoRestartBeforeStart() {
+        View parentView = Mockito.mock(View.class);
+        Mockito.when(parentView.findViewById(Mockito.anyInt())).thenReturn(Mockito.mock(View.class));
+
+        children.dispatchContentViewCreated(parentView);
+
+        Mockito.verify(firstChild).onControllerContentViewCreated();
+        Mockito.verify(firstChild, Mockito.never()).onControllerStop();
+        Mockito.verify(firstChild, Mockito.never()).onControllerStart();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateTag() {
+        children.add("first", 5, Mockito.mock(ViewControllerChild.class), null);
+    }
+}
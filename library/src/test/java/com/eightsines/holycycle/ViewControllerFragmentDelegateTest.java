@@ -1,7 +1,11 @@
 package com.eightsines.holycycle;
 
+import android.content.Context;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,6 +14,7 @@ import com.eightsines.holycycle.util.TestUtils;
 import junit.framework.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -570,6 +575,181 @@ public class ViewControllerFragmentDelegateTest {
         Assert.assertNull(controllerDelegate.findViewById(1));
     }
 
+    @Test
+    public void testOnCreateViewContentViewProvider() {
+        ViewControllerContentViewProvider providerController = Mockito.mock(ViewControllerContentViewProvider.class);
+        ViewControllerFragmentDelegate providerDelegate = new ViewControllerFragmentDelegate(providerController);
+        Context context = Mockito.mock(Context.class);
+        ViewGroup container = Mockito.mock(ViewGroup.class);
+        LayoutInflater inflater = Mockito.mock(LayoutInflater.class);
+        View contentView = Mockito.mock(View.class);
+
+        Mockito.when(inflater.getContext()).thenReturn(context);
+        Mockito.when(providerController.onControllerCreateContentView(context, container)).thenReturn(contentView);
+
+        providerDelegate.onAttach();
+        providerDelegate.onCreate(null, null);
+        View resultView = providerDelegate.onCreateView(inflater, container);
+        providerDelegate.onViewCreated();
+
+        Mockito.verify(providerController).onControllerCreate(null);
+        Mockito.verify(providerController).onControllerCreateContentView(context, container);
+        Mockito.verify(providerController).onControllerContentViewCreated();
+        Mockito.verifyNoMoreInteractions(providerController);
+
+        Mockito.verify(inflater, Mockito.never())
+                .inflate(Mockito.anyInt(), Mockito.any(ViewGroup.class), Mockito.anyBoolean());
+
+        Assert.assertSame(contentView, resultView);
+        Assert.assertSame(contentView, providerDelegate.getView());
+    }
+
+    @Test
+    public void testFinishingCheckerAfterInstanceStateSaved() {
+        ViewControllerFragmentDelegate.FinishingChecker finishingChecker =
+                Mockito.mock(ViewControllerFragmentDelegate.FinishingChecker.class);
+
+        ViewControllerFragmentDelegate checkedDelegate = new ViewControllerFragmentDelegate(controller, finishingChecker);
+        Mockito.when(finishingChecker.isFragmentFinishing()).thenReturn(true);
+
+        // Fragment in the back stack, which instance state was saved once, is popped later.
+        checkedDelegate.onAttach();
+        checkedDelegate.onCreate(null, null);
+        checkedDelegate.onSaveInstanceState(TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE));
+        checkedDelegate.onDestroy();
+
+        Assert.assertTrue(checkedDelegate.getLifecycle().isFinishing());
+    }
+
+    @Test
+    public void testIsFinishingBeforeDestroy() {
+        ViewControllerFragmentDelegate.FinishingChecker finishingChecker =
+                Mockito.mock(ViewControllerFragmentDelegate.FinishingChecker.class);
+
+        ViewControllerFragmentDelegate checkedDelegate = new ViewControllerFragmentDelegate(controller, finishingChecker);
+        checkedDelegate.onAttach();
+        checkedDelegate.onCreate(null, null);
+        Assert.assertFalse(checkedDelegate.isFinishing());
+
+        Mockito.when(finishingChecker.isFragmentFinishing()).thenReturn(true);
+        Assert.assertTrue(checkedDelegate.isFinishing());
+    }
+
+    @Test
+    public void testRestoreLazyContentViewState() {
+        ViewControllerLazyContent lazyController = Mockito.mock(ViewControllerLazyContent.class);
+        ViewGroup lazyContainer = Mockito.mock(ViewGroup.class);
+        ViewControllerFragmentDelegate lazyDelegate = createLazyDelegate(lazyController, lazyContainer);
+        Bundle savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+        SparseArray<Parcelable> lazyContentViewState = new SparseArray<>();
+        LayoutInflater inflater = Mockito.mock(LayoutInflater.class);
+        View lazyContentView = Mockito.mock(View.class);
+
+        Mockito.when(savedInstanceState.getSparseParcelableArray(Mockito.anyString())).thenReturn(lazyContentViewState);
+        Mockito.when(lazyController.onControllerIsContentViewLazy()).thenReturn(true);
+        Mockito.when(lazyController.onControllerGetContentLayoutId()).thenReturn(1);
+
+        Mockito.when(inflater.inflate(Mockito.eq(1), Mockito.any(ViewGroup.class), Mockito.eq(false)))
+                .thenReturn(lazyContentView);
+
+        lazyDelegate.onAttach();
+        lazyDelegate.onCreate(savedInstanceState, null);
+        lazyDelegate.onCreateView(inflater, null);
+        lazyDelegate.onViewCreated();
+
+        // Fragment restores the view state here, while the lazy container is still empty.
+        Mockito.verify(lazyController, Mockito.never()).onControllerContentViewCreated();
+
+        lazyDelegate.onStart();
+
+        InOrder inOrder = Mockito.inOrder(lazyController, lazyContainer, lazyContentView);
+        inOrder.verify(lazyContainer).addView(lazyContentView);
+        inOrder.verify(lazyController).onControllerContentViewCreated();
+        inOrder.verify(lazyContentView).restoreHierarchyState(lazyContentViewState);
+        inOrder.verify(lazyController).onControllerStart();
+    }
+
+    @Test
+    public void testLazyContentWhileNotVisible() {
+        ViewControllerLazyContent lazyController = Mockito.mock(ViewControllerLazyContent.class);
+        ViewControllerFragmentDelegate lazyDelegate = performLazyResumeNotVisible(lazyController);
+
+        // View controller is not started until its content view is created.
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_CREATED, lazyDelegate.getLifecycle().getSpan());
+        Mockito.verify(lazyController, Mockito.never()).onControllerContentViewCreated();
+        Mockito.verify(lazyController, Mockito.never()).onControllerStart();
+        Mockito.verify(lazyController, Mockito.never()).onControllerResume();
+
+        lazyDelegate.setUserVisibleHint(true);
+
+        InOrder inOrder = Mockito.inOrder(lazyController);
+        inOrder.verify(lazyController).onControllerContentViewCreated();
+        inOrder.verify(lazyController).onControllerStart();
+        inOrder.verify(lazyController).onControllerResume();
+        inOrder.verify(lazyController).onControllerFocus();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_FOCUSED, lazyDelegate.getLifecycle().getSpan());
+
+        lazyDelegate.onPause();
+        lazyDelegate.onStop();
+
+        inOrder.verify(lazyController).onControllerBlur();
+        inOrder.verify(lazyController).onControllerPause();
+        inOrder.verify(lazyController).onControllerStop();
+    }
+
+    @Test
+    public void testLazyContentNeverVisible() {
+        ViewControllerLazyContent lazyController = Mockito.mock(ViewControllerLazyContent.class);
+        ViewControllerFragmentDelegate lazyDelegate = performLazyResumeNotVisible(lazyController);
+
+        lazyDelegate.onPause();
+        lazyDelegate.onStop();
+        lazyDelegate.onDestroyView();
+        lazyDelegate.onDestroy();
+
+        // Callbacks are balanced, so there is no pause or stop without the start.
+        Mockito.verify(lazyController, Mockito.never()).onControllerPause();
+        Mockito.verify(lazyController, Mockito.never()).onControllerStop();
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_NONE, lazyDelegate.getLifecycle().getSpan());
+    }
+
+    private static ViewControllerFragmentDelegate performLazyResumeNotVisible(
+            ViewControllerLazyContent lazyController) {
+
+        ViewControllerFragmentDelegate lazyDelegate = createLazyDelegate(lazyController,
+                Mockito.mock(ViewGroup.class));
+
+        LayoutInflater inflater = Mockito.mock(LayoutInflater.class);
+
+        Mockito.when(lazyController.onControllerIsContentViewLazy()).thenReturn(true);
+        Mockito.when(lazyController.onControllerGetContentLayoutId()).thenReturn(1);
+
+        Mockito.when(inflater.inflate(Mockito.eq(1), Mockito.any(ViewGroup.class), Mockito.eq(false)))
+                .thenReturn(Mockito.mock(View.class));
+
+        lazyDelegate.setUserVisibleHint(false);
+        lazyDelegate.onAttach();
+        lazyDelegate.onCreate(null, null);
+        lazyDelegate.onCreateView(inflater, null);
+        lazyDelegate.onViewCreated();
+        lazyDelegate.onStart();
+        lazyDelegate.onResume();
+
+        return lazyDelegate;
+    }
+
+    private static ViewControllerFragmentDelegate createLazyDelegate(ViewControllerLazyContent lazyController,
+            final ViewGroup lazyContainer) {
+
+        return new ViewControllerFragmentDelegate(lazyController) {
+            @NonNull
+            @Override
+            ViewGroup createLazyContainer(@NonNull Context context) {
+                return lazyContainer;
+            }
+        };
+    }
+
     private void performAndVerifyDestroyAfterCreate() {
         performAndVerifyCreate(false, false);
         controllerDelegate.onDestroy();
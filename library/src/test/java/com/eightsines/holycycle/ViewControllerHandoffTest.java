@@ -0,0 +1,140 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import android.os.Handler;
+import com.eightsines.holycycle.util.TestUtils;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class ViewControllerHandoffTest {
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.ViewControllerHandoff.TOKEN";
+    private static final String KEY_VALUE = "value";
+
+    private Handler removeExpiredHandler;
+    private ViewControllerLifecycle lifecycle;
+    private Bundle arguments;
+    private Object value;
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        removeExpiredHandler = Mockito.mock(Handler.class);
+
+        // Tests run off the main looper, so the scheduled removal is only captured.
+        TestUtils.mockStaticField(ViewControllerHandoff.class.getDeclaredField("removeExpiredHandler"),
+                removeExpiredHandler);
+
+        TestUtils.mockStaticField(ViewControllerHandoff.class.getDeclaredField("scheduledRemoveAtMillis"),
+                Long.MAX_VALUE);
+
+        lifecycle = Mockito.mock(ViewControllerLifecycle.class);
+        arguments = TestUtils.createMockBundle("arguments");
+        value = new Object();
+    }
+
+    @After
+    public void tearDown() throws NoSuchFieldException {
+        ViewControllerHandoff.setTtl(ViewControllerHandoff.DEFAULT_TTL_MILLIS);
+        TestUtils.mockStaticField(ViewControllerHandoff.class.getDeclaredField("removeExpiredHandler"), null);
+    }
+
+    @Test
+    public void testGetDepositedObject() {
+        ViewControllerHandoff.put(arguments, KEY_VALUE, value);
+        ViewControllerHandoff handoff = createHandoff();
+
+        Assert.assertSame(value, handoff.get(KEY_VALUE));
+        Assert.assertNull(handoff.get("missing"));
+        Mockito.verify(lifecycle).addObserver(handoff);
+    }
+
+    @Test
+    public void testDepositToSameArguments() {
+        Object otherValue = new Object();
+
+        ViewControllerHandoff.put(arguments, KEY_VALUE, value);
+        String token = captureToken();
+        Mockito.when(arguments.getString(KEY_TOKEN)).thenReturn(token);
+        ViewControllerHandoff.put(arguments, "other", otherValue);
+
+        Mockito.verify(arguments, Mockito.times(2)).putString(KEY_TOKEN, token);
+
+        ViewControllerHandoff handoff = createHandoff();
+        Assert.assertSame(value, handoff.get(KEY_VALUE));
+        Assert.assertSame(otherValue, handoff.get("other"));
+    }
+
+    @Test
+    public void testKeepWhileRecreated() {
+        ViewControllerHandoff.put(arguments, KEY_VALUE, value);
+        Bundle extras = createExtras(captureToken());
+
+        new ViewControllerHandoff(lifecycle, extras, null).onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+        ViewControllerHandoff recreatedHandoff = new ViewControllerHandoff(lifecycle, extras, null);
+        Assert.assertSame(value, recreatedHandoff.get(KEY_VALUE));
+
+        Mockito.when(lifecycle.isFinishing()).thenReturn(true);
+        recreatedHandoff.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+        Assert.assertNull(new ViewControllerHandoff(lifecycle, extras, null).get(KEY_VALUE));
+    }
+
+    @Test
+    public void testKeepWhileReferenced() throws InterruptedException {
+        ViewControllerHandoff.setTtl(1L);
+        ViewControllerHandoff.put(arguments, KEY_VALUE, value);
+        Bundle extras = createExtras(captureToken());
+
+        ViewControllerHandoff handoff = new ViewControllerHandoff(lifecycle, extras, null);
+        Thread.sleep(10L);
+
+        // Entry is referenced by the alive view controller, so it doesn't expire.
+        Assert.assertSame(value, new ViewControllerHandoff(lifecycle, extras, null).get(KEY_VALUE));
+        Assert.assertSame(value, handoff.get(KEY_VALUE));
+    }
+
+    @Test
+    public void testDropExpired() throws InterruptedException {
+        ViewControllerHandoff.setTtl(1L);
+        ViewControllerHandoff.put(arguments, KEY_VALUE, value);
+        Bundle extras = createExtras(captureToken());
+
+        // Removal is scheduled, so objects are dropped even if nothing is deposited or resolved anymore.
+        Mockito.verify(removeExpiredHandler).postDelayed(Mockito.any(Runnable.class), Mockito.anyLong());
+
+        Thread.sleep(10L);
+        Assert.assertNull(new ViewControllerHandoff(lifecycle, extras, null).get(KEY_VALUE));
+    }
+
+    @Test
+    public void testCancel() {
+        ViewControllerHandoff.put(arguments, KEY_VALUE, value);
+        Bundle extras = createExtras(captureToken());
+
+        ViewControllerHandoff.cancel(extras);
+        Assert.assertNull(new ViewControllerHandoff(lifecycle, extras, null).get(KEY_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTtl() {
+        ViewControllerHandoff.setTtl(0L);
+    }
+
+    private ViewControllerHandoff createHandoff() {
+        return new ViewControllerHandoff(lifecycle, createExtras(captureToken()), null);
+    }
+
+    private String captureToken() {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(arguments, Mockito.atLeastOnce()).putString(Mockito.eq(KEY_TOKEN), captor.capture());
+        return captor.getValue();
+    }
+
+    private static Bundle createExtras(String token) {
+        Bundle extras = TestUtils.createMockBundle(TestUtils.BUNDLE_EXTRAS);
+        Mockito.when(extras.getString(KEY_TOKEN)).thenReturn(token);
+        return extras;
+    }
+}
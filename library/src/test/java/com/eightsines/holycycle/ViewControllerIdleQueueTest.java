@@ -0,0 +1,155 @@
+package com.eightsines.holycycle;
+
+import android.os.MessageQueue;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ViewControllerIdleQueueTest {
+    private ViewControllerLifecycle lifecycle;
+    private MessageQueue messageQueue;
+    private ViewControllerIdle controller;
+    private ViewControllerIdleQueue idleQueue;
+
+    @Before
+    public void setUp() {
+        lifecycle = new ViewControllerLifecycle();
+        messageQueue = Mockito.mock(MessageQueue.class);
+        controller = Mockito.mock(ViewControllerIdle.class);
+        idleQueue = new ViewControllerIdleQueue(lifecycle, null, messageQueue);
+    }
+
+    @Test
+    public void testRegisterOnFocus() {
+        Runnable task = Mockito.mock(Runnable.class);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+        idleQueue.post(task);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        Mockito.verifyZeroInteractions(messageQueue);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        Mockito.verify(messageQueue).addIdleHandler(idleQueue);
+        Mockito.verifyZeroInteractions(task);
+    }
+
+    @Test
+    public void testRegisterOnPostWhileFocused() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        Mockito.verifyZeroInteractions(messageQueue);
+
+        idleQueue.post(Mockito.mock(Runnable.class));
+        idleQueue.post(Mockito.mock(Runnable.class));
+        Mockito.verify(messageQueue).addIdleHandler(idleQueue);
+    }
+
+    @Test
+    public void testUnregisterOnPause() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        idleQueue.post(Mockito.mock(Runnable.class));
+
+        // Transient blur keeps the queue registered.
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        Mockito.verify(messageQueue, Mockito.never()).removeIdleHandler(idleQueue);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        Mockito.verify(messageQueue).removeIdleHandler(idleQueue);
+
+        // Not executed task is kept till the next resume.
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        Mockito.verify(messageQueue, Mockito.times(2)).addIdleHandler(idleQueue);
+    }
+
+    @Test
+    public void testOneTaskPerIdleSlot() {
+        Runnable firstTask = Mockito.mock(Runnable.class);
+        Runnable secondTask = Mockito.mock(Runnable.class);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        idleQueue.post(firstTask);
+        idleQueue.post(secondTask);
+
+        Assert.assertTrue(idleQueue.queueIdle());
+        Mockito.verify(firstTask).run();
+        Mockito.verifyZeroInteractions(secondTask);
+
+        Assert.assertFalse(idleQueue.queueIdle());
+        Mockito.verify(secondTask).run();
+
+        // Queue was removed by returning false, so it is registered again on the next post.
+        idleQueue.post(Mockito.mock(Runnable.class));
+        Mockito.verify(messageQueue, Mockito.times(2)).addIdleHandler(idleQueue);
+    }
+
+    @Test
+    public void testIdleCallbackBeforeTasks() {
+        Runnable task = Mockito.mock(Runnable.class);
+        ViewControllerIdleQueue controllerIdleQueue = new ViewControllerIdleQueue(lifecycle, controller, messageQueue);
+
+        controllerIdleQueue.post(task);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        Mockito.verify(messageQueue).addIdleHandler(controllerIdleQueue);
+
+        Assert.assertTrue(controllerIdleQueue.queueIdle());
+        Assert.assertFalse(controllerIdleQueue.queueIdle());
+
+        InOrder inOrder = Mockito.inOrder(controller, task);
+        inOrder.verify(controller).onControllerIdle();
+        inOrder.verify(task).run();
+    }
+
+    @Test
+    public void testNotKeptWhenPausedFromTask() {
+        Runnable secondTask = Mockito.mock(Runnable.class);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        idleQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+            }
+        });
+
+        idleQueue.post(secondTask);
+
+        Assert.assertFalse(idleQueue.queueIdle());
+        Mockito.verifyZeroInteractions(secondTask);
+    }
+
+    @Test
+    public void testRegisterAgainAfterTaskThrows() {
+        final RuntimeException exception = new RuntimeException();
+        Runnable secondTask = Mockito.mock(Runnable.class);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        idleQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                throw exception;
+            }
+        });
+
+        idleQueue.post(secondTask);
+
+        try {
+            idleQueue.queueIdle();
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertSame(exception, e);
+        }
+
+        // MessageQueue removes the throwing idle handler, so the queue must register again.
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        Mockito.verify(messageQueue, Mockito.never()).removeIdleHandler(idleQueue);
+        Mockito.verify(messageQueue, Mockito.times(2)).addIdleHandler(idleQueue);
+
+        Assert.assertFalse(idleQueue.queueIdle());
+        Mockito.verify(secondTask).run();
+    }
+}
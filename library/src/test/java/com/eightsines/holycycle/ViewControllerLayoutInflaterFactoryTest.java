@@ -0,0 +1,132 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.LayoutInflater;
+import android.view.View;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class ViewControllerLayoutInflaterFactoryTest {
+    private static final String REGISTERED_NAME = "com.example.RegisteredView";
+    private static final String UNREGISTERED_NAME = "com.example.UnregisteredView";
+
+    private Context context;
+    private AttributeSet attrs;
+    private View registeredView;
+    private LayoutInflater.Factory2 previousFactory;
+    private LayoutInflater inflater;
+    private LayoutInflater clonedInflater;
+
+    @Before
+    public void setUp() {
+        context = Mockito.mock(Context.class);
+        attrs = Mockito.mock(AttributeSet.class);
+        registeredView = Mockito.mock(View.class);
+        previousFactory = Mockito.mock(LayoutInflater.Factory2.class);
+        inflater = Mockito.mock(LayoutInflater.class);
+        clonedInflater = Mockito.mock(LayoutInflater.class);
+
+        Mockito.when(inflater.getContext()).thenReturn(context);
+        Mockito.when(inflater.getFactory2()).thenReturn(previousFactory);
+        Mockito.when(inflater.getFactory()).thenReturn(previousFactory);
+        Mockito.when(inflater.cloneInContext(context)).thenReturn(clonedInflater);
+
+        ViewControllerLayoutInflaterFactory.register(REGISTERED_NAME,
+                new ViewControllerLayoutInflaterFactory.ViewConstructor() {
+                    @Override
+                    public View newView(Context context, AttributeSet attrs) {
+                        return registeredView;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        ViewControllerLayoutInflaterFactory.unregister(REGISTERED_NAME);
+    }
+
+    @Test
+    public void testUnregisteredTagIsLeftToInflater() {
+        LayoutInflater.Factory2 factory = wrapAndCaptureFactory();
+
+        Assert.assertNull(factory.onCreateView(null, UNREGISTERED_NAME, context, attrs));
+        Assert.assertNull(factory.onCreateView(UNREGISTERED_NAME, context, attrs));
+
+        // Inflater asks the original factory by itself, so it must not be called twice.
+        Mockito.verifyZeroInteractions(previousFactory);
+    }
+
+    @Test
+    public void testRegisteredTagAsksPreviousFactoryFirst() {
+        View substitutedView = Mockito.mock(View.class);
+        LayoutInflater.Factory2 factory = wrapAndCaptureFactory();
+
+        Mockito.when(previousFactory.onCreateView(null, REGISTERED_NAME, context, attrs)).thenReturn(substitutedView);
+        Assert.assertSame(substitutedView, factory.onCreateView(null, REGISTERED_NAME, context, attrs));
+
+        Mockito.when(previousFactory.onCreateView(null, REGISTERED_NAME, context, attrs)).thenReturn(null);
+        Assert.assertSame(registeredView, factory.onCreateView(null, REGISTERED_NAME, context, attrs));
+    }
+
+    @Test
+    public void testWrapMergedInflaterOnce() {
+        LayoutInflater.Factory2 mergedFactory = Mockito.mock(LayoutInflater.Factory2.class);
+
+        // Real inflater merges the new factory with the original one into the private FactoryMerger.
+        Mockito.when(clonedInflater.getFactory2()).thenReturn(mergedFactory);
+        wrapAndCaptureFactory();
+
+        Assert.assertSame(clonedInflater, ViewControllerLayoutInflaterFactory.wrap(clonedInflater));
+        Mockito.verify(clonedInflater, Mockito.never()).cloneInContext(Mockito.any(Context.class));
+    }
+
+    @Test
+    public void testWrapWithoutConstructors() {
+        ViewControllerLayoutInflaterFactory.unregister(REGISTERED_NAME);
+
+        Assert.assertSame(inflater, ViewControllerLayoutInflaterFactory.wrap(inflater));
+        Mockito.verify(inflater, Mockito.never()).cloneInContext(Mockito.any(Context.class));
+    }
+
+    @Test
+    public void testInstall() {
+        LayoutInflater activityInflater = Mockito.mock(LayoutInflater.class);
+        ViewControllerLayoutInflaterFactory.install(activityInflater);
+
+        ArgumentCaptor<LayoutInflater.Factory2> captor = ArgumentCaptor.forClass(LayoutInflater.Factory2.class);
+        Mockito.verify(activityInflater).setFactory2(captor.capture());
+
+        Assert.assertSame(registeredView, captor.getValue().onCreateView(null, REGISTERED_NAME, context, attrs));
+        Assert.assertNull(captor.getValue().onCreateView(null, UNREGISTERED_NAME, context, attrs));
+    }
+
+    @Test
+    public void testInstallWithExistingFactory() {
+        // Inflater throws if the factory is set twice.
+        ViewControllerLayoutInflaterFactory.install(inflater);
+        Mockito.verify(inflater, Mockito.never()).setFactory2(Mockito.any(LayoutInflater.Factory2.class));
+    }
+
+    @Test
+    public void testInstallWithoutConstructors() {
+        LayoutInflater activityInflater = Mockito.mock(LayoutInflater.class);
+
+        ViewControllerLayoutInflaterFactory.unregister(REGISTERED_NAME);
+        ViewControllerLayoutInflaterFactory.install(activityInflater);
+
+        Mockito.verify(activityInflater, Mockito.never()).setFactory2(Mockito.any(LayoutInflater.Factory2.class));
+    }
+
+    private LayoutInflater.Factory2 wrapAndCaptureFactory() {
+        Assert.assertSame(clonedInflater, ViewControllerLayoutInflaterFactory.wrap(inflater));
+
+        ArgumentCaptor<LayoutInflater.Factory2> captor = ArgumentCaptor.forClass(LayoutInflater.Factory2.class);
+        Mockito.verify(clonedInflater).setFactory2(captor.capture());
+        return captor.getValue();
+    }
+}
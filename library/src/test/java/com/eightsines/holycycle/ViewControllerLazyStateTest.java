@@ -0,0 +1,61 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import com.eightsines.holycycle.util.TestUtils;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ViewControllerLazyStateTest {
+    private static final String KEY_FORM = "com.eightsines.holycycle.ViewControllerLazyState:form";
+    private static final String KEY_LIST = "com.eightsines.holycycle.ViewControllerLazyState:list";
+
+    private Bundle savedInstanceState;
+    private Bundle outState;
+    private ViewControllerLazyState lazyState;
+
+    @Before
+    public void setUp() {
+        savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+        outState = TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE);
+        lazyState = new ViewControllerLazyState(savedInstanceState, null);
+    }
+
+    @Test
+    public void testGetBundle() {
+        Assert.assertSame(savedInstanceState, lazyState.getBundle());
+    }
+
+    @Test
+    public void testHasSection() {
+        Mockito.when(savedInstanceState.containsKey(KEY_FORM)).thenReturn(true);
+
+        Assert.assertTrue(lazyState.hasSection("form"));
+        Assert.assertFalse(lazyState.hasSection("list"));
+    }
+
+    @Test
+    public void testCopyUntouchedSectionWithoutUnmarshalling() {
+        byte[] bytes = new byte[] { 1, 2, 3 };
+        Mockito.when(savedInstanceState.getByteArray(KEY_FORM)).thenReturn(bytes);
+
+        lazyState.copySectionTo(outState, "form");
+
+        // Raw bytes are copied as is.
+        Mockito.verify(outState).putByteArray(KEY_FORM, bytes);
+    }
+
+    @Test
+    public void testCopyMissingSection() {
+        lazyState.copySectionTo(outState, "list");
+        Mockito.verify(outState, Mockito.never()).putByteArray(Mockito.eq(KEY_LIST), Mockito.any(byte[].class));
+
+        // Missing section is remembered as null, and is still not copied.
+        Assert.assertNull(lazyState.getSection("list"));
+        Assert.assertFalse(lazyState.hasSection("list"));
+
+        lazyState.copySectionTo(outState, "list");
+        Mockito.verifyZeroInteractions(outState);
+    }
+}
@@ -0,0 +1,88 @@
+package com.eightsines.holycycle;
+
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ViewControllerLifecycleTest {
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerLifecycle.Observer firstObserver;
+    private ViewControllerLifecycle.Observer secondObserver;
+
+    @Before
+    public void setUp() {
+        lifecycle = new ViewControllerLifecycle();
+        firstObserver = Mockito.mock(ViewControllerLifecycle.Observer.class);
+        secondObserver = Mockito.mock(ViewControllerLifecycle.Observer.class);
+    }
+
+    @Test
+    public void testMoveToEntersSpansInOrder() {
+        lifecycle.addObserver(firstObserver);
+        lifecycle.addObserver(secondObserver);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+
+        InOrder inOrder = Mockito.inOrder(firstObserver, secondObserver);
+        inOrder.verify(firstObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        inOrder.verify(secondObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        inOrder.verify(firstObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        inOrder.verify(secondObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        inOrder.verify(firstObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_RESUMED);
+        inOrder.verify(secondObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_RESUMED);
+
+        Mockito.verifyNoMoreInteractions(firstObserver, secondObserver);
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_RESUMED, lifecycle.getSpan());
+    }
+
+    @Test
+    public void testMoveToExitsSpansInReverseOrder() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        lifecycle.addObserver(firstObserver);
+        lifecycle.addObserver(secondObserver);
+        Mockito.reset(firstObserver, secondObserver);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+
+        InOrder inOrder = Mockito.inOrder(firstObserver, secondObserver);
+        inOrder.verify(secondObserver).onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        inOrder.verify(firstObserver).onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        inOrder.verify(secondObserver).onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+        inOrder.verify(firstObserver).onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+
+        Mockito.verifyNoMoreInteractions(firstObserver, secondObserver);
+        Assert.assertEquals(ViewControllerLifecycle.SPAN_NONE, lifecycle.getSpan());
+    }
+
+    @Test
+    public void testAddObserverReplaysCurrentSpans() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        lifecycle.addObserver(firstObserver);
+
+        InOrder inOrder = Mockito.inOrder(firstObserver);
+        inOrder.verify(firstObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        inOrder.verify(firstObserver).onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        Mockito.verifyNoMoreInteractions(firstObserver);
+    }
+
+    @Test
+    public void testRemoveObserver() {
+        lifecycle.addObserver(firstObserver);
+        lifecycle.removeObserver(firstObserver);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+
+        Mockito.verifyNoMoreInteractions(firstObserver);
+    }
+
+    @Test
+    public void testIsInSpan() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+
+        Assert.assertTrue(lifecycle.isInSpan(ViewControllerLifecycle.SPAN_CREATED));
+        Assert.assertTrue(lifecycle.isInSpan(ViewControllerLifecycle.SPAN_RESUMED));
+        Assert.assertFalse(lifecycle.isInSpan(ViewControllerLifecycle.SPAN_FOCUSED));
+        Assert.assertFalse(lifecycle.isInSpan(ViewControllerLifecycle.SPAN_NONE));
+    }
+}
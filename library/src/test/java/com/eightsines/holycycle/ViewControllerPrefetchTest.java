@@ -0,0 +1,167 @@
+package com.eightsines.holycycle;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import com.eightsines.holycycle.util.TestUtils;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class ViewControllerPrefetchTest {
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.ViewControllerPrefetch.TOKEN";
+
+    private Handler removeExpiredHandler;
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        removeExpiredHandler = Mockito.mock(Handler.class);
+
+        TestUtils.mockStaticField(ViewControllerPrefetch.class.getDeclaredField("removeExpiredHandler"),
+                removeExpiredHandler);
+
+        TestUtils.mockStaticField(ViewControllerPrefetch.class.getDeclaredField("scheduledRemoveAtMillis"),
+                Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() throws NoSuchFieldException {
+        ViewControllerPrefetch.unregister(PrefetchController.class);
+        TestUtils.mockStaticField(ViewControllerPrefetch.class.getDeclaredField("removeExpiredHandler"), null);
+    }
+
+    @Test
+    public void testTakeOnce() throws ExecutionException, InterruptedException {
+        ViewControllerPrefetch.register(PrefetchController.class, new ViewControllerPrefetcher<String>() {
+            @Override
+            public String onControllerPrefetch(Bundle extras) {
+                return "value";
+            }
+        });
+
+        Bundle extras = prefetch();
+        Future<String> future = ViewControllerPrefetch.take(extras);
+
+        Assert.assertNotNull(future);
+        Assert.assertEquals("value", future.get());
+        Assert.assertNull(ViewControllerPrefetch.take(extras));
+    }
+
+    @Test
+    public void testPassExtrasToPrefetcher() throws ExecutionException, InterruptedException {
+        final Bundle extras = TestUtils.createMockBundle(TestUtils.BUNDLE_EXTRAS);
+        Intent intent = TestUtils.createMockIntent(extras);
+
+        ViewControllerPrefetch.register(PrefetchController.class, new ViewControllerPrefetcher<Bundle>() {
+            @Override
+            public Bundle onControllerPrefetch(Bundle extras) {
+                return extras;
+            }
+        });
+
+        Assert.assertTrue(ViewControllerPrefetch.prefetch(PrefetchController.class, intent));
+        Assert.assertSame(extras, ViewControllerPrefetch.<Bundle>take(createExtras(captureToken(intent))).get());
+    }
+
+    @Test
+    public void testPrefetchWithoutPrefetcher() {
+        Intent intent = TestUtils.createMockIntent(null);
+
+        Assert.assertFalse(ViewControllerPrefetch.prefetch(PrefetchController.class, intent));
+        Mockito.verify(intent, Mockito.never()).putExtra(Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void testTakeWithoutToken() {
+        Assert.assertNull(ViewControllerPrefetch.take(null));
+        Assert.assertNull(ViewControllerPrefetch.take(TestUtils.createMockBundle(TestUtils.BUNDLE_EXTRAS)));
+    }
+
+    @Test
+    public void testTakeWithUnknownToken() {
+        Assert.assertNull(ViewControllerPrefetch.take(createExtras("unknown")));
+    }
+
+    @Test
+    public void testRemoveExpired() throws InterruptedException {
+        ViewControllerPrefetch.register(PrefetchController.class, new ViewControllerPrefetcher<String>() {
+            @Override
+            public String onControllerPrefetch(Bundle extras) {
+                return "value";
+            }
+        }, 1L);
+
+        Bundle extras = prefetch();
+
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(removeExpiredHandler, Mockito.atLeastOnce())
+                .postDelayed(runnableCaptor.capture(), Mockito.anyLong());
+
+        Thread.sleep(10L);
+        runnableCaptor.getValue().run();
+
+        Assert.assertNull(ViewControllerPrefetch.take(extras));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch interruptedLatch = new CountDownLatch(1);
+
+        ViewControllerPrefetch.register(PrefetchController.class, new ViewControllerPrefetcher<String>() {
+            @Override
+            public String onControllerPrefetch(Bundle extras) throws InterruptedException {
+                startedLatch.countDown();
+
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interruptedLatch.countDown();
+                    throw e;
+                }
+
+                return "value";
+            }
+        });
+
+        Intent intent = TestUtils.createMockIntent(null);
+        Assert.assertTrue(ViewControllerPrefetch.prefetch(PrefetchController.class, intent));
+
+        String token = captureToken(intent);
+        Mockito.when(intent.getStringExtra(KEY_TOKEN)).thenReturn(token);
+        Assert.assertTrue(startedLatch.await(5L, TimeUnit.SECONDS));
+
+        ViewControllerPrefetch.cancel(intent);
+
+        Assert.assertTrue(interruptedLatch.await(5L, TimeUnit.SECONDS));
+        Assert.assertNull(ViewControllerPrefetch.take(createExtras(token)));
+    }
+
+    private static Bundle prefetch() {
+        Intent intent = TestUtils.createMockIntent(null);
+        Assert.assertTrue(ViewControllerPrefetch.prefetch(PrefetchController.class, intent));
+        return createExtras(captureToken(intent));
+    }
+
+    private static String captureToken(Intent intent) {
+        ArgumentCaptor<String> tokenCaptor = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(intent).putExtra(Mockito.eq(KEY_TOKEN), tokenCaptor.capture());
+        return tokenCaptor.getValue();
+    }
+
+    private static Bundle createExtras(String token) {
+        Bundle extras = TestUtils.createMockBundle(TestUtils.BUNDLE_EXTRAS);
+        Mockito.when(extras.getString(KEY_TOKEN)).thenReturn(token);
+        return extras;
+    }
+
+    private interface PrefetchController extends ViewController {
+    }
+}
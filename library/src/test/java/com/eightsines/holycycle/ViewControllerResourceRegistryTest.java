@@ -0,0 +1,82 @@
+package com.eightsines.holycycle;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ViewControllerResourceRegistryTest {
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerResourceRegistry resourceRegistry;
+    private ViewControllerResourceRegistry.Binding firstBinding;
+    private ViewControllerResourceRegistry.Binding secondBinding;
+
+    @Before
+    public void setUp() {
+        lifecycle = new ViewControllerLifecycle();
+        resourceRegistry = new ViewControllerResourceRegistry(lifecycle);
+        firstBinding = Mockito.mock(ViewControllerResourceRegistry.Binding.class);
+        secondBinding = Mockito.mock(ViewControllerResourceRegistry.Binding.class);
+    }
+
+    @Test
+    public void testBindOrder() {
+        resourceRegistry.add(ViewControllerLifecycle.SPAN_STARTED, firstBinding);
+        resourceRegistry.add(ViewControllerLifecycle.SPAN_STARTED, secondBinding);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+
+        InOrder inOrder = Mockito.inOrder(firstBinding, secondBinding);
+        inOrder.verify(firstBinding).onBind();
+        inOrder.verify(secondBinding).onBind();
+        inOrder.verify(secondBinding).onUnbind();
+        inOrder.verify(firstBinding).onUnbind();
+
+        Mockito.verifyNoMoreInteractions(firstBinding, secondBinding);
+    }
+
+    @Test
+    public void testBindToSpan() {
+        resourceRegistry.add(ViewControllerLifecycle.SPAN_FOCUSED, firstBinding);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        Mockito.verifyNoMoreInteractions(firstBinding);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_FOCUSED);
+        Mockito.verify(firstBinding).onBind();
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_RESUMED);
+        Mockito.verify(firstBinding).onUnbind();
+
+        Mockito.verifyNoMoreInteractions(firstBinding);
+    }
+
+    @Test
+    public void testAddInsideOfSpan() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        resourceRegistry.add(ViewControllerLifecycle.SPAN_STARTED, firstBinding);
+
+        Mockito.verify(firstBinding).onBind();
+        Mockito.verifyNoMoreInteractions(firstBinding);
+    }
+
+    @Test
+    public void testRemove() {
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+        resourceRegistry.add(ViewControllerLifecycle.SPAN_STARTED, firstBinding);
+        resourceRegistry.remove(firstBinding);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+
+        InOrder inOrder = Mockito.inOrder(firstBinding);
+        inOrder.verify(firstBinding).onBind();
+        inOrder.verify(firstBinding).onUnbind();
+
+        Mockito.verifyNoMoreInteractions(firstBinding);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddInvalidSpan() {
+        resourceRegistry.add(ViewControllerLifecycle.SPAN_NONE, firstBinding);
+    }
+}
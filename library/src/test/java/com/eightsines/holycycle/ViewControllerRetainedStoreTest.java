@@ -0,0 +1,71 @@
+package com.eightsines.holycycle;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ViewControllerRetainedStoreTest {
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerRetainedStore retainedStore;
+
+    @Before
+    public void setUp() {
+        lifecycle = new ViewControllerLifecycle();
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+        retainedStore = new ViewControllerRetainedStore(lifecycle, ViewControllerRetainedStoreTest.class, null);
+        ViewControllerRetainedStore.setMaxSize(100);
+    }
+
+    @After
+    public void tearDown() {
+        ViewControllerRetainedStore.setMaxSize(ViewControllerRetainedStore.DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        Object value = new Object();
+        retainedStore.put("value", value, 10);
+
+        Assert.assertSame(value, retainedStore.get("value"));
+        Assert.assertNull(retainedStore.get("other"));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        retainedStore.put("first", "first", 40);
+        retainedStore.put("second", "second", 40);
+        retainedStore.get("first");
+        retainedStore.put("third", "third", 40);
+
+        Assert.assertEquals("first", retainedStore.get("first"));
+        Assert.assertNull(retainedStore.get("second"));
+        Assert.assertEquals("third", retainedStore.get("third"));
+    }
+
+    @Test
+    public void testTooBigValue() {
+        retainedStore.put("value", "value", 101);
+        Assert.assertNull(retainedStore.get("value"));
+    }
+
+    @Test
+    public void testKeepOnRecreation() {
+        retainedStore.put("value", "value", 10);
+
+        lifecycle.setFinishing(false);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+
+        Assert.assertEquals("value", retainedStore.get("value"));
+    }
+
+    @Test
+    public void testClearOnFinish() {
+        retainedStore.put("value", "value", 10);
+
+        lifecycle.setFinishing(true);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+
+        Assert.assertNull(retainedStore.get("value"));
+    }
+}
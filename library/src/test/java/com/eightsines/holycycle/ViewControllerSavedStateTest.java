@@ -0,0 +1,71 @@
+package com.eightsines.holycycle;
+
+import android.os.Bundle;
+import com.eightsines.holycycle.util.TestUtils;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ViewControllerSavedStateTest {
+    private static final String KEY_COUNTER = "com.eightsines.holycycle.ViewControllerSavedState:counter";
+
+    private ViewControllerSavedState savedState;
+    private Bundle savedInstanceState;
+    private Bundle outState;
+
+    @Before
+    public void setUp() {
+        savedState = new ViewControllerSavedState(null);
+        savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+        outState = TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE);
+    }
+
+    @Test
+    public void testInitialValue() {
+        ViewControllerSavedState.Property<Integer> counter = savedState.property("counter", 42);
+        Assert.assertEquals(Integer.valueOf(42), counter.get());
+
+        counter.set(43);
+        Assert.assertEquals(Integer.valueOf(43), counter.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateProperty() {
+        savedState.property("counter", 1);
+        savedState.property("counter", 2);
+    }
+
+    @Test
+    public void testUntouchedPropertyIsSavedWithoutMarshalling() {
+        byte[] bytes = new byte[] { 1, 2, 3 };
+        Mockito.when(savedInstanceState.getByteArray(KEY_COUNTER)).thenReturn(bytes);
+
+        savedState.property("counter", 0);
+        savedState.restore(savedInstanceState);
+        savedState.save(outState);
+
+        // Same bytes are put back, so the value is neither unmarshalled nor marshalled again.
+        Mockito.verify(outState).putByteArray(KEY_COUNTER, bytes);
+    }
+
+    @Test
+    public void testSetAfterRestoreDropsSavedBytes() {
+        Mockito.when(savedInstanceState.getByteArray(KEY_COUNTER)).thenReturn(new byte[] { 1, 2, 3 });
+
+        ViewControllerSavedState.Property<Integer> counter = savedState.property("counter", 0);
+        savedState.restore(savedInstanceState);
+
+        // Value is replaced, so the restored bytes are never unmarshalled.
+        counter.set(42);
+        Assert.assertEquals(Integer.valueOf(42), counter.get());
+    }
+
+    @Test
+    public void testMissingPropertyKeepsInitialValue() {
+        ViewControllerSavedState.Property<Integer> counter = savedState.property("counter", 42);
+        savedState.restore(savedInstanceState);
+
+        Assert.assertEquals(Integer.valueOf(42), counter.get());
+    }
+}
@@ -0,0 +1,263 @@
+package com.eightsines.holycycle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ViewControllerStartupTasksTest {
+    private ViewControllerStartupTasks startupTasks;
+    private List<String> completedTasks;
+
+    @Before
+    public void setUp() {
+        startupTasks = new ViewControllerStartupTasks();
+        completedTasks = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @Test
+    public void testDependencies() {
+        startupTasks.add("c",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_START,
+                createTask("c"),
+                "a",
+                "b");
+
+        startupTasks.add("a",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_START,
+                createTask("a"));
+
+        startupTasks.add("b", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, createTask("b"));
+
+        startupTasks.launch();
+        startupTasks.await(ViewControllerStartupTasks.BARRIER_START);
+
+        Assert.assertEquals(3, completedTasks.size());
+        Assert.assertEquals("c", completedTasks.get(2));
+    }
+
+    @Test
+    public void testMainTaskRunsOnAwaitingThread() {
+        final Thread awaitingThread = Thread.currentThread();
+        final Thread[] taskThread = new Thread[1];
+
+        startupTasks.add("main",
+                ViewControllerStartupTasks.THREAD_MAIN,
+                ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        taskThread[0] = Thread.currentThread();
+                    }
+                });
+
+        startupTasks.launch();
+        startupTasks.await(ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED);
+
+        Assert.assertSame(awaitingThread, taskThread[0]);
+    }
+
+    @Test
+    public void testBarrier() {
+        startupTasks.add("early",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED,
+                createTask("early"));
+
+        startupTasks.add("late", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, createTask("late"));
+
+        startupTasks.launch();
+        startupTasks.await(ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED);
+
+        Assert.assertTrue(completedTasks.contains("early"));
+        Assert.assertFalse(completedTasks.contains("late"));
+
+        startupTasks.await(ViewControllerStartupTasks.BARRIER_START);
+
+        Assert.assertTrue(completedTasks.contains("late"));
+    }
+
+    @Test
+    public void testFailurePropagatesToDependents() {
+        final RuntimeException error = new RuntimeException();
+
+        startupTasks.add("failing",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_START,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        throw error;
+                    }
+                });
+
+        startupTasks.add("dependent",
+                ViewControllerStartupTasks.THREAD_MAIN,
+                ViewControllerStartupTasks.BARRIER_START,
+                createTask("dependent"),
+                "failing");
+
+        startupTasks.launch();
+
+        try {
+            startupTasks.await(ViewControllerStartupTasks.BARRIER_START);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+
+        Assert.assertTrue(completedTasks.isEmpty());
+    }
+
+    @Test
+    public void testQueuedBackgroundTaskRunsOnAwaitingThread() throws InterruptedException {
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+        final Thread awaitingThread = Thread.currentThread();
+        final Thread[] taskThread = new Thread[1];
+
+        // Occupy every thread of the shared pool with unrelated work.
+        for (int i = 0; i < 8; i++) {
+            ViewControllerExecutor.getSharedPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        releaseLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        startupTasks.add("background",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        taskThread[0] = Thread.currentThread();
+                    }
+                });
+
+        try {
+            startupTasks.launch();
+            startupTasks.await(ViewControllerStartupTasks.BARRIER_CONTENT_VIEW_CREATED);
+        } finally {
+            releaseLatch.countDown();
+        }
+
+        Assert.assertSame(awaitingThread, taskThread[0]);
+    }
+
+    @Test
+    public void testAwaitTimeout() throws InterruptedException {
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        startupTasks.setAwaitTimeout(50L);
+
+        startupTasks.add("stuck",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_START,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        startedLatch.countDown();
+
+                        try {
+                            releaseLatch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+
+        startupTasks.launch();
+        Assert.assertTrue(startedLatch.await(5L, TimeUnit.SECONDS));
+
+        try {
+            startupTasks.await(ViewControllerStartupTasks.BARRIER_START);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        } finally {
+            releaseLatch.countDown();
+        }
+    }
+
+    @Test
+    public void testAwaitWithoutTimeout() throws InterruptedException {
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        startupTasks.add("slow",
+                ViewControllerStartupTasks.THREAD_BACKGROUND,
+                ViewControllerStartupTasks.BARRIER_START,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        startedLatch.countDown();
+
+                        try {
+                            releaseLatch.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+
+        startupTasks.launch();
+        Assert.assertTrue(startedLatch.await(5L, TimeUnit.SECONDS));
+
+        Thread releaseThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                releaseLatch.countDown();
+            }
+        });
+
+        releaseThread.start();
+        startupTasks.await(ViewControllerStartupTasks.BARRIER_START);
+        releaseThread.join();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCyclicDependencies() {
+        startupTasks.add("a", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, createTask("a"), "b");
+        startupTasks.add("b", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, createTask("b"), "a");
+        startupTasks.launch();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownDependency() {
+        startupTasks.add("a", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, createTask("a"), "b");
+        startupTasks.launch();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterLaunch() {
+        startupTasks.launch();
+        startupTasks.add("a", ViewControllerStartupTasks.THREAD_MAIN, ViewControllerStartupTasks.BARRIER_START, createTask("a"));
+    }
+
+    private Runnable createTask(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                completedTasks.add(name);
+            }
+        };
+    }
+}
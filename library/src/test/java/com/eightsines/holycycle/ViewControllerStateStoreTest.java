@@ -0,0 +1,193 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.os.Bundle;
+import com.eightsines.holycycle.util.TestUtils;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class ViewControllerStateStoreTest {
+    private static final String KEY_TOKEN = "com.eightsines.holycycle.ViewControllerStateStore.TOKEN";
+
+    private File dir;
+    private Context context;
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerStateStore stateStore;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("holycycle", "");
+        Assert.assertTrue(dir.delete() && dir.mkdir());
+
+        context = Mockito.mock(Context.class);
+        Mockito.when(context.getApplicationContext()).thenReturn(context);
+        Mockito.when(context.getDir(Mockito.anyString(), Mockito.anyInt())).thenReturn(dir);
+
+        lifecycle = new ViewControllerLifecycle();
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+        stateStore = new ViewControllerStateStore(context, lifecycle);
+    }
+
+    @After
+    public void tearDown() throws ExecutionException, InterruptedException {
+        ViewControllerStateStore.setTtl(ViewControllerStateStore.DEFAULT_TTL_MILLIS);
+        flushDiskExecutor();
+
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                Assert.assertTrue(file.delete());
+            }
+        }
+
+        Assert.assertTrue(dir.delete());
+    }
+
+    @Test
+    public void testPutAndGet() {
+        ArrayList<String> value = new ArrayList<>();
+        value.add("value");
+
+        Bundle savedInstanceState = put("items", value);
+        ViewControllerStateStore restoredStore = createRestoredStore();
+
+        Assert.assertSame(value, restoredStore.get(savedInstanceState, "items"));
+        Assert.assertNull(restoredStore.get(savedInstanceState, "other"));
+    }
+
+    @Test
+    public void testGetWithoutToken() {
+        Assert.assertNull(stateStore.get(null, "items"));
+        Assert.assertNull(stateStore.get(TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE), "items"));
+    }
+
+    @Test
+    public void testGetAfterProcessDeath() throws IOException {
+        String token = UUID.randomUUID().toString();
+        writeValues(token, "items", "value");
+
+        Assert.assertEquals("value", createRestoredStore().get(createSavedInstanceState(token), "items"));
+    }
+
+    @Test
+    public void testPreload() throws IOException, ExecutionException, InterruptedException {
+        String token = UUID.randomUUID().toString();
+        writeValues(token, "items", "value");
+
+        Bundle savedInstanceState = createSavedInstanceState(token);
+        ViewControllerStateStore.preload(context, savedInstanceState);
+        flushDiskExecutor();
+
+        // File is already loaded, so the value is returned even if the file is removed.
+        Assert.assertTrue(new File(dir, token).delete());
+        Assert.assertEquals("value", createRestoredStore().get(savedInstanceState, "items"));
+    }
+
+    @Test
+    public void testExpiredFile() throws IOException, ExecutionException, InterruptedException {
+        ViewControllerStateStore.setTtl(1000L);
+
+        String token = UUID.randomUUID().toString();
+        File file = writeValues(token, "items", "value");
+        Assert.assertTrue(file.setLastModified(System.currentTimeMillis() - 2000L));
+
+        Assert.assertNull(createRestoredStore().get(createSavedInstanceState(token), "items"));
+
+        flushDiskExecutor();
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testExpiredValue() throws InterruptedException {
+        ViewControllerStateStore.setTtl(1L);
+        Bundle savedInstanceState = put("items", "value");
+        Thread.sleep(10L);
+
+        Assert.assertNull(createRestoredStore().get(savedInstanceState, "items"));
+    }
+
+    @Test
+    public void testRemoveWhenFinishing() throws ExecutionException, InterruptedException {
+        Bundle savedInstanceState = put("items", "value");
+        String token = savedInstanceState.getString(KEY_TOKEN);
+
+        flushDiskExecutor();
+        Assert.assertTrue(new File(dir, token).exists());
+
+        lifecycle.setFinishing(true);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+        flushDiskExecutor();
+
+        Assert.assertFalse(new File(dir, token).exists());
+        Assert.assertNull(createRestoredStore().get(savedInstanceState, "items"));
+    }
+
+    @Test
+    public void testKeepOnRecreation() throws ExecutionException, InterruptedException {
+        Bundle savedInstanceState = put("items", "value");
+
+        lifecycle.setFinishing(false);
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_NONE);
+        flushDiskExecutor();
+
+        Assert.assertEquals("value", createRestoredStore().get(savedInstanceState, "items"));
+    }
+
+    private Bundle put(String key, Serializable value) {
+        Bundle outState = TestUtils.createMockBundle(TestUtils.BUNDLE_OUT_STATE);
+        stateStore.put(outState, key, value);
+
+        ArgumentCaptor<String> tokenCaptor = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(outState).putString(Mockito.eq(KEY_TOKEN), tokenCaptor.capture());
+
+        return createSavedInstanceState(tokenCaptor.getValue());
+    }
+
+    private ViewControllerStateStore createRestoredStore() {
+        ViewControllerLifecycle restoredLifecycle = new ViewControllerLifecycle();
+        restoredLifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+        return new ViewControllerStateStore(context, restoredLifecycle);
+    }
+
+    private File writeValues(String token, String key, Serializable value) throws IOException {
+        HashMap<String, Serializable> values = new HashMap<>();
+        values.put(key, value);
+
+        File file = new File(dir, token);
+
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(values);
+        }
+
+        return file;
+    }
+
+    private static Bundle createSavedInstanceState(String token) {
+        Bundle savedInstanceState = TestUtils.createMockBundle(TestUtils.BUNDLE_SAVED_INSTANCE_STATE);
+        Mockito.when(savedInstanceState.getString(KEY_TOKEN)).thenReturn(token);
+        return savedInstanceState;
+    }
+
+    private static void flushDiskExecutor() throws ExecutionException, InterruptedException {
+        // Disk executor is single-threaded, so all previously submitted tasks are completed after this one.
+        ViewControllerStateStore.getDiskExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+}
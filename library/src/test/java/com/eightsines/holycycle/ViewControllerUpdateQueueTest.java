@@ -0,0 +1,159 @@
+package com.eightsines.holycycle;
+
+import android.os.Handler;
+import android.os.Looper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ViewControllerUpdateQueueTest {
+    private ViewControllerLifecycle lifecycle;
+    private Handler mainHandler;
+    private Looper mainLooper;
+    private ViewControllerUpdateQueue.Updater<Integer> updater;
+    private ViewControllerUpdateQueue updateQueue;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        lifecycle = Mockito.mock(ViewControllerLifecycle.class);
+        updater = Mockito.mock(ViewControllerUpdateQueue.Updater.class);
+        mainHandler = Mockito.mock(Handler.class);
+        mainLooper = Mockito.mock(Looper.class);
+
+        Mockito.when(mainHandler.getLooper()).thenReturn(mainLooper);
+        Mockito.when(mainLooper.getThread()).thenReturn(Thread.currentThread());
+
+        updateQueue = new ViewControllerUpdateQueue(lifecycle, mainHandler);
+    }
+
+    @Test
+    public void testObserveLifecycle() {
+        Mockito.verify(lifecycle).addObserver(updateQueue);
+    }
+
+    @Test
+    public void testCoalesceUpdates() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.post("a", 1, updater);
+        updateQueue.post("b", 2, updater);
+        updateQueue.post("a", 3, updater);
+        Mockito.verifyZeroInteractions(updater);
+
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        // Only the latest value is applied, and the replaced key is moved to the end of the queue.
+        InOrder inOrder = Mockito.inOrder(updater);
+        inOrder.verify(updater).onApplyUpdate("b", 2);
+        inOrder.verify(updater).onApplyUpdate("a", 3);
+        Mockito.verifyNoMoreInteractions(updater);
+    }
+
+    @Test
+    public void testApplyOnFrameWhileStarted() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        updateQueue.post("a", 1, updater);
+        updateQueue.post("a", 2, updater);
+        updateQueue.post("b", 3, updater);
+
+        // Update is applied on the next frame, not in place, and only one frame is scheduled.
+        Mockito.verifyZeroInteractions(updater);
+        captureFrame().run();
+
+        InOrder inOrder = Mockito.inOrder(updater);
+        inOrder.verify(updater).onApplyUpdate("a", 2);
+        inOrder.verify(updater).onApplyUpdate("b", 3);
+        Mockito.verifyNoMoreInteractions(updater);
+
+        // Next update schedules the next frame.
+        updateQueue.post("a", 4, updater);
+        Mockito.verify(mainHandler, Mockito.times(2)).post(Mockito.any(Runnable.class));
+    }
+
+    @Test
+    public void testScheduleFrameFromBackgroundThread() {
+        Mockito.when(mainLooper.getThread()).thenReturn(null);
+
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        updateQueue.post("a", 1, updater);
+
+        // Posted from the background thread, so the frame is scheduled from the main thread first.
+        captureFrame().run();
+        Mockito.verifyZeroInteractions(updater);
+
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(mainHandler, Mockito.times(2)).post(captor.capture());
+        captor.getAllValues().get(1).run();
+
+        Mockito.verify(updater).onApplyUpdate("a", 1);
+    }
+
+    @Test
+    public void testCancelFrameOnStop() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        updateQueue.post("a", 1, updater);
+
+        Runnable frame = captureFrame();
+        updateQueue.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        Mockito.verify(mainHandler).removeCallbacks(frame);
+
+        // Even if the frame is already running, nothing is applied while stopped.
+        frame.run();
+        Mockito.verifyZeroInteractions(updater);
+    }
+
+    @Test
+    public void testKeepUpdatesWhileStopped() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        updateQueue.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        updateQueue.post("a", 1, updater);
+        Mockito.verifyZeroInteractions(updater);
+
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        Mockito.verify(updater).onApplyUpdate("a", 1);
+    }
+
+    @Test
+    public void testRemove() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.post("a", 1, updater);
+        updateQueue.post("b", 2, updater);
+        updateQueue.remove("a");
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        Mockito.verify(updater).onApplyUpdate("b", 2);
+        Mockito.verifyNoMoreInteractions(updater);
+    }
+
+    @Test
+    public void testDropUpdatesOnDestroy() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.post("a", 1, updater);
+        updateQueue.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        Mockito.verifyZeroInteractions(updater);
+    }
+
+    @Test
+    public void testApplyNullValue() {
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        updateQueue.post("a", null, updater);
+        updateQueue.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        Mockito.verify(updater).onApplyUpdate("a", null);
+    }
+
+    private Runnable captureFrame() {
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(mainHandler).post(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,97 @@
+package com.eightsines.holycycle;
+
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ViewControllerUserDataWriterTest {
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerUserDataWriter userDataWriter;
+    private List<String> writtenSnapshots;
+
+    private ViewControllerUserDataWriter.Writer<String> writer = new ViewControllerUserDataWriter.Writer<String>() {
+        @Override
+        public void onWriteUserData(@NonNull String key, @NonNull String snapshot) {
+            writtenSnapshots.add(key + "=" + snapshot);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        lifecycle = new ViewControllerLifecycle();
+        userDataWriter = new ViewControllerUserDataWriter(lifecycle);
+        writtenSnapshots = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @Test
+    public void testFlush() {
+        userDataWriter.put("a", "1", writer);
+        userDataWriter.put("b", "2", writer);
+        userDataWriter.flush();
+
+        Assert.assertEquals(2, writtenSnapshots.size());
+        Assert.assertEquals("a=1", writtenSnapshots.get(0));
+        Assert.assertEquals("b=2", writtenSnapshots.get(1));
+    }
+
+    @Test
+    public void testCoalesceSameKey() throws InterruptedException {
+        final CountDownLatch startedLatch = new CountDownLatch(1);
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        userDataWriter.put("blocker", "0", new ViewControllerUserDataWriter.Writer<String>() {
+            @Override
+            public void onWriteUserData(@NonNull String key, @NonNull String snapshot) {
+                startedLatch.countDown();
+
+                try {
+                    releaseLatch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        startedLatch.await();
+
+        userDataWriter.put("a", "1", writer);
+        userDataWriter.put("a", "2", writer);
+        userDataWriter.put("a", "3", writer);
+
+        releaseLatch.countDown();
+        userDataWriter.flush();
+
+        Assert.assertEquals(1, writtenSnapshots.size());
+        Assert.assertEquals("a=3", writtenSnapshots.get(0));
+    }
+
+    @Test
+    public void testFlushOnStop() {
+        final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_STARTED);
+
+        userDataWriter.put("a", "1", new ViewControllerUserDataWriter.Writer<String>() {
+            @Override
+            public void onWriteUserData(@NonNull String key, @NonNull String snapshot) {
+                try {
+                    releaseLatch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+
+                writtenSnapshots.add(key + "=" + snapshot);
+            }
+        });
+
+        releaseLatch.countDown();
+        lifecycle.moveTo(ViewControllerLifecycle.SPAN_CREATED);
+
+        Assert.assertEquals(1, writtenSnapshots.size());
+    }
+}
@@ -0,0 +1,129 @@
+package com.eightsines.holycycle;
+
+import android.content.Context;
+import android.os.MessageQueue;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class ViewControllerWarmUpTest {
+    // Accessing a static field of the target itself would initialize it, so the flag is kept here.
+    private static boolean isTargetInitialized;
+
+    private Context context;
+    private LayoutInflater clonedInflater;
+    private List<Throwable> errors;
+    private ViewControllerWarmUp warmUp;
+
+    @Before
+    public void setUp() {
+        context = Mockito.mock(Context.class);
+        LayoutInflater inflater = Mockito.mock(LayoutInflater.class);
+        clonedInflater = Mockito.mock(LayoutInflater.class);
+        errors = new ArrayList<>();
+
+        Mockito.when(context.getApplicationContext()).thenReturn(context);
+        Mockito.when(context.getClassLoader()).thenReturn(ViewControllerWarmUpTest.class.getClassLoader());
+        Mockito.when(context.getSystemService(Context.LAYOUT_INFLATER_SERVICE)).thenReturn(inflater);
+        Mockito.when(inflater.cloneInContext(context)).thenReturn(clonedInflater);
+
+        warmUp = new ViewControllerWarmUp(context) {
+            @Override
+            void onWarmUpError(String message, Throwable error) {
+                errors.add(error);
+            }
+        };
+    }
+
+    @Test
+    public void testInitializeClass() {
+        warmUp.warmUp(WarmUpTarget.class.getName(), 0);
+
+        Assert.assertTrue(isTargetInitialized);
+        Assert.assertTrue(errors.isEmpty());
+        Mockito.verifyZeroInteractions(clonedInflater);
+    }
+
+    @Test
+    public void testInflateLayout() {
+        warmUp.warmUp(ViewControllerWarmUpTest.class.getName(), 1);
+
+        Mockito.verify(clonedInflater).inflate(Mockito.eq(1), Mockito.any(ViewGroup.class), Mockito.eq(false));
+        Assert.assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void testMissingClass() {
+        warmUp.warmUp("com.example.MissingController", 1);
+
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0) instanceof ClassNotFoundException);
+
+        // Layout is inflated anyway.
+        Mockito.verify(clonedInflater).inflate(Mockito.eq(1), Mockito.any(ViewGroup.class), Mockito.eq(false));
+    }
+
+    @Test
+    public void testLinkageErrorWhileInflating() {
+        NoClassDefFoundError error = new NoClassDefFoundError();
+
+        Mockito.when(clonedInflater.inflate(Mockito.eq(1), Mockito.any(ViewGroup.class), Mockito.eq(false)))
+                .thenThrow(error);
+
+        warmUp.warmUp(ViewControllerWarmUpTest.class.getName(), 1);
+
+        Assert.assertEquals(1, errors.size());
+        Assert.assertSame(error, errors.get(0));
+    }
+
+    @Test
+    public void testRuntimeExceptionWhileInflating() {
+        RuntimeException exception = new RuntimeException();
+
+        Mockito.when(clonedInflater.inflate(Mockito.eq(1), Mockito.any(ViewGroup.class), Mockito.eq(false)))
+                .thenThrow(exception);
+
+        warmUp.warmUp(ViewControllerWarmUpTest.class.getName(), 1);
+
+        Assert.assertEquals(1, errors.size());
+        Assert.assertSame(exception, errors.get(0));
+    }
+
+    @Test
+    public void testCancelBeforeIdle() {
+        MessageQueue messageQueue = Mockito.mock(MessageQueue.class);
+        warmUp.messageQueue = messageQueue;
+
+        warmUp.add(WarmUpTarget.class.getName(), 1).start();
+
+        ArgumentCaptor<MessageQueue.IdleHandler> captor = ArgumentCaptor.forClass(MessageQueue.IdleHandler.class);
+        Mockito.verify(messageQueue).addIdleHandler(captor.capture());
+
+        warmUp.cancel();
+        Mockito.verify(messageQueue).removeIdleHandler(captor.getValue());
+
+        // Thread is not started, so nothing is inflated.
+        Assert.assertFalse(captor.getValue().queueIdle());
+        Mockito.verifyZeroInteractions(clonedInflater);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartTwice() {
+        warmUp.messageQueue = Mockito.mock(MessageQueue.class);
+
+        warmUp.start();
+        warmUp.start();
+    }
+
+    private static class WarmUpTarget {
+        static {
+            isTargetInitialized = true;
+        }
+    }
+}
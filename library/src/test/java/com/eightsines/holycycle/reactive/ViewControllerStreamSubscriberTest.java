@@ -0,0 +1,168 @@
+package com.eightsines.holycycle.reactive;
+
+import android.os.Handler;
+import com.eightsines.holycycle.ViewControllerLifecycle;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.reactivestreams.Subscription;
+
+public class ViewControllerStreamSubscriberTest {
+    private ViewControllerLifecycle lifecycle;
+    private ViewControllerStreamSubscriber.Receiver<String> receiver;
+    private Subscription subscription;
+    private Handler mainHandler;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        lifecycle = Mockito.mock(ViewControllerLifecycle.class);
+        receiver = Mockito.mock(ViewControllerStreamSubscriber.Receiver.class);
+        subscription = Mockito.mock(Subscription.class);
+        mainHandler = Mockito.mock(Handler.class);
+
+        Mockito.when(lifecycle.getSpan()).thenReturn(ViewControllerLifecycle.SPAN_CREATED);
+
+        // Run posted signals in place, as if they were sent from the main thread.
+        Mockito.when(mainHandler.post(Mockito.any(Runnable.class))).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                ((Runnable)invocation.getArgument(0)).run();
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void testRequestOnlyWhileActive() {
+        ViewControllerStreamSubscriber<String> subscriber = createSubscriber(
+                ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST);
+
+        Mockito.verify(lifecycle).addObserver(subscriber);
+
+        subscriber.onSubscribe(subscription);
+        Mockito.verify(subscription, Mockito.never()).request(Mockito.anyLong());
+
+        subscriber.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        Mockito.verify(subscription).request(1L);
+
+        subscriber.onNext("a");
+        Mockito.verify(receiver).onStreamItem("a");
+        Mockito.verify(subscription, Mockito.times(2)).request(1L);
+    }
+
+    @Test
+    public void testKeepLatestWhilePaused() {
+        ViewControllerStreamSubscriber<String> subscriber = createActiveSubscriber(
+                ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST);
+
+        subscriber.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        subscriber.onNext("a");
+
+        // Nothing is requested while paused, so at most one item is kept.
+        Mockito.verifyZeroInteractions(receiver);
+        Mockito.verify(subscription, Mockito.times(1)).request(1L);
+
+        subscriber.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        Mockito.verify(receiver).onStreamItem("a");
+        Mockito.verify(subscription, Mockito.times(2)).request(1L);
+    }
+
+    @Test
+    public void testDropAllWhilePaused() {
+        ViewControllerStreamSubscriber<String> subscriber = createActiveSubscriber(
+                ViewControllerStreamSubscriber.PAUSE_POLICY_DROP_ALL);
+
+        subscriber.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        subscriber.onNext("a");
+        subscriber.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        Mockito.verify(receiver, Mockito.never()).onStreamItem(Mockito.anyString());
+        Mockito.verify(subscription, Mockito.times(2)).request(1L);
+    }
+
+    @Test
+    public void testDeliverTerminalAfterResume() {
+        ViewControllerStreamSubscriber<String> subscriber = createActiveSubscriber(
+                ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST);
+
+        Throwable error = new RuntimeException();
+
+        subscriber.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        subscriber.onNext("a");
+        subscriber.onError(error);
+        Mockito.verifyZeroInteractions(receiver);
+
+        subscriber.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+
+        InOrder inOrder = Mockito.inOrder(receiver);
+        inOrder.verify(receiver).onStreamItem("a");
+        inOrder.verify(receiver).onStreamError(error);
+        Mockito.verify(lifecycle).removeObserver(subscriber);
+    }
+
+    @Test
+    public void testCancelOnDestroy() {
+        ViewControllerStreamSubscriber<String> subscriber = createActiveSubscriber(
+                ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST);
+
+        subscriber.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        subscriber.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+
+        Mockito.verify(subscription).cancel();
+        Mockito.verify(lifecycle).removeObserver(subscriber);
+
+        subscriber.onNext("a");
+        subscriber.onComplete();
+        Mockito.verifyZeroInteractions(receiver);
+    }
+
+    @Test
+    public void testCancelSecondSubscription() {
+        ViewControllerStreamSubscriber<String> subscriber = createActiveSubscriber(
+                ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST);
+
+        Subscription secondSubscription = Mockito.mock(Subscription.class);
+        subscriber.onSubscribe(secondSubscription);
+
+        Mockito.verify(secondSubscription).cancel();
+        Mockito.verify(secondSubscription, Mockito.never()).request(Mockito.anyLong());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidActiveSpan() {
+        new ViewControllerStreamSubscriber<>(lifecycle,
+                ViewControllerLifecycle.SPAN_NONE,
+                ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST,
+                receiver,
+                mainHandler);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCreateOutsideOfLifecycle() {
+        Mockito.when(lifecycle.getSpan()).thenReturn(ViewControllerLifecycle.SPAN_NONE);
+        createSubscriber(ViewControllerStreamSubscriber.PAUSE_POLICY_KEEP_LATEST);
+    }
+
+    private ViewControllerStreamSubscriber<String> createActiveSubscriber(int pausePolicy) {
+        ViewControllerStreamSubscriber<String> subscriber = createSubscriber(pausePolicy);
+
+        subscriber.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        subscriber.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        subscriber.onSubscribe(subscription);
+
+        Mockito.verify(subscription).request(1L);
+        return subscriber;
+    }
+
+    private ViewControllerStreamSubscriber<String> createSubscriber(int pausePolicy) {
+        return new ViewControllerStreamSubscriber<>(lifecycle,
+                ViewControllerLifecycle.SPAN_STARTED,
+                pausePolicy,
+                receiver,
+                mainHandler);
+    }
+}
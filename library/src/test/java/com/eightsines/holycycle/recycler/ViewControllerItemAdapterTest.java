@@ -0,0 +1,127 @@
+package com.eightsines.holycycle.recycler;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import com.eightsines.holycycle.ViewControllerLifecycle;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class ViewControllerItemAdapterTest {
+    private static class TestItem extends ViewControllerItem<String> {
+        @Override
+        public int onItemGetContentLayoutId() {
+            return 0;
+        }
+    }
+
+    private ViewControllerLifecycle lifecycle;
+    private RecyclerView recyclerView;
+    private ViewControllerItemAdapter<String> adapter;
+    private ViewControllerItem<String> itemController;
+    private ViewControllerItemAdapter.ItemHolder<String> holder;
+
+    @Before
+    public void setUp() {
+        lifecycle = Mockito.mock(ViewControllerLifecycle.class);
+        recyclerView = Mockito.mock(RecyclerView.class);
+        itemController = Mockito.spy(new TestItem());
+        itemController.view = Mockito.mock(View.class);
+        holder = new ViewControllerItemAdapter.ItemHolder<>(itemController);
+
+        Mockito.when(lifecycle.getSpan()).thenReturn(ViewControllerLifecycle.SPAN_CREATED);
+
+        adapter = new ViewControllerItemAdapter<String>(lifecycle) {
+            @Override
+            protected ViewControllerItem<String> onCreateItemController(int viewType) {
+                return itemController;
+            }
+
+            @Override
+            public String getItem(int position) {
+                return "item";
+            }
+
+            @Override
+            public int getItemCount() {
+                return 1;
+            }
+        };
+    }
+
+    @Test
+    public void testObserveWhileAttachedToRecyclerView() {
+        Mockito.verify(lifecycle, Mockito.never()).addObserver(adapter);
+
+        adapter.onAttachedToRecyclerView(recyclerView);
+        adapter.onAttachedToRecyclerView(Mockito.mock(RecyclerView.class));
+        Mockito.verify(lifecycle, Mockito.times(1)).addObserver(adapter);
+
+        adapter.onDetachedFromRecyclerView(recyclerView);
+        Mockito.verify(lifecycle, Mockito.never()).removeObserver(adapter);
+
+        adapter.onDetachedFromRecyclerView(recyclerView);
+        Mockito.verify(lifecycle).removeObserver(adapter);
+    }
+
+    @Test
+    public void testVisibleOnlyInsideActiveSpan() {
+        adapter.onAttachedToRecyclerView(recyclerView);
+        adapter.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        adapter.onBindViewHolder(holder, 0);
+        adapter.onViewAttachedToWindow(holder);
+        Assert.assertFalse(itemController.isVisible());
+
+        adapter.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        Assert.assertTrue(itemController.isVisible());
+
+        adapter.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        Assert.assertFalse(itemController.isVisible());
+
+        InOrder inOrder = Mockito.inOrder(itemController);
+        inOrder.verify(itemController).onItemBind("item");
+        inOrder.verify(itemController).onItemVisible();
+        inOrder.verify(itemController).onItemInvisible();
+    }
+
+    @Test
+    public void testRecycleBoundItemsOnDetach() {
+        performBindVisible();
+        adapter.onDetachedFromRecyclerView(recyclerView);
+
+        InOrder inOrder = Mockito.inOrder(itemController);
+        inOrder.verify(itemController).onItemInvisible();
+        inOrder.verify(itemController).onItemRecycle();
+        Assert.assertNull(itemController.getItem());
+
+        // Holder is already released, so it is not recycled twice.
+        adapter.onViewRecycled(holder);
+        Mockito.verify(itemController, Mockito.times(1)).onItemRecycle();
+    }
+
+    @Test
+    public void testRecycleBoundItemsOnHostDestroy() {
+        performBindVisible();
+        adapter.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_STARTED);
+        adapter.onLifecycleSpanExit(ViewControllerLifecycle.SPAN_CREATED);
+
+        InOrder inOrder = Mockito.inOrder(itemController);
+        inOrder.verify(itemController).onItemInvisible();
+        inOrder.verify(itemController).onItemRecycle();
+        Mockito.verify(lifecycle).removeObserver(adapter);
+        Assert.assertNull(itemController.getItem());
+    }
+
+    private void performBindVisible() {
+        adapter.onAttachedToRecyclerView(recyclerView);
+        adapter.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_CREATED);
+        adapter.onLifecycleSpanEnter(ViewControllerLifecycle.SPAN_STARTED);
+        adapter.onBindViewHolder(holder, 0);
+        adapter.onViewAttachedToWindow(holder);
+
+        Mockito.verify(itemController).onItemVisible();
+        Assert.assertEquals("item", itemController.getItem());
+    }
+}
@@ -0,0 +1,533 @@
+package com.eightsines.holycycle.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates {@code <ViewControllerClass>$$StateCodec} for view controllers with fields marked
+ * with {@code @ViewControllerInstanceState}. Generated code accesses fields directly, and packs primitive fields
+ * into one byte array, so there is neither reflection nor boxing at runtime.
+ */
+@SupportedAnnotationTypes(ViewControllerStateProcessor.ANNOTATION_NAME)
+public class ViewControllerStateProcessor extends AbstractProcessor {
+    static final String ANNOTATION_NAME = "com.eightsines.holycycle.ViewControllerInstanceState";
+
+    private static final String CODEC_SUFFIX = "$$StateCodec";
+    private static final String CODEC_INTERFACE_NAME = "com.eightsines.holycycle.ViewControllerStateCodec";
+    private static final String PRIMITIVES_KEY_SUFFIX = "#primitives";
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+
+        TypeElement annotation = elements.getTypeElement(ANNOTATION_NAME);
+        Map<TypeElement, List<VariableElement>> fieldsByClass = new LinkedHashMap<>();
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+
+            VariableElement field = (VariableElement)element;
+            TypeElement classElement = (TypeElement)field.getEnclosingElement();
+
+            if (!isValidField(field) || !isValidClass(classElement, field)) {
+                continue;
+            }
+
+            List<VariableElement> fields = fieldsByClass.get(classElement);
+
+            if (fields == null) {
+                fields = new ArrayList<>();
+                fieldsByClass.put(classElement, fields);
+            }
+
+            fields.add(field);
+        }
+
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : fieldsByClass.entrySet()) {
+            generateCodec(entry.getKey(), entry.getValue());
+        }
+
+        return true;
+    }
+
+    private boolean isValidField(VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+
+        if (modifiers.contains(Modifier.PRIVATE)
+                || modifiers.contains(Modifier.FINAL)
+                || modifiers.contains(Modifier.STATIC)) {
+
+            error(field, "Fields marked with @ViewControllerInstanceState must not be private, final, or static.");
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean isValidClass(TypeElement classElement, VariableElement field) {
+        for (Element element = classElement;
+                !(element instanceof PackageElement);
+                element = element.getEnclosingElement()) {
+
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                error(field, "Class with fields marked with @ViewControllerInstanceState must not be private.");
+                return false;
+            }
+
+            if (!(element.getEnclosingElement() instanceof PackageElement)
+                    && !element.getModifiers().contains(Modifier.STATIC)) {
+
+                error(field, "Class with fields marked with @ViewControllerInstanceState must not be inner (non-static).");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void generateCodec(TypeElement classElement, List<VariableElement> fields) {
+        String packageName = elements.getPackageOf(classElement).getQualifiedName().toString();
+        String binaryName = getBinaryName(classElement);
+        String codecName = binaryName + CODEC_SUFFIX;
+        String keyPrefix = (packageName.isEmpty() ? "" : packageName + ".") + binaryName;
+
+        TypeElement superclassElement = findSuperclassWithFields(classElement);
+        String classReference = classElement.getQualifiedName().toString();
+
+        if (!classElement.getTypeParameters().isEmpty()) {
+            classReference += "<" + repeat("?", ", ", classElement.getTypeParameters().size()) + ">";
+        }
+
+        List<VariableElement> primitiveFields = new ArrayList<>();
+        List<FieldCode> fieldCodes = new ArrayList<>();
+        int primitivesSize = 0;
+
+        for (VariableElement field : fields) {
+            TypeMirror type = field.asType();
+
+            if (type.getKind().isPrimitive()) {
+                primitiveFields.add(field);
+                primitivesSize += getPrimitiveSize(type.getKind());
+                continue;
+            }
+
+            FieldCode fieldCode = createFieldCode(field, keyPrefix + ":" + field.getSimpleName());
+
+            if (fieldCode == null) {
+                error(field, "Type " + type + " is not supported by @ViewControllerInstanceState.");
+                return;
+            }
+
+            fieldCodes.add(fieldCode);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by holycycle-processor. Do not modify!\n");
+
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n");
+        }
+
+        sb.append("\n");
+        sb.append("import android.os.Bundle;\n");
+        sb.append("import java.nio.ByteBuffer;\n");
+        sb.append("\n");
+        sb.append("public class ").append(codecName).append("<T extends ").append(classReference).append(">");
+
+        if (superclassElement == null) {
+            sb.append(" implements ").append(CODEC_INTERFACE_NAME).append("<T> {\n");
+        } else {
+            String superclassPackageName = elements.getPackageOf(superclassElement).getQualifiedName().toString();
+
+            sb.append(" extends ")
+                    .append(superclassPackageName.isEmpty() ? "" : superclassPackageName + ".")
+                    .append(getBinaryName(superclassElement))
+                    .append(CODEC_SUFFIX)
+                    .append("<T> {\n");
+        }
+
+        // Save.
+        sb.append("    @Override\n");
+        sb.append("    public void save(T controller, Bundle outState) {\n");
+
+        if (superclassElement != null) {
+            sb.append("        super.save(controller, outState);\n");
+        }
+
+        if (!primitiveFields.isEmpty()) {
+            sb.append("        ByteBuffer primitives = ByteBuffer.allocate(").append(primitivesSize).append(");\n");
+
+            for (VariableElement field : primitiveFields) {
+                sb.append("        primitives.").append(getPrimitiveWrite(field)).append(";\n");
+            }
+
+            sb.append("        outState.putByteArray(\"")
+                    .append(keyPrefix)
+                    .append(PRIMITIVES_KEY_SUFFIX)
+                    .append("\", primitives.array());\n");
+        }
+
+        for (FieldCode fieldCode : fieldCodes) {
+            sb.append("        outState.").append(fieldCode.save).append(";\n");
+        }
+
+        sb.append("    }\n");
+        sb.append("\n");
+
+        // Restore.
+        sb.append("    @SuppressWarnings(\"unchecked\")\n");
+        sb.append("    @Override\n");
+        sb.append("    public void restore(T controller, Bundle savedInstanceState) {\n");
+
+        if (superclassElement != null) {
+            sb.append("        super.restore(controller, savedInstanceState);\n");
+        }
+
+        if (!primitiveFields.isEmpty()) {
+            sb.append("        byte[] primitivesBytes = savedInstanceState.getByteArray(\"")
+                    .append(keyPrefix)
+                    .append(PRIMITIVES_KEY_SUFFIX)
+                    .append("\");\n");
+
+            sb.append("\n");
+            sb.append("        if (primitivesBytes != null && primitivesBytes.length == ").append(primitivesSize).append(") {\n");
+            sb.append("            ByteBuffer primitives = ByteBuffer.wrap(primitivesBytes);\n");
+
+            for (VariableElement field : primitiveFields) {
+                sb.append("            controller.")
+                        .append(field.getSimpleName())
+                        .append(" = ")
+                        .append(getPrimitiveRead(field))
+                        .append(";\n");
+            }
+
+            sb.append("        }\n");
+        }
+
+        for (FieldCode fieldCode : fieldCodes) {
+            sb.append("\n");
+            sb.append("        if (savedInstanceState.containsKey(\"").append(fieldCode.key).append("\")) {\n");
+            sb.append("            controller.").append(fieldCode.name).append(" = ").append(fieldCode.restore).append(";\n");
+            sb.append("        }\n");
+        }
+
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        String qualifiedCodecName = (packageName.isEmpty() ? "" : packageName + ".") + codecName;
+
+        try {
+            Writer writer = processingEnv.getFiler().createSourceFile(qualifiedCodecName, classElement).openWriter();
+
+            try {
+                writer.write(sb.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(classElement, "Unable to write " + qualifiedCodecName + ": " + e.getMessage());
+        }
+    }
+
+    private FieldCode createFieldCode(VariableElement field, String key) {
+        TypeMirror type = field.asType();
+        String name = field.getSimpleName().toString();
+        String value = "controller." + name;
+        String quotedKey = "\"" + key + "\"";
+
+        if (type.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType)type).getComponentType();
+            String method = null;
+
+            if (componentType.getKind().isPrimitive()) {
+                method = capitalize(componentType.getKind().name().toLowerCase()) + "Array";
+            } else if (isSameType(componentType, "java.lang.String")) {
+                method = "StringArray";
+            } else if (isSameType(componentType, "java.lang.CharSequence")) {
+                method = "CharSequenceArray";
+            }
+
+            if (method == null) {
+                // Every array is Serializable, but arrays of arbitrary objects fail at save time.
+                return null;
+            }
+
+            return new FieldCode(name,
+                    key,
+                    "put" + method + "(" + quotedKey + ", " + value + ")",
+                    "savedInstanceState.get" + method + "(" + quotedKey + ")");
+        } else if (type.getKind() == TypeKind.DECLARED) {
+            if (isSameType(type, "java.lang.String")) {
+                return createSimpleFieldCode(name, key, "String");
+            }
+
+            if (isSameType(type, "android.os.Bundle")) {
+                return createSimpleFieldCode(name, key, "Bundle");
+            }
+
+            if (isAssignable(type, "android.os.Parcelable")) {
+                return createSimpleFieldCode(name, key, "Parcelable");
+            }
+
+            if (isSameType(type, "java.lang.CharSequence")) {
+                return createSimpleFieldCode(name, key, "CharSequence");
+            }
+
+            if (isAssignable(type, "java.lang.CharSequence")) {
+                return new FieldCode(name,
+                        key,
+                        "putCharSequence(" + quotedKey + ", " + value + ")",
+                        "(" + type + ")savedInstanceState.getCharSequence(" + quotedKey + ")");
+            }
+
+            String arrayListMethod = getArrayListMethod((DeclaredType)type);
+
+            if (arrayListMethod != null) {
+                return createSimpleFieldCode(name, key, arrayListMethod);
+            }
+        }
+
+        if (isAssignable(type, "java.io.Serializable")) {
+            return new FieldCode(name,
+                    key,
+                    "putSerializable(" + quotedKey + ", " + value + ")",
+                    "(" + getCastType(type) + ")savedInstanceState.getSerializable(" + quotedKey + ")");
+        }
+
+        return null;
+    }
+
+    private FieldCode createSimpleFieldCode(String name, String key, String method) {
+        String quotedKey = "\"" + key + "\"";
+
+        return new FieldCode(name,
+                key,
+                "put" + method + "(" + quotedKey + ", controller." + name + ")",
+                "savedInstanceState.get" + method + "(" + quotedKey + ")");
+    }
+
+    private String getArrayListMethod(DeclaredType type) {
+        if (!isSameType(types.erasure(type), "java.util.ArrayList") || type.getTypeArguments().size() != 1) {
+            return null;
+        }
+
+        TypeMirror argumentType = type.getTypeArguments().get(0);
+
+        if (argumentType.getKind() == TypeKind.WILDCARD) {
+            return null;
+        }
+
+        if (isSameType(argumentType, "java.lang.String")) {
+            return "StringArrayList";
+        }
+
+        if (isSameType(argumentType, "java.lang.Integer")) {
+            return "IntegerArrayList";
+        }
+
+        if (isAssignable(argumentType, "android.os.Parcelable")) {
+            return "ParcelableArrayList";
+        }
+
+        return null;
+    }
+
+    private String getCastType(TypeMirror type) {
+        // Type variables of the view controller class are not available in the codec.
+        return (hasTypeVariables(type) ? types.erasure(type) : type).toString();
+    }
+
+    private boolean hasTypeVariables(TypeMirror type) {
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            return true;
+        }
+
+        if (type.getKind() == TypeKind.ARRAY) {
+            return hasTypeVariables(((ArrayType)type).getComponentType());
+        }
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            for (TypeMirror argumentType : ((DeclaredType)type).getTypeArguments()) {
+                if (hasTypeVariables(argumentType)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private TypeElement findSuperclassWithFields(TypeElement classElement) {
+        TypeMirror superclassType = classElement.getSuperclass();
+
+        while (superclassType.getKind() == TypeKind.DECLARED) {
+            TypeElement superclassElement = (TypeElement)types.asElement(superclassType);
+
+            for (Element element : superclassElement.getEnclosedElements()) {
+                if (element.getKind() == ElementKind.FIELD && hasAnnotation(element)) {
+                    return superclassElement;
+                }
+            }
+
+            superclassType = superclassElement.getSuperclass();
+        }
+
+        return null;
+    }
+
+    private boolean hasAnnotation(Element element) {
+        for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            TypeElement annotationElement = (TypeElement)annotationMirror.getAnnotationType().asElement();
+
+            if (annotationElement.getQualifiedName().contentEquals(ANNOTATION_NAME)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isSameType(TypeMirror type, String className) {
+        TypeElement element = elements.getTypeElement(className);
+        return element != null && types.isSameType(type, types.erasure(element.asType()));
+    }
+
+    private boolean isAssignable(TypeMirror type, String className) {
+        TypeElement element = elements.getTypeElement(className);
+        return element != null && types.isAssignable(type, types.erasure(element.asType()));
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String getBinaryName(TypeElement classElement) {
+        String name = classElement.getSimpleName().toString();
+
+        for (Element element = classElement.getEnclosingElement();
+                !(element instanceof PackageElement);
+                element = element.getEnclosingElement()) {
+
+            name = element.getSimpleName() + "$" + name;
+        }
+
+        return name;
+    }
+
+    private static int getPrimitiveSize(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+
+            case CHAR:
+            case SHORT:
+                return 2;
+
+            case INT:
+            case FLOAT:
+                return 4;
+
+            default:
+                return 8;
+        }
+    }
+
+    private static String getPrimitiveWrite(VariableElement field) {
+        String value = "controller." + field.getSimpleName();
+
+        switch (field.asType().getKind()) {
+            case BOOLEAN:
+                return "put((byte)(" + value + " ? 1 : 0))";
+
+            case BYTE:
+                return "put(" + value + ")";
+
+            default:
+                return "put" + capitalize(field.asType().getKind().name().toLowerCase()) + "(" + value + ")";
+        }
+    }
+
+    private static String getPrimitiveRead(VariableElement field) {
+        switch (field.asType().getKind()) {
+            case BOOLEAN:
+                return "primitives.get() != 0";
+
+            case BYTE:
+                return "primitives.get()";
+
+            default:
+                return "primitives.get" + capitalize(field.asType().getKind().name().toLowerCase()) + "()";
+        }
+    }
+
+    private static String capitalize(String value) {
+        return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+    }
+
+    private static String repeat(String value, String separator, int count) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            if (i != 0) {
+                sb.append(separator);
+            }
+
+            sb.append(value);
+        }
+
+        return sb.toString();
+    }
+
+    private static class FieldCode {
+        private String name;
+        private String key;
+        private String save;
+        private String restore;
+
+        FieldCode(String name, String key, String save, String restore) {
+            this.name = name;
+            this.key = key;
+            this.save = save;
+            this.restore = restore;
+        }
+    }
+}
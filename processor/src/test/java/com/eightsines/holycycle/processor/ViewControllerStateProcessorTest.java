@@ -0,0 +1,291 @@
+package com.eightsines.holycycle.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ViewControllerStateProcessorTest {
+    // Minimal versions of the library and framework classes, which are referenced by the generated code.
+    private static final JavaFileObject[] SUPPORT_SOURCES = {
+            source("android.os.Parcelable", "package android.os; public interface Parcelable {}"),
+            source("android.os.Bundle",
+                    "package android.os;\n"
+                            + "public final class Bundle {\n"
+                            + "    public boolean containsKey(String key) { return false; }\n"
+                            + "    public void putByteArray(String key, byte[] value) {}\n"
+                            + "    public byte[] getByteArray(String key) { return null; }\n"
+                            + "    public void putString(String key, String value) {}\n"
+                            + "    public String getString(String key) { return null; }\n"
+                            + "    public void putSerializable(String key, java.io.Serializable value) {}\n"
+                            + "    public java.io.Serializable getSerializable(String key) { return null; }\n"
+                            + "    public void putStringArray(String key, String[] value) {}\n"
+                            + "    public String[] getStringArray(String key) { return null; }\n"
+                            + "}"),
+            source("com.eightsines.holycycle.ViewControllerInstanceState",
+                    "package com.eightsines.holycycle;\n"
+                            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.CLASS)\n"
+                            + "@java.lang.annotation.Target(java.lang.annotation.ElementType.FIELD)\n"
+                            + "public @interface ViewControllerInstanceState {}"),
+            source("com.eightsines.holycycle.ViewControllerStateCodec",
+                    "package com.eightsines.holycycle;\n"
+                            + "public interface ViewControllerStateCodec<T> {\n"
+                            + "    void save(T controller, android.os.Bundle outState);\n"
+                            + "    void restore(T controller, android.os.Bundle savedInstanceState);\n"
+                            + "}"),
+    };
+
+    private File outputDir;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = Files.createTempDirectory("holycycle-processor").toFile();
+        diagnostics = new DiagnosticCollector<>();
+    }
+
+    @After
+    public void tearDown() {
+        delete(outputDir);
+    }
+
+    @Test
+    public void testGeneratedCodec() throws IOException {
+        boolean isCompiled = compile(source("com.example.MainController",
+                "package com.example;\n"
+                        + "import com.eightsines.holycycle.ViewControllerInstanceState;\n"
+                        + "public class MainController {\n"
+                        + "    @ViewControllerInstanceState int counter;\n"
+                        + "    @ViewControllerInstanceState boolean isExpanded;\n"
+                        + "    @ViewControllerInstanceState String query;\n"
+                        + "    @ViewControllerInstanceState java.util.Date date;\n"
+                        + "    @ViewControllerInstanceState String[] tags;\n"
+                        + "}"));
+
+        Assert.assertTrue(getErrors().toString(), isCompiled);
+
+        File codecFile = new File(outputDir, "com/example/MainController$$StateCodec.java");
+        Assert.assertTrue(codecFile.isFile());
+
+        String codec = new String(Files.readAllBytes(codecFile.toPath()), Charset.forName("UTF-8"));
+
+        assertContains(codec, "public class MainController$$StateCodec<T extends com.example.MainController>"
+                + " implements com.eightsines.holycycle.ViewControllerStateCodec<T> {");
+
+        // Primitives are packed into one byte array (4 bytes for int, 1 byte for boolean).
+        assertContains(codec, "ByteBuffer primitives = ByteBuffer.allocate(5);");
+        assertContains(codec, "primitives.putInt(controller.counter);");
+        assertContains(codec, "primitives.put((byte)(controller.isExpanded ? 1 : 0));");
+        assertContains(codec, "controller.counter = primitives.getInt();");
+        assertContains(codec, "controller.isExpanded = primitives.get() != 0;");
+
+        assertContains(codec, "outState.putString(\"com.example.MainController:query\", controller.query);");
+
+        assertContains(codec,
+                "controller.date = (java.util.Date)savedInstanceState.getSerializable("
+                        + "\"com.example.MainController:date\");");
+
+        assertContains(codec, "outState.putStringArray(\"com.example.MainController:tags\", controller.tags);");
+    }
+
+    @Test
+    public void testGeneratedCodecExtendsSuperclassCodec() {
+        boolean isCompiled = compile(source("com.example.BaseController",
+                "package com.example;\n"
+                        + "public class BaseController {\n"
+                        + "    @com.eightsines.holycycle.ViewControllerInstanceState String title;\n"
+                        + "}"),
+                source("com.example.ChildController",
+                        "package com.example;\n"
+                                + "public class ChildController extends BaseController {\n"
+                                + "    @com.eightsines.holycycle.ViewControllerInstanceState long id;\n"
+                                + "}"));
+
+        Assert.assertTrue(getErrors().toString(), isCompiled);
+        Assert.assertTrue(new File(outputDir, "com/example/ChildController$$StateCodec.java").isFile());
+    }
+
+    @Test
+    public void testPrivateFieldError() {
+        boolean isCompiled = compile(source("com.example.PrivateFieldController",
+                "package com.example;\n"
+                        + "public class PrivateFieldController {\n"
+                        + "    @com.eightsines.holycycle.ViewControllerInstanceState private int counter;\n"
+                        + "}"));
+
+        Assert.assertFalse(isCompiled);
+        assertError("must not be private, final, or static");
+    }
+
+    @Test
+    public void testInnerClassError() {
+        boolean isCompiled = compile(source("com.example.OuterController",
+                "package com.example;\n"
+                        + "public class OuterController {\n"
+                        + "    public class InnerController {\n"
+                        + "        @com.eightsines.holycycle.ViewControllerInstanceState int counter;\n"
+                        + "    }\n"
+                        + "}"));
+
+        Assert.assertFalse(isCompiled);
+        assertError("must not be inner (non-static)");
+    }
+
+    @Test
+    public void testUnsupportedTypeError() {
+        boolean isCompiled = compile(source("com.example.UnsupportedController",
+                "package com.example;\n"
+                        + "public class UnsupportedController {\n"
+                        + "    @com.eightsines.holycycle.ViewControllerInstanceState Object value;\n"
+                        + "}"));
+
+        Assert.assertFalse(isCompiled);
+        assertError("Type java.lang.Object is not supported by @ViewControllerInstanceState.");
+    }
+
+    @Test
+    public void testParcelableArrayError() {
+        boolean isCompiled = compile(source("com.example.Item",
+                "package com.example;\n"
+                        + "public class Item implements android.os.Parcelable {}"),
+                source("com.example.ParcelableArrayController",
+                        "package com.example;\n"
+                                + "public class ParcelableArrayController {\n"
+                                + "    @com.eightsines.holycycle.ViewControllerInstanceState Item[] items;\n"
+                                + "}"));
+
+        Assert.assertFalse(isCompiled);
+        assertError("Type com.example.Item[] is not supported by @ViewControllerInstanceState.");
+    }
+
+    @Test
+    public void testObjectArrayError() {
+        boolean isCompiled = compile(source("com.example.ObjectArrayController",
+                "package com.example;\n"
+                        + "public class ObjectArrayController {\n"
+                        + "    @com.eightsines.holycycle.ViewControllerInstanceState Object[] values;\n"
+                        + "}"));
+
+        Assert.assertFalse(isCompiled);
+        assertError("Type java.lang.Object[] is not supported by @ViewControllerInstanceState.");
+    }
+
+    private boolean compile(JavaFileObject... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, null);
+
+        List<JavaFileObject> compilationUnits = new ArrayList<>(Arrays.asList(SUPPORT_SOURCES));
+        Collections.addAll(compilationUnits, sources);
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null,
+                fileManager,
+                diagnostics,
+                Arrays.asList("-d", outputDir.getPath(), "-s", outputDir.getPath(), "-proc:only"),
+                null,
+                compilationUnits);
+
+        task.setProcessors(Collections.singletonList(new ViewControllerStateProcessor()));
+
+        if (!task.call()) {
+            return false;
+        }
+
+        // Compile the generated codecs to make sure that they are valid.
+        List<JavaFileObject> generatedUnits = new ArrayList<>(compilationUnits);
+
+        for (JavaFileObject generatedUnit : fileManager.getJavaFileObjectsFromFiles(listJavaFiles(outputDir))) {
+            generatedUnits.add(generatedUnit);
+        }
+
+        return compiler.getTask(null,
+                fileManager,
+                diagnostics,
+                Arrays.asList("-d", outputDir.getPath(), "-proc:none"),
+                null,
+                generatedUnits).call();
+    }
+
+    private List<String> getErrors() {
+        List<String> errors = new ArrayList<>();
+
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ROOT));
+            }
+        }
+
+        return errors;
+    }
+
+    private void assertError(String expectedMessagePart) {
+        for (String error : getErrors()) {
+            if (error.contains(expectedMessagePart)) {
+                return;
+            }
+        }
+
+        Assert.fail("Error \"" + expectedMessagePart + "\" was not reported, errors: " + getErrors());
+    }
+
+    private static void assertContains(String text, String expectedPart) {
+        Assert.assertTrue("\"" + expectedPart + "\" not found in:\n" + text, text.contains(expectedPart));
+    }
+
+    private static List<File> listJavaFiles(File dir) {
+        List<File> result = new ArrayList<>();
+        File[] files = dir.listFiles();
+
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    result.addAll(listJavaFiles(file));
+                } else if (file.getName().endsWith(".java")) {
+                    result.add(file);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static JavaFileObject source(String className, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}